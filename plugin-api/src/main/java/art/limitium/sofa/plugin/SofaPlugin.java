@@ -68,6 +68,16 @@ public interface SofaPlugin {
          * Converts a SOFA type into target representation.
          */
         Object getType(SofaType type) throws Exception;
+
+        /**
+         * Whether a result depends on the type only.
+         *
+         * <p>Results of cacheable converters are computed once per type and configuration. Return
+         * {@code false} if the result depends on other state.
+         */
+        default boolean isCacheable() {
+            return true;
+        }
     }
 
     /**
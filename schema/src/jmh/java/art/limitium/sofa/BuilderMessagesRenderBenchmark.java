@@ -0,0 +1,163 @@
+package art.limitium.sofa;
+
+import art.limitium.sofa.schema.Entity;
+import art.limitium.sofa.schema.EntityGraph;
+import art.limitium.sofa.schema.EnumEntity;
+import art.limitium.sofa.schema.RecordEntity;
+import art.limitium.sofa.schema.Type;
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.loader.ClasspathLoader;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares render throughput of {@code builder_messages} templates with template attributes of the
+ * schema model resolved by {@link ModelAttributeResolver} and by Pebble reflection only, and of the
+ * same templates compiled by {@link TemplateCompiler}.
+ *
+ * <p>Run with {@code ./gradlew :schema:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class BuilderMessagesRenderBenchmark {
+    private static final String TEMPLATES = "generators/builder_messages/";
+    private static final String ORDER = """
+            {"type": "record", "name": "Order", "namespace": "com.example", "fields": [
+              {"name": "order_id", "type": "string", "primary": true},
+              {"name": "payload", "type": "bytes"},
+              {"name": "quantity", "type": "int"},
+              {"name": "total_price", "type": "double"},
+              {"name": "created_at", "type": {"type": "long", "logicalType": "timestamp-millis"}},
+              {"name": "tags", "type": {"type": "array", "items": "string"}},
+              {"name": "status", "type": {"type": "enum", "name": "Status", "symbols": ["NEW", "DONE"]}},
+              {"name": "statuses", "type": {"type": "array", "items": "Status"}},
+              {"name": "shipping_address", "type": {"type": "record", "name": "Address", "fields": [
+                {"name": "street_name", "type": "string"},
+                {"name": "zip_code", "type": "int"}]}},
+              {"name": "lines", "type": {"type": "array", "items": {"type": "record", "name": "Line", "fields": [
+                {"name": "line_id", "type": "string", "primary": true},
+                {"name": "sku", "type": "string"},
+                {"name": "amount", "type": "double"},
+                {"name": "labels", "type": {"type": "array", "items": "string"}}]}}}
+            ]}""";
+
+    private Map<String, Object> rootContext;
+    private Map<String, Object> dependentContext;
+    private PebbleTemplate resolvedRoot;
+    private PebbleTemplate resolvedDependent;
+    private PebbleTemplate reflectedRoot;
+    private PebbleTemplate reflectedDependent;
+    private PebbleTemplate compiledRoot;
+    private PebbleTemplate compiledDependent;
+
+    @Setup
+    public void setUp() {
+        Schema order = new Schema.Parser().parse(ORDER);
+        AvroEntity status = new AvroEntity(order.getField("status").schema());
+        AvroEntity address = new AvroEntity(order.getField("shipping_address").schema());
+        AvroEntity line = new AvroEntity(order.getField("lines").schema().getElementType());
+        AvroEntity root = new AvroEntity(order);
+        root.isRoot = true;
+        root.dependencies.put(line.getFullname(), line);
+        line.owners.add(root);
+        Map<String, Entity> entities = createEntities(SchemaModel.of(List.of(status, address, line, root)));
+
+        GeneratedSchemas schemas = new GeneratedSchemas();
+        schemas.publish("pojo_messages", entities);
+        schemas.publish("flatbuffers_messages", entities);
+        schemas.publish("pojo_common", entities);
+        TemplateEngineFactory templateEngines =
+                new GenerationSession(BuilderMessagesRenderBenchmark.class.getClassLoader()).getTemplateEngines(List.of());
+
+        PebbleEngine resolving = templateEngines.createPebbleEngineForPath("", TEMPLATES, schemas);
+        resolvedRoot = resolving.getTemplate("root");
+        resolvedDependent = resolving.getTemplate("dependent");
+
+        PebbleEngine compiling = templateEngines.createPebbleEngineForPath("", TEMPLATES, schemas);
+        Map<String, PebbleTemplate> compiled = templateEngines.compileTemplates(compiling,
+                Map.of("root", compiling.getTemplate("root"), "dependent", compiling.getTemplate("dependent")));
+        compiledRoot = compiled.get("root");
+        compiledDependent = compiled.get("dependent");
+
+        ClasspathLoader loader = new ClasspathLoader();
+        loader.setPrefix(TEMPLATES);
+        loader.setSuffix(".peb");
+        PebbleEngine reflective = new PebbleEngine.Builder()
+                .loader(loader)
+                .newLineTrimming(true)
+                .autoEscaping(false)
+                .strictVariables(true)
+                .build();
+        reflective.getExtensionRegistry().addExtension(new CustomExtension(templateEngines.getTypeConverters(), schemas, Map.of()));
+        reflectedRoot = reflective.getTemplate("root");
+        reflectedDependent = reflective.getTemplate("dependent");
+
+        rootContext = Map.of("entity", entities.get(root.getFullname()));
+        dependentContext = Map.of("entity", entities.get(line.getFullname()));
+    }
+
+    @Benchmark
+    public String renderWithModelResolver() throws IOException {
+        return render(resolvedRoot, rootContext) + render(resolvedDependent, dependentContext);
+    }
+
+    @Benchmark
+    public String renderWithReflection() throws IOException {
+        return render(reflectedRoot, rootContext) + render(reflectedDependent, dependentContext);
+    }
+
+    @Benchmark
+    public String renderCompiled() throws IOException {
+        return render(compiledRoot, rootContext) + render(compiledDependent, dependentContext);
+    }
+
+    private static String render(PebbleTemplate template, Map<String, Object> context) throws IOException {
+        StringWriter writer = new StringWriter();
+        template.evaluate(writer, context);
+        return writer.toString();
+    }
+
+    private static Map<String, Entity> createEntities(SchemaModel model) {
+        Map<String, Entity> mapByAvroName = new HashMap<>();
+        EntityGraph graph = new EntityGraph(model.structure());
+        for (SchemaModel.EntityModel entityModel : model.entities()) {
+            Schema schema = entityModel.avro().schema;
+            String namespace = schema.getNamespace() + ".messages.builder";
+            String name = schema.getName() + "Builder";
+            Entity entity;
+            if (schema.getType() == Schema.Type.ENUM) {
+                entity = new EnumEntity(entityModel.id(), namespace, name, namespace + "." + name, schema, schema.getEnumSymbols());
+            } else {
+                List<RecordEntity.Field> fields = new ArrayList<>();
+                for (SchemaModel.FieldModel field : entityModel.fields()) {
+                    fields.add(new RecordEntity.Field(field.name(), Type.fromSchema(field.schema(), mapByAvroName)));
+                }
+                entity = new RecordEntity(entityModel.id(), namespace, name, namespace + "." + name, schema, fields, entityModel.isRoot(), graph);
+            }
+            mapByAvroName.put(schema.getFullName(), entity);
+            graph.bind(entity);
+        }
+        return mapByAvroName;
+    }
+}
@@ -0,0 +1,83 @@
+package art.limitium.sofa.schema;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares case conversions of field names: regular expressions compiled per call as the filters
+ * used to do, single pass conversions and cached conversions templates go through.
+ *
+ * <p>Run with {@code ./gradlew :schema:jmh}, add {@code -prof gc} to jmh arguments for allocation
+ * rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class NamesBenchmark {
+    private static final String[] CAMEL_CASE_NAMES = {
+        "id", "orderId", "customerInfo", "shippingAddressLine1", "createdAt", "totalAmountWithTax",
+        "paymentStatus", "items", "productSku", "lastModifiedByUserName"
+    };
+    private static final String[] SNAKE_CASE_NAMES = {
+        "id", "order_id", "customer_info", "shipping_address_line1", "created_at", "total_amount_with_tax",
+        "payment_status", "items", "product_sku", "last_modified_by_user_name"
+    };
+
+    @Benchmark
+    public void snakeCaseRegex(Blackhole blackhole) {
+        for (String name : CAMEL_CASE_NAMES) {
+            blackhole.consume(Pattern.compile("(?<!^)([A-Z])|(^[A-Z])")
+                    .matcher(name)
+                    .replaceAll(m -> m.group(2) != null ? m.group(2).toLowerCase() : "_" + m.group(1).toLowerCase()));
+        }
+    }
+
+    @Benchmark
+    public void snakeCaseSinglePass(Blackhole blackhole) {
+        for (String name : CAMEL_CASE_NAMES) {
+            blackhole.consume(Names.convertToSnakeCase(name));
+        }
+    }
+
+    @Benchmark
+    public void snakeCaseCached(Blackhole blackhole) {
+        for (String name : CAMEL_CASE_NAMES) {
+            blackhole.consume(Names.toSnakeCase(name));
+        }
+    }
+
+    @Benchmark
+    public void camelCaseRegex(Blackhole blackhole) {
+        for (String name : SNAKE_CASE_NAMES) {
+            String camelCase = Pattern.compile("_(.)").matcher(name).replaceAll(m -> m.group(1).toUpperCase());
+            blackhole.consume(camelCase.substring(0, 1).toLowerCase() + camelCase.substring(1));
+        }
+    }
+
+    @Benchmark
+    public void camelCaseSinglePass(Blackhole blackhole) {
+        for (String name : SNAKE_CASE_NAMES) {
+            blackhole.consume(Names.convertToCamelCase(name));
+        }
+    }
+
+    @Benchmark
+    public void camelCaseCached(Blackhole blackhole) {
+        for (String name : SNAKE_CASE_NAMES) {
+            blackhole.consume(Names.toCamelCase(name));
+        }
+    }
+}
@@ -35,6 +35,16 @@ public class AvroEntity implements Owner<AvroEntity>, Dependency<AvroEntity>, Na
      */
     public boolean isRoot = false;
 
+    /**
+     * Flag indicating if this record is owned by other records in 1-to-many relationships
+     */
+    public boolean isDependent = false;
+
+    /**
+     * Flag indicating if this record owns other records through array fields, derived from the schema
+     */
+    private final boolean isOwner;
+
     /**
      * Creates a new AvroEntity wrapping the given schema
      *
@@ -42,6 +52,7 @@ public class AvroEntity implements Owner<AvroEntity>, Dependency<AvroEntity>, Na
      */
     AvroEntity(Schema schema) {
         this.schema = schema;
+        this.isOwner = schema.getType() == Schema.Type.RECORD && schema.getFields().stream().anyMatch(f -> f.schema().getType() == Schema.Type.ARRAY && f.schema().getElementType().getType() == Schema.Type.RECORD);
     }
 
     /**
@@ -78,10 +89,29 @@ public class AvroEntity implements Owner<AvroEntity>, Dependency<AvroEntity>, Na
      * Checks if this record owns other records through array fields.
      * A record is considered an owner if it has any array fields whose element type is a record type,
      * representing a one-to-many relationship with the contained record type.
+     * The flag is computed once when the entity is created.
      *
      * @return true if this record owns other records through array fields, false otherwise
      */
     public boolean isOwner() {
-        return schema.getFields().stream().anyMatch(f -> f.schema().getType() == Schema.Type.ARRAY && f.schema().getElementType().getType() == Schema.Type.RECORD);
+        return isOwner;
+    }
+
+    /**
+     * Checks if this entity is an enum
+     *
+     * @return true for enums, false for records
+     */
+    public boolean isEnum() {
+        return schema.getType() == Schema.Type.ENUM;
+    }
+
+    /**
+     * Checks if this is a record used by other records, set together with the root flag
+     *
+     * @return true for non root records, false otherwise
+     */
+    public boolean isChild() {
+        return schema.getType() == Schema.Type.RECORD && !isRoot;
     }
 }
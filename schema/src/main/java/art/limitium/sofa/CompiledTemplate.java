@@ -0,0 +1,386 @@
+package art.limitium.sofa;
+
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.attributes.AttributeResolver;
+import com.mitchellbosecke.pebble.attributes.ResolvedAttribute;
+import com.mitchellbosecke.pebble.error.AttributeNotFoundException;
+import com.mitchellbosecke.pebble.error.PebbleException;
+import com.mitchellbosecke.pebble.error.RootAttributeNotFoundException;
+import com.mitchellbosecke.pebble.extension.Filter;
+import com.mitchellbosecke.pebble.extension.Test;
+import com.mitchellbosecke.pebble.extension.escaper.EscapeFilter;
+import com.mitchellbosecke.pebble.extension.escaper.SafeString;
+import com.mitchellbosecke.pebble.extension.writer.SpecializedWriter;
+import com.mitchellbosecke.pebble.extension.writer.StringWriterSpecializedAdapter;
+import com.mitchellbosecke.pebble.node.ArgumentsNode;
+import com.mitchellbosecke.pebble.node.fornode.LazyLength;
+import com.mitchellbosecke.pebble.node.fornode.LazyRevIndex;
+import com.mitchellbosecke.pebble.template.EvaluationContextImpl;
+import com.mitchellbosecke.pebble.template.GlobalContext;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import com.mitchellbosecke.pebble.template.PebbleTemplateImpl;
+import com.mitchellbosecke.pebble.template.ScopeChain;
+import com.mitchellbosecke.pebble.utils.LimitedSizeWriter;
+import com.mitchellbosecke.pebble.utils.StringUtils;
+import com.mitchellbosecke.pebble.utils.TypeUtils;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Template compiled to a Java class by {@link TemplateCompiler}, rendering is a direct method call.
+ *
+ * <p>Generated classes implement {@link #render} with the helpers of this class, which follow the
+ * Pebble nodes they replace: variables live in a scope chain set up as for an interpreted
+ * evaluation, attributes go through the attribute resolvers of the engine, filters and tests get
+ * the same arguments and errors carry the same messages. Loop variables are kept in Java locals in
+ * addition, so reading them skips scope lookups. Blocks are evaluated by the interpreted template.
+ */
+abstract class CompiledTemplate implements PebbleTemplate {
+    private final PebbleEngine engine;
+    protected final PebbleTemplateImpl template;
+
+    protected CompiledTemplate(PebbleEngine engine, PebbleTemplateImpl template) {
+        this.engine = engine;
+        this.template = template;
+    }
+
+    /**
+     * Renders the template body
+     * @param writer Output writer
+     * @param context Evaluation context
+     * @param scopes Scope chain of the context
+     */
+    protected abstract void render(Writer writer, EvaluationContextImpl context, ScopeChain scopes) throws IOException;
+
+    @Override
+    public void evaluate(Writer writer) throws IOException {
+        render(writer, createContext(null));
+    }
+
+    @Override
+    public void evaluate(Writer writer, Locale locale) throws IOException {
+        render(writer, createContext(locale));
+    }
+
+    @Override
+    public void evaluate(Writer writer, Map<String, Object> context) throws IOException {
+        evaluate(writer, context, null);
+    }
+
+    @Override
+    public void evaluate(Writer writer, Map<String, Object> context, Locale locale) throws IOException {
+        EvaluationContextImpl evaluationContext = createContext(locale);
+        evaluationContext.getScopeChain().pushScope(context);
+        evaluationContext.getScopeChain().pushScope(new HashMap<>());
+        render(writer, evaluationContext);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer) throws IOException {
+        template.evaluateBlock(blockName, writer);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer, Locale locale) throws IOException {
+        template.evaluateBlock(blockName, writer, locale);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer, Map<String, Object> context) throws IOException {
+        template.evaluateBlock(blockName, writer, context);
+    }
+
+    @Override
+    public void evaluateBlock(String blockName, Writer writer, Map<String, Object> context, Locale locale) throws IOException {
+        template.evaluateBlock(blockName, writer, context, locale);
+    }
+
+    @Override
+    public String getName() {
+        return template.getName();
+    }
+
+    private void render(Writer writer, EvaluationContextImpl context) throws IOException {
+        Writer limited = LimitedSizeWriter.from(writer, context);
+        render(limited, context, context.getScopeChain());
+        limited.flush();
+    }
+
+    private EvaluationContextImpl createContext(Locale locale) {
+        Locale evaluationLocale = locale == null ? engine.getDefaultLocale() : locale;
+        ScopeChain scopes = new ScopeChain();
+        Map<String, Object> globals = new HashMap<>();
+        globals.put("locale", evaluationLocale);
+        globals.put("template", template);
+        globals.put("_context", new GlobalContext(scopes));
+        scopes.pushScope(globals);
+        scopes.pushScope(engine.getExtensionRegistry().getGlobalVariables());
+        return new EvaluationContextImpl(template, engine.isStrictVariables(), evaluationLocale,
+                engine.getMaxRenderedSize(), engine.getExtensionRegistry(), engine.getTagCache(),
+                engine.getExecutorService(), new ArrayList<>(), new HashMap<>(), scopes, null,
+                engine.getEvaluationOptions());
+    }
+
+    protected final Object variable(EvaluationContextImpl context, ScopeChain scopes, String name, int line) {
+        Object value = scopes.get(name);
+        if (value == null && context.isStrictVariables() && !scopes.containsKey(name)) {
+            throw new RootAttributeNotFoundException(null, String.format(
+                    "Root attribute [%s] does not exist or can not be accessed and strict variables is set to true.",
+                    name), name, line, template.getName());
+        }
+        return value;
+    }
+
+    /**
+     * @param rootName Name of the variable the attribute is read from, null for other expressions
+     */
+    protected final Object attribute(
+            EvaluationContextImpl context,
+            Object instance,
+            Object name,
+            Object[] arguments,
+            ArgumentsNode argumentsNode,
+            String rootName,
+            int line) {
+        if (instance == null && context.isStrictVariables()) {
+            if (rootName != null) {
+                throw new RootAttributeNotFoundException(null, String.format(
+                        "Root attribute [%s] does not exist or can not be accessed and strict variables is set to true.",
+                        rootName), rootName, line, template.getName());
+            }
+            throw new RootAttributeNotFoundException(null,
+                    "Attempt to get attribute of null object and strict variables is set to true.",
+                    String.valueOf(name), line, template.getName());
+        }
+        if (instance instanceof Loop loop && arguments == null) {
+            Object value = loop.get(name);
+            if (value != Loop.UNKNOWN) {
+                return value;
+            }
+        }
+        for (AttributeResolver resolver : context.getExtensionRegistry().getAttributeResolver()) {
+            ResolvedAttribute resolved = resolver.resolve(instance, name, arguments, argumentsNode, context, template.getName(), line);
+            if (resolved != null) {
+                return resolved.evaluatedValue;
+            }
+        }
+        if (context.isStrictVariables()) {
+            throw new AttributeNotFoundException(null, String.format(
+                    "Attribute [%s] of [%s] does not exist or can not be accessed and strict variables is set to true.",
+                    name, instance.getClass().getName()), String.valueOf(name), line, template.getName());
+        }
+        return null;
+    }
+
+    protected final Object filter(EvaluationContextImpl context, Filter filter, Map<String, Object> arguments, Object input, int line) {
+        if (input instanceof SafeString && !(filter instanceof EscapeFilter)) {
+            input = input.toString();
+        }
+        return filter.apply(input, arguments, template, context, line);
+    }
+
+    protected final boolean test(EvaluationContextImpl context, Test test, Map<String, Object> arguments, Object input, int line) {
+        return test.apply(input, arguments, template, context, line);
+    }
+
+    /**
+     * @param keysAndValues Argument names followed by their values
+     * @return Mutable argument map as passed by Pebble to filters and tests
+     */
+    protected static Map<String, Object> arguments(Object... keysAndValues) {
+        Map<String, Object> arguments = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            arguments.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return arguments;
+    }
+
+    /**
+     * Evaluates a condition of an {@code if} tag, the caller wraps runtime exceptions as Pebble does
+     */
+    protected final boolean condition(EvaluationContextImpl context, Object value, int line) {
+        if (value == null) {
+            if (context.isStrictVariables()) {
+                throw error(null, "null value given to if statement and strict variables is set to true", line);
+            }
+            return false;
+        }
+        return toBoolean(value, line);
+    }
+
+    protected final Boolean not(EvaluationContextImpl context, Object value, int line) {
+        if (value == null) {
+            if (context.isStrictVariables()) {
+                throw error(null, "null value given to not() and strict variables is set to true", line);
+            }
+            return Boolean.TRUE;
+        }
+        return !toBoolean(value, line);
+    }
+
+    /**
+     * Evaluates an operand of {@code and} and {@code or}
+     * @param operator Operator name for the error message
+     */
+    protected final boolean operand(EvaluationContextImpl context, Object value, String operator, int line) {
+        Boolean result = TypeUtils.compatibleCast(value, Boolean.class);
+        if (result == null) {
+            if (context.isStrictVariables()) {
+                throw error(null, "null value used in " + operator + " operator and strict variables is set to true", line);
+            }
+            return false;
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates {@code contains} with an evaluated container, the caller skips the item when the
+     * container is null
+     */
+    protected final Boolean contains(Object container, Object item, int line) {
+        if (container instanceof Collection<?> collection) {
+            return item instanceof Collection<?> items ? collection.containsAll(items) : collection.contains(item);
+        }
+        if (container instanceof Map<?, ?> map) {
+            return map.containsKey(item);
+        }
+        if (container.getClass().isArray()) {
+            for (int i = 0, length = Array.getLength(container); i < length; i++) {
+                Object element = Array.get(container, i);
+                if (element == item || element != null && element.equals(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (container instanceof String) {
+            return container.toString().contains(String.valueOf(item));
+        }
+        throw error(null, "Contains operator can only be used on Collections, Maps and arrays. Actual type was: "
+                + container.getClass().getName(), line);
+    }
+
+    protected static String concatenate(Object left, Object right) {
+        StringBuilder result = new StringBuilder();
+        if (left != null) {
+            result.append(left);
+        }
+        if (right != null) {
+            result.append(right);
+        }
+        return result.toString();
+    }
+
+    protected static void print(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (writer instanceof StringWriter stringWriter) {
+            new StringWriterSpecializedAdapter(stringWriter).write(value);
+        } else if (writer instanceof SpecializedWriter specializedWriter) {
+            specializedWriter.write(value);
+        } else {
+            writer.write(StringUtils.toString(value));
+        }
+    }
+
+    /**
+     * @param value Evaluated iterable of a {@code for} tag, not null
+     * @return Iterator over the value as Pebble iterates it
+     */
+    protected final Iterator<?> iterator(Object value, int line) {
+        if (value instanceof Iterable<?> iterable) {
+            return iterable.iterator();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.entrySet().iterator();
+        }
+        if (value instanceof Object[] array) {
+            return Arrays.asList(array).iterator();
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            ArrayList<Object> elements = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                elements.add(Array.get(value, i));
+            }
+            return elements.iterator();
+        }
+        if (value instanceof Enumeration<?> enumeration) {
+            return Collections.list(enumeration).iterator();
+        }
+        throw error(null, "Not an iterable object. Value = [" + value + "]", line);
+    }
+
+    protected final PebbleException error(Throwable cause, String message, int line) {
+        return new PebbleException(cause, message, line, template.getName());
+    }
+
+    private boolean toBoolean(Object value, int line) {
+        if (value instanceof Boolean || value instanceof Number || value instanceof String) {
+            return TypeUtils.compatibleCast(value, Boolean.class);
+        }
+        throw error(null, String.format("Unsupported value type %s. Expected Boolean, String, Number in \"if\" statement",
+                value.getClass().getSimpleName()), line);
+    }
+
+    /**
+     * Variables of a {@code for} tag, published to templates as {@code loop}
+     */
+    public static final class Loop {
+        private static final Object UNKNOWN = new Object();
+
+        public boolean first;
+        public boolean last;
+        public final LazyLength length;
+        public int index = -1;
+        public LazyRevIndex revindex;
+
+        Loop(Object iterable) {
+            this.length = new LazyLength(iterable);
+        }
+
+        /**
+         * Moves to the next item and updates variables as Pebble does before rendering the body
+         * @return Next item
+         */
+        Object next(Iterator<?> iterator) {
+            index++;
+            first = index == 0;
+            revindex = new LazyRevIndex(index, length);
+            Object item = iterator.next();
+            last = !iterator.hasNext();
+            return item;
+        }
+
+        private Object get(Object name) {
+            if (!(name instanceof String variable)) {
+                return UNKNOWN;
+            }
+            return switch (variable) {
+                case "first" -> first;
+                case "last" -> last;
+                case "length" -> length;
+                case "index" -> index;
+                case "revindex" -> revindex;
+                default -> UNKNOWN;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "{last=" + last + ", length=" + length + ", index=" + index + ", revindex=" + revindex + ", first=" + first + "}";
+        }
+    }
+}
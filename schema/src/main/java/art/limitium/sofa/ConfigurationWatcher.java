@@ -0,0 +1,215 @@
+package art.limitium.sofa;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches configurations, their schema files and template folders and regenerates on changes.
+ *
+ * <p>Prepared configurations stay in memory between changes, unchanged schemas are taken from the
+ * session parse cache. A schema change renders only entities whose output may depend on the changed
+ * entities, a template change renders only entities rendered by that template. A configuration
+ * change or a change of a template included by other templates regenerates everything it affects.
+ */
+final class ConfigurationWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationWatcher.class);
+    /** Editors save files in several steps, changes arriving within this window are batched */
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private final GenerationSession session;
+    private final Runnable afterCycle;
+    private final List<WatchedConfiguration> configurations = new ArrayList<>();
+    private final Map<Path, WatchKey> watchedFolders = new HashMap<>();
+
+    ConfigurationWatcher(GenerationSession session) {
+        this(session, () -> {});
+    }
+
+    /**
+     * @param session Session configurations are prepared with
+     * @param afterCycle Called on the watching thread after the initial generation and after each
+     *     batch of changes, once folders of the current configurations are watched
+     */
+    ConfigurationWatcher(GenerationSession session, Runnable afterCycle) {
+        this.session = session;
+        this.afterCycle = afterCycle;
+    }
+
+    /**
+     * Generates configurations and regenerates them on changes until the thread is interrupted
+     *
+     * @param configPaths Paths to configuration files
+     */
+    void watch(List<String> configPaths) {
+        for (String configPath : configPaths) {
+            PreparedConfigurationState state = prepare(configPath);
+            Factory.generate(state.configuration(), generator -> null);
+            configurations.add(new WatchedConfiguration(configPath, state));
+        }
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            registerFolders(watchService);
+            logger.info("Watching {} folders for changes", watchedFolders.size());
+            afterCycle.run();
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = awaitChanges(watchService);
+                for (WatchedConfiguration watched : configurations) {
+                    regenerate(watched, changed);
+                }
+                registerFolders(watchService);
+                afterCycle.run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to watch for changes", e);
+        }
+        logger.info("Stop watching");
+    }
+
+    private void regenerate(WatchedConfiguration watched, Set<Path> changed) {
+        Factory.PreparedConfiguration previous = watched.state.configuration();
+        boolean configChanged = changed.contains(previous.configFile());
+        boolean schemasChanged = previous.schemaFiles().stream().anyMatch(changed::contains);
+        Map<String, Set<String>> changedTemplates = new HashMap<>();
+        previous.templateFolders().forEach((generator, folder) -> {
+            for (Path path : changed) {
+                String fileName = path.getFileName().toString();
+                if (folder.equals(path.getParent()) && fileName.endsWith(".peb")) {
+                    changedTemplates.computeIfAbsent(generator, g -> new HashSet<>())
+                            .add(fileName.substring(0, fileName.length() - ".peb".length()));
+                }
+            }
+        });
+        if (!configChanged && !schemasChanged && changedTemplates.isEmpty()) {
+            return;
+        }
+
+        Instant startTime = Instant.now();
+        logger.info("Changes detected in {}", watched.configPath);
+        PreparedConfigurationState next;
+        try {
+            next = prepare(watched.configPath);
+            if (configChanged) {
+                Factory.generate(next.configuration(), generator -> null);
+            } else {
+                Set<String> affected = SchemaGraphDiff.affected(
+                        next.configuration().model().avroEntities(),
+                        SchemaGraphDiff.changed(watched.state.fingerprints(), next.fingerprints()));
+                logger.info("Entities affected by schema changes {}: {}", affected.size(), affected);
+                Factory.generate(next.configuration(), generator -> invalidation(
+                        affected,
+                        changedTemplates.getOrDefault(generator.getName(), Set.of()),
+                        next.configuration().templateSources().getOrDefault(generator.getName(), Map.of())));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Regeneration of {} failed, waiting for further changes", watched.configPath, e);
+            return;
+        }
+        watched.state = next;
+        Duration duration = Duration.between(startTime, Instant.now());
+        logger.info("Regeneration successful in {}.{}s", duration.toSeconds(), duration.toMillisPart());
+    }
+
+    /**
+     * Builds an invalidation of a generator, templates added, removed or referenced by other
+     * templates invalidate the whole generator
+     *
+     * @return Invalidation or null to render all entities
+     */
+    private static Generator.Invalidation invalidation(
+            Set<String> affected, Set<String> changedTemplates, Map<String, String> templateSources) {
+        for (String template : changedTemplates) {
+            if (!templateSources.containsKey(template)) {
+                return null;
+            }
+            Pattern reference = Pattern.compile("[\"']" + Pattern.quote(template) + "(\\.peb)?[\"']");
+            for (Map.Entry<String, String> source : templateSources.entrySet()) {
+                if (!source.getKey().equals(template) && reference.matcher(source.getValue()).find()) {
+                    return null;
+                }
+            }
+        }
+        return new Generator.Invalidation(affected, changedTemplates);
+    }
+
+    private PreparedConfigurationState prepare(String configPath) {
+        Factory.PreparedConfiguration configuration = Factory.prepareConfiguration(configPath, session);
+        return new PreparedConfigurationState(
+                configuration, SchemaGraphDiff.fingerprints(configuration.model().avroEntities()));
+    }
+
+    private Set<Path> awaitChanges(WatchService watchService) throws InterruptedException {
+        Set<Path> changed = new HashSet<>();
+        WatchKey key = watchService.take();
+        Thread.sleep(DEBOUNCE_MILLIS);
+        while (key != null) {
+            Path folder = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    logger.warn("Too many changes in {}, some of them may be missed", folder);
+                    continue;
+                }
+                changed.add(folder.resolve((Path) event.context()));
+            }
+            if (!key.reset()) {
+                watchedFolders.remove(folder);
+            }
+            key = watchService.poll();
+        }
+        logger.debug("Changed files {}", changed);
+        return changed;
+    }
+
+    private void registerFolders(WatchService watchService) throws IOException {
+        for (WatchedConfiguration watched : configurations) {
+            Factory.PreparedConfiguration configuration = watched.state.configuration();
+            register(watchService, configuration.configFile().getParent());
+            for (Path schemaFile : configuration.schemaFiles()) {
+                register(watchService, schemaFile.getParent());
+            }
+            for (Path folder : configuration.templateFolders().values()) {
+                register(watchService, folder);
+            }
+        }
+    }
+
+    private void register(WatchService watchService, Path folder) throws IOException {
+        if (!watchedFolders.containsKey(folder)) {
+            watchedFolders.put(folder, folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+        }
+    }
+
+    private record PreparedConfigurationState(
+            Factory.PreparedConfiguration configuration, Map<String, String> fingerprints) {}
+
+    private static final class WatchedConfiguration {
+        private final String configPath;
+        private PreparedConfigurationState state;
+
+        private WatchedConfiguration(String configPath, PreparedConfigurationState state) {
+            this.configPath = configPath;
+            this.state = state;
+        }
+    }
+}
@@ -9,7 +9,7 @@ import com.mitchellbosecke.pebble.template.EvaluationContext;
 import com.mitchellbosecke.pebble.template.PebbleTemplate;
 
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 /**
  * Custom extension for Pebble template engine that provides additional filters and functions.
@@ -19,23 +19,41 @@ public class CustomExtension extends AbstractExtension {
     /** List of type converters used for converting between different type systems */
     private final List<TypeConverter> typeConverters;
     
-    /** Map of schema names to their entity definitions */
-    private final Map<String, Map<String, Entity>> schemas;
+    /** Registry of entities published by generators */
+    private final GeneratedSchemas schemas;
     /** Plugin-provided filters to merge in */
     private final Map<String, Filter> pluginFilters;
+    /** Whether type filters keep results of cacheable converters */
+    private final boolean memoizeConversions;
 
     /**
      * Creates a new CustomExtension with the specified type converters and schemas
      * @param typeConverters List of type converters to use
-     * @param schemas Map of schema names to their entity definitions
+     * @param schemas Registry of entities published by generators
      */
     public CustomExtension(
             List<TypeConverter> typeConverters,
-            Map<String, Map<String, Entity>> schemas,
+            GeneratedSchemas schemas,
             Map<String, Filter> pluginFilters) {
+        this(typeConverters, schemas, pluginFilters, true);
+    }
+
+    /**
+     * Creates a new CustomExtension with the specified type converters and schemas
+     * @param typeConverters List of type converters to use
+     * @param schemas Registry of entities published by generators
+     * @param memoizeConversions Whether type filters keep converted types, an extension outliving
+     *                           a configuration should not keep its types
+     */
+    public CustomExtension(
+            List<TypeConverter> typeConverters,
+            GeneratedSchemas schemas,
+            Map<String, Filter> pluginFilters,
+            boolean memoizeConversions) {
         this.typeConverters = typeConverters;
         this.schemas = schemas;
         this.pluginFilters = pluginFilters != null ? pluginFilters : Map.of();
+        this.memoizeConversions = memoizeConversions;
     }
 
     /**
@@ -82,10 +100,11 @@ public class CustomExtension extends AbstractExtension {
         filters.put("primary", new PrimaryFilter());
         filters.put("field", new FieldFilter());
         filters.put("uncapitalize", new UncapitalizeFilter());
+        filters.put("capitalize", new CapitalizeFilter());
 
         // Add type conversion filters from all converters (core first, plugins after).
         // This is intentionally late so converters can override default filters when names collide.
-        typeConverters.forEach(c -> filters.put(c.getName(), new TypeFilter(c)));
+        typeConverters.forEach(c -> filters.put(c.getName(), new TypeFilter(c, memoizeConversions && c.isCacheable())));
 
         // Add plugin filters (plugin wins on name collision)
         filters.putAll(pluginFilters);
@@ -107,16 +126,7 @@ public class CustomExtension extends AbstractExtension {
         @Override
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof String str) {
-                return Pattern.compile("(?<!^)([A-Z])|(^[A-Z])")
-                        .matcher(str)
-                        .replaceAll(m -> {
-                            if (m.group(2) != null) {
-                                return m.group(2).toLowerCase();
-                            } else {
-                                return "_" + m.group(1).toLowerCase();
-                            }
-                        });
-
+                return Names.toSnakeCase(str);
             }
             return input;
         }
@@ -136,14 +146,7 @@ public class CustomExtension extends AbstractExtension {
         @Override
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof String str) {
-                String camelCase = Pattern.compile("_(.)")
-                        .matcher(str)
-                        .replaceAll(m -> m.group(1).toUpperCase());
-                // Ensure the first character is lowercase
-                camelCase = camelCase.substring(0, 1).toLowerCase() + camelCase.substring(1);
-                return camelCase;
-
-
+                return Names.toCamelCase(str);
             }
             return input;
         }
@@ -174,14 +177,14 @@ public class CustomExtension extends AbstractExtension {
      */
     public static class FromFilter implements Filter {
 
-        /** Map of schema names to their entity definitions */
-        private final Map<String, Map<String, Entity>> schemas;
+        /** Registry of entities published by generators */
+        private final GeneratedSchemas schemas;
 
         /**
          * Creates a new FromFilter with the specified schemas
-         * @param schemas Map of schema names to their entity definitions
+         * @param schemas Registry of entities published by generators, lookups wait for generators still running
          */
-        public FromFilter(Map<String, Map<String, Entity>> schemas) {
+        public FromFilter(GeneratedSchemas schemas) {
 
             this.schemas = schemas;
         }
@@ -196,10 +199,7 @@ public class CustomExtension extends AbstractExtension {
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof Entity entity) {
                 if (args.containsKey("0")) {
-                    Map<String, Entity> schema = schemas.get(args.get("0"));
-                    if (schema == null) {
-                        throw new RuntimeException("Unable to find generator `" + args.get("0") + "`, available generators: " + String.join(",", schemas.keySet()));
-                    }
+                    Map<String, Entity> schema = schemas.get(String.valueOf(args.get("0")));
                     return schema.get(entity.getSchema().getFullName());
                 }
             }
@@ -221,9 +221,7 @@ public class CustomExtension extends AbstractExtension {
         @Override
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof RecordEntity recordEntity) {
-                TriesToReverseListConverter<Entity> triesToReverseListConverter = new TriesToReverseListConverter<>();
-                triesToReverseListConverter.addNode(recordEntity);
-                return triesToReverseListConverter.getFlatted();
+                return recordEntity.getGraph().dependenciesRecursive(recordEntity.getId());
             }
             return input;
         }
@@ -234,57 +232,6 @@ public class CustomExtension extends AbstractExtension {
      */
     public static class DependenciesRecursiveUpToClosestDependent implements Filter {
 
-        /**
-         * Helper class that visits and collects entities up to dependent records
-         */
-        static class UpToDependentVisitor {
-            /** Map to store visited entities, preserving order of insertion */
-            Map<String, Entity> visited = new LinkedHashMap<>();
-
-            /**
-             * Visits an entity and its dependencies, collecting them up to dependent records
-             * @param e Entity to visit
-             * @param owner Owner record entity
-             */
-            public void visit(Entity e, RecordEntity owner) {
-                if (!visited.containsKey(e.getFullname())) {
-                    //closest 1-N dependent in branch, just stop on it
-                    boolean is1NDependent;
-                    is1NDependent = owner.getFields().stream()
-                            .filter(f -> f.type() instanceof Type.ArrayType)
-                            .map(f -> ((Type.ArrayType) f.type()).getElementType())
-                            .filter(Type.RecordType.class::isInstance)
-                            .anyMatch(r -> ((Type.RecordType) r).getRecord().equals(e));
-
-                    if (is1NDependent) {
-                        return;
-                    }
-
-                    if (e instanceof RecordEntity re) {
-                        for (Entity dependency : re.getDependencies()) {
-                            if (dependency instanceof RecordEntity dre) {
-                                visit(dre, re);
-                            } else {
-                                //Enums just add
-                                visited.put(dependency.getFullname(), dependency);
-                            }
-                        }
-                    } else {
-                        //Enums just add
-                        visited.put(e.getFullname(), e);
-                    }
-                }
-            }
-
-            /**
-             * Returns list of visited entities
-             * @return List of collected entities
-             */
-            public List<Entity> getVisited() {
-                return visited.values().stream().toList();
-            }
-        }
-
         @Override
         public List<String> getArgumentNames() {
             return null; // This filter does not require any arguments
@@ -294,12 +241,7 @@ public class CustomExtension extends AbstractExtension {
         @Override
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof RecordEntity recordEntity) {
-                UpToDependentVisitor upToDependentVisitor = new UpToDependentVisitor();
-                for (Entity dependency : recordEntity.getDependencies()) {
-                    upToDependentVisitor.visit(dependency, recordEntity);
-                }
-
-                return upToDependentVisitor.getVisited();
+                return recordEntity.getGraph().dependenciesUpToClosestDependent(recordEntity.getId());
             }
             return input;
         }
@@ -310,58 +252,6 @@ public class CustomExtension extends AbstractExtension {
      */
     public static class DependenciesRecursiveToClosestDependent implements Filter {
 
-        /**
-         * Helper class that visits and collects entities including dependent records
-         */
-        static class UpDependentVisitor {
-            /** Map to store visited entities, preserving order of insertion */
-            Map<String, Entity> visited = new LinkedHashMap<>();
-
-            /**
-             * Visits an entity and its dependencies, collecting them including dependent records
-             * @param e Entity to visit
-             * @param owner Owner record entity
-             */
-            public void visit(Entity e, RecordEntity owner) {
-                if (!visited.containsKey(e.getFullname())) {
-                    //closest 1-N dependent in branch, add it and stop on it
-                    boolean is1NDependent;
-                    is1NDependent = owner.getFields().stream()
-                            .filter(f -> f.type() instanceof Type.ArrayType)
-                            .map(f -> ((Type.ArrayType) f.type()).getElementType())
-                            .filter(Type.RecordType.class::isInstance)
-                            .anyMatch(r -> ((Type.RecordType) r).getRecord().equals(e));
-
-                    if (is1NDependent) {
-                        visited.put(e.getFullname(), e);
-                        return;
-                    }
-
-                    if (e instanceof RecordEntity re) {
-                        for (Entity dependency : re.getDependencies()) {
-                            if (dependency instanceof RecordEntity dre) {
-                                visit(dre, re);
-                            } else {
-                                //Enums just add
-                                visited.put(dependency.getFullname(), dependency);
-                            }
-                        }
-                    } else {
-                        //Enums just add
-                        visited.put(e.getFullname(), e);
-                    }
-                }
-            }
-
-            /**
-             * Returns list of visited entities
-             * @return List of collected entities
-             */
-            public List<Entity> getVisited() {
-                return visited.values().stream().toList();
-            }
-        }
-
         @Override
         public List<String> getArgumentNames() {
             return null; // This filter does not require any arguments
@@ -371,12 +261,7 @@ public class CustomExtension extends AbstractExtension {
         @Override
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof RecordEntity recordEntity) {
-                UpDependentVisitor upToDependentVisitor = new UpDependentVisitor();
-                for (Entity dependency : recordEntity.getDependencies()) {
-                    upToDependentVisitor.visit(dependency, recordEntity);
-                }
-
-                return upToDependentVisitor.getVisited();
+                return recordEntity.getGraph().dependenciesToClosestDependent(recordEntity.getId());
             }
             return input;
         }
@@ -394,35 +279,11 @@ public class CustomExtension extends AbstractExtension {
                 if (args.containsKey("0")) {
                     joiner = String.valueOf(args.get("0"));
                 }
-                List<RecordEntity.Field> flattenFields = new ArrayList<>();
-                flattenFields(record, "", flattenFields, joiner);
-                return flattenFields;
+                return record.getFlattenedFields(RecordEntity.Flattening.FIELDS, joiner);
             }
             return o;
         }
 
-        /**
-         * Recursively flattens nested record fields
-         * @param record Record entity to flatten
-         * @param fieldPrefix Current field name prefix
-         * @param flattenFields List to collect flattened fields
-         * @param joiner String to join field name parts
-         */
-        private void flattenFields(RecordEntity record, String fieldPrefix, List<RecordEntity.Field> flattenFields, String joiner) {
-            if (!fieldPrefix.isEmpty()) {
-                fieldPrefix = fieldPrefix + joiner;
-            }
-
-            for (RecordEntity.Field field : record.getFields()) {
-                String fieldName = fieldPrefix + field.name();
-                if (field.type() instanceof Type.RecordType recordType) {
-                    flattenFields(recordType.getRecord(), fieldName, flattenFields, joiner);
-                } else {
-                    flattenFields.add(new RecordEntity.Field(fieldName, field.type()));
-                }
-            }
-        }
-
         @Override
         public List<String> getArgumentNames() {
             return null;
@@ -441,38 +302,11 @@ public class CustomExtension extends AbstractExtension {
                 if (args.containsKey("0")) {
                     joiner = String.valueOf(args.get("0"));
                 }
-                List<RecordEntity.Field> flattenFields = new ArrayList<>();
-                flattenFields(record, "", flattenFields, joiner);
-                return flattenFields;
+                return record.getFlattenedFields(RecordEntity.Flattening.FIELDS_WITH_RECORDS, joiner);
             }
             return o;
         }
 
-        /**
-         * Recursively flattens nested record fields
-         * @param record Record entity to flatten
-         * @param fieldPrefix Current field name prefix
-         * @param flattenFields List to collect flattened fields
-         * @param joiner String to join field name parts
-         */
-        private void flattenFields(RecordEntity record, String fieldPrefix, List<RecordEntity.Field> flattenFields, String joiner) {
-            if (!fieldPrefix.isEmpty()) {
-                fieldPrefix = fieldPrefix + joiner;
-            }
-
-            for (RecordEntity.Field field : record.getFields()) {
-                String fieldName = fieldPrefix + field.name();
-                if (field.type() instanceof Type.RecordType recordType) {
-                    flattenFields.add(new RecordEntity.Field(fieldName, field.type()));
-                    flattenFields(recordType.getRecord(), fieldName, flattenFields, joiner);
-                    Type.RecordCloseType type = new Type.RecordCloseType(recordType);
-                    flattenFields.add(new RecordEntity.Field(fieldName, type));
-                } else {
-                    flattenFields.add(new RecordEntity.Field(fieldName, field.type()));
-                }
-            }
-        }
-
         @Override
         public List<String> getArgumentNames() {
             return null;
@@ -491,34 +325,11 @@ public class CustomExtension extends AbstractExtension {
                 if (args.containsKey("0")) {
                     joiner = String.valueOf(args.get("0"));
                 }
-                List<RecordEntity.Field> flattenRecord = new ArrayList<>();
-                flattenFields(record, "", flattenRecord, joiner);
-                return flattenRecord;
+                return record.getFlattenedFields(RecordEntity.Flattening.RECORDS, joiner);
             }
             return o;
         }
 
-        /**
-         * Recursively flattens nested records while preserving record type information
-         * @param record Record entity to flatten
-         * @param fieldPrefix Current field name prefix
-         * @param flattenFields List to collect flattened fields
-         * @param joiner String to join field name parts
-         */
-        private void flattenFields(RecordEntity record, String fieldPrefix, List<RecordEntity.Field> flattenFields, String joiner) {
-            if (!fieldPrefix.isEmpty()) {
-                fieldPrefix = fieldPrefix + joiner;
-            }
-
-            for (RecordEntity.Field field : record.getFields()) {
-                String fieldName = fieldPrefix + field.name();
-                if (field.type() instanceof Type.RecordType recordType) {
-                    flattenFields.add(new RecordEntity.Field(fieldName, field.type()));
-                    flattenFields(recordType.getRecord(), fieldName, flattenFields, joiner);
-                }
-            }
-        }
-
         @Override
         public List<String> getArgumentNames() {
             return null;
@@ -526,35 +337,19 @@ public class CustomExtension extends AbstractExtension {
     }
 
     /**
-     * Filter that flattens the ownership hierarchy of a record entity
+     * Filter that flattens the ownership hierarchy of a record entity, walking up parents to the
+     * closest dependent or root records
      */
     public static class FlattenOwners implements Filter {
 
         @Override
         public Object apply(Object o, Map<String, Object> args, PebbleTemplate pebbleTemplate, EvaluationContext evaluationContext, int i) throws PebbleException {
             if (o instanceof RecordEntity record && record.isDependent()) {
-                Set<RecordEntity> flattenOwners = new HashSet<>();
-                flattenOwners(record.getParents(), flattenOwners);
-                return flattenOwners.stream().toList();
+                return record.getGraph().closestOwners(record.getId());
             }
             return o;
         }
 
-        /**
-         * Recursively flattens the ownership hierarchy
-         * @param owners Set of owner record entities
-         * @param flattenOwners Set to collect flattened owners
-         */
-        private void flattenOwners(Set<RecordEntity> owners, Set<RecordEntity> flattenOwners) {
-            owners.forEach(o -> {
-                if (o.isDependent() || o.isRoot()) {
-                    flattenOwners.add(o);
-                } else {
-                    flattenOwners(o.getParents(), flattenOwners);
-                }
-            });
-        }
-
         @Override
         public List<String> getArgumentNames() {
             return null;
@@ -610,15 +405,30 @@ public class CustomExtension extends AbstractExtension {
      * Filter that converts types using a specified TypeConverter
      */
     public static class TypeFilter implements Filter {
+        /** Stands for a null conversion result in the memo */
+        private static final Object NULL = new Object();
+
         /** The type converter to use for conversions */
         private final TypeConverter typeConverter;
+        /** Conversion results by type instance, null when not memoized */
+        private final Map<TypeKey, Object> conversions;
 
         /**
          * Creates a new TypeFilter with the specified converter
          * @param typeConverter The type converter to use
          */
         public TypeFilter(TypeConverter typeConverter) {
+            this(typeConverter, false);
+        }
+
+        /**
+         * Creates a new TypeFilter with the specified converter
+         * @param typeConverter The type converter to use
+         * @param memoize Whether a type instance is converted once
+         */
+        public TypeFilter(TypeConverter typeConverter, boolean memoize) {
             this.typeConverter = typeConverter;
+            this.conversions = memoize ? new ConcurrentHashMap<>() : null;
         }
 
         @Override
@@ -629,10 +439,37 @@ public class CustomExtension extends AbstractExtension {
         @Override
         public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
             if (input instanceof Type type) {
-                return typeConverter.getType(type);
+                return conversions == null ? typeConverter.getType(type) : convert(type);
             }
             return input;
         }
+
+        private Object convert(Type type) {
+            TypeKey key = new TypeKey(type);
+            Object converted = conversions.get(key);
+            if (converted == null) {
+                converted = typeConverter.getType(type);
+                conversions.putIfAbsent(key, converted == null ? NULL : converted);
+            }
+            return converted == NULL ? null : converted;
+        }
+
+        /**
+         * Type compared by identity. Types are interned, so there is one entry per distinct Avro schema
+         * shared by all fields of that schema. Converters whose result depends on the field or other
+         * context must return false from {@link TypeConverter#isCacheable()} to skip the memo
+         */
+        private record TypeKey(Type type) {
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof TypeKey other && other.type == type;
+            }
+
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(type);
+            }
+        }
     }
 
 
@@ -694,6 +531,22 @@ public static class FieldFilter implements Filter {
     }
 }
 
+public static class CapitalizeFilter implements Filter {
+
+    @Override
+    public List<String> getArgumentNames() {
+        return null; // This filter does not require any arguments
+    }
+
+    @Override
+    public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
+        if (input instanceof String str) {
+            return Names.capitalize(str);
+        }
+        return input;
+}
+}
+
 public static class UncapitalizeFilter implements Filter {
     
     @Override
@@ -703,8 +556,8 @@ public static class UncapitalizeFilter implements Filter {
 
     @Override
     public Object apply(Object input, Map<String, Object> args, PebbleTemplate self, EvaluationContext context, int lineNumber) throws PebbleException {
-        if (input instanceof String str && !str.isEmpty()) {
-            return Character.toLowerCase(str.charAt(0)) + str.substring(1);
+        if (input instanceof String str) {
+            return Names.uncapitalize(str);
         }
         return input;
 }
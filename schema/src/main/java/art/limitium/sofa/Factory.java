@@ -1,7 +1,8 @@
 package art.limitium.sofa;
 
+import art.limitium.sofa.config.CacheConfig;
 import art.limitium.sofa.config.FactoryConfig;
-import art.limitium.sofa.schema.Entity;
+import art.limitium.sofa.config.GeneratorConfig;
 import com.mitchellbosecke.pebble.PebbleEngine;
 import com.mitchellbosecke.pebble.template.PebbleTemplate;
 import org.apache.avro.Schema;
@@ -20,24 +21,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static java.util.function.Function.identity;
-
 public class Factory {
     static Logger logger = LoggerFactory.getLogger(Factory.class);
 
     /**
      * Main entry point for code generation
-     * @param args Command line arguments - expects path(s) to generator definition file(s)
+     * @param args Command line arguments - expects path(s) to generator definition file(s), optionally
+     *             followed by {@code --parallel} or {@code --parallel=N} to generate configurations concurrently
+     *             and {@code --watch} to keep regenerating on changes
      */
     public static void main(String[] args) {
         if (args.length < 1) {
@@ -45,19 +51,155 @@ public class Factory {
         }
         Instant startTime = Instant.now();
         String[] configPaths = args[0].split(",");
+        CommandLineOptions options = parseOptions(args, configPaths.length);
 
         logger.info("Provided configurations {}:\r\n{}", configPaths.length, String.join("\r\n", configPaths));
-        Arrays.stream(configPaths).sequential().forEach(Factory::generateForConfiguration);
+        GenerationSession session = new GenerationSession(Factory.class.getClassLoader());
+        if (options.watch()) {
+            new ConfigurationWatcher(session).watch(Arrays.asList(configPaths));
+            return;
+        }
+        int parallelism = options.parallelism();
+        if (parallelism <= 1) {
+            Arrays.stream(configPaths).sequential().forEach(configPath -> generateForConfiguration(configPath, session));
+        } else {
+            generateConfigurationsConcurrently(configPaths, parallelism, session);
+        }
 
         Duration duration = Duration.between(startTime, Instant.now());
         logger.info("Generation successful in {}.{}s", duration.toSeconds(), duration.toMillisPart());
     }
 
+    /**
+     * Generates a configuration in process, generators with {@code output: memory:<name>} write
+     * their files into the file system given under that name, e.g. an in-memory one, instead of the
+     * disk
+     * @param configPath Path to the configuration file
+     * @param outputFileSystems File systems keyed by name, the caller keeps them open
+     */
+    public static void generate(String configPath, Map<String, FileSystem> outputFileSystems) {
+        generateForConfiguration(configPath, new GenerationSession(Factory.class.getClassLoader(), outputFileSystems));
+    }
+
+    /**
+     * Options following configuration paths
+     * @param parallelism Number of configurations generated concurrently
+     * @param watch Keep regenerating on changes of configurations, schemas and templates
+     */
+    private record CommandLineOptions(int parallelism, boolean watch) {
+    }
+
+    /**
+     * Parses the {@code --parallel} and {@code --watch} options
+     * @param args Command line arguments
+     * @param configCount Number of provided configurations
+     * @return Parsed options, configurations are generated one by one when {@code --parallel} is absent
+     */
+    private static CommandLineOptions parseOptions(String[] args, int configCount) {
+        int parallelism = 1;
+        boolean watch = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("--parallel")) {
+                parallelism = configCount;
+            } else if (arg.startsWith("--parallel=")) {
+                try {
+                    parallelism = resolveParallelism(Integer.parseInt(arg.substring("--parallel=".length())));
+                } catch (NumberFormatException e) {
+                    throw new RuntimeException("Invalid option `" + arg + "`, expected --parallel=N", e);
+                }
+            } else {
+                throw new RuntimeException("Unknown option `" + arg + "`");
+            }
+        }
+        return new CommandLineOptions(Math.min(parallelism, configCount), watch);
+    }
+
+    /**
+     * Generates configurations concurrently, schemas and plugins are shared through the session
+     * @param configPaths Paths to configuration files
+     * @param parallelism Number of configurations generated concurrently
+     * @param session Shared state
+     */
+    private static void generateConfigurationsConcurrently(String[] configPaths, int parallelism, GenerationSession session) {
+        logger.info("Generate {} configurations with parallelism {}", configPaths.length, parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            CompletableFuture<?>[] futures = Arrays.stream(configPaths)
+                    .map(configPath -> CompletableFuture.runAsync(() -> generateForConfiguration(configPath, session), pool))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     /**
      * Generates code based on a single configuration file
      * @param configPath Path to the configuration file
+     * @param session State shared with other configurations
+     */
+    private static void generateForConfiguration(String configPath, GenerationSession session) {
+        PreparedConfiguration configuration = prepareConfiguration(configPath, session);
+        if (configuration.snapshotPath() == null) {
+            generate(configuration, generator -> null);
+            return;
+        }
+
+        GraphSnapshot current = new GraphSnapshot(
+                SchemaGraphDiff.fingerprints(configuration.model().avroEntities()), configuration.generatorFingerprints());
+        GraphSnapshot previous = GraphSnapshot.read(configuration.snapshotPath());
+        generate(configuration, current.invalidations(previous, configuration.model().avroEntities()));
+        current.write(configuration.snapshotPath());
+    }
+
+    /**
+     * Runs generators of a prepared configuration and waits for their postCalls, which run in the
+     * background while dependent generators render. Generators write their manifests once their
+     * postCalls succeeded, generators that finished are awaited even if another one failed.
+     * @param configuration Prepared configuration
+     * @param invalidations Changes to render per generator, null renders all entities of a generator
+     */
+    static void generate(PreparedConfiguration configuration, Function<Generator, Generator.Invalidation> invalidations) {
+        RuntimeException failure = null;
+        try {
+            configuration.scheduler().run(configuration.schemas(), generator -> {
+                logger.info("Start generator `{}`", generator.getName());
+                generator.generate(configuration.model(), invalidations.apply(generator));
+            });
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (Generator generator : configuration.scheduler().topologicalOrder()) {
+            try {
+                generator.awaitPostCall();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Loads a configuration, parses its schemas and creates its generators
+     * @param configPath Path to the configuration file
+     * @param session State shared with other configurations
+     * @return Configuration ready to generate
      */
-    private static void generateForConfiguration(String configPath) {
+    static PreparedConfiguration prepareConfiguration(String configPath, GenerationSession session) {
         logger.info("Loading configuration from {}", configPath);
         File configFile = new File(configPath);
         String basePath = configFile.getAbsoluteFile().getParent();
@@ -72,22 +214,49 @@ public class Factory {
 
         logger.info("Loading schemas {}: \r\n{}", factoryConfig.schemas.size(), String.join("\r\n", factoryConfig.schemas));
         List<String> pluginClasses = factoryConfig.plugins != null ? factoryConfig.plugins : List.of();
-        TemplateEngineFactory templateEngines =
-                new TemplateEngineFactory(Factory.class.getClassLoader(), pluginClasses);
-        SchemaDefinition schemaDefinition = loadSchema(basePath, factoryConfig.schemas);
+        TemplateEngineFactory templateEngines = session.getTemplateEngines(pluginClasses);
+        SchemaDefinition schemaDefinition = loadSchema(basePath, factoryConfig.schemas, session.getSchemaParseCache());
         List<AvroEntity> roots = schemaDefinition.findRoots();
         logger.info("Found roots {}: \r\n{}", roots.size(), String.join("\r\n", roots.stream().map(AvroEntity::getFullname).toList()));
 
         List<AvroEntity> scopeOfWork = convertTriesToUniqReverseRecords(schemaDefinition.roots);
         logger.info("Scope of work sequence {}: \r\n{}", scopeOfWork.size(), String.join("\r\n", scopeOfWork.stream().map(AvroEntity::getFullname).toList()));
 
-        Map<String, Map<String, Entity>> schemas = new HashMap<>();
+        GeneratedSchemas schemas = new GeneratedSchemas();
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        Path statePath = resolveStatePath(basePath, configFile, factoryConfig.statePath);
+        GenerationCache cache = createCache(basePath, factoryConfig.cache);
+        TemplateCache templateCache = new TemplateCache(statePath.resolve("templates"));
+        NamespacedLoader templateLoader = new NamespacedLoader();
+        PebbleEngine templateEngine = templateEngines.createPebbleEngine(templateLoader, schemas);
+        Map<String, String> localFingerprints = new HashMap<>();
+
+        Map<String, Path> templateFolders = new HashMap<>();
+        Map<String, Map<String, String>> generatorTemplateSources = new HashMap<>();
+        Map<Path, String> archives = new HashMap<>();
+
+        // templates may include templates of generators declared later
+        for (GeneratorConfig generatorConfig : factoryConfig.generators) {
+            templateLoader.register(generatorConfig.path, TemplateEngineFactory.createTemplateLoader(
+                    templatesFilePath(basePath, generatorConfig.path), "generators/" + generatorConfig.path));
+        }
 
         List<Generator> generators = factoryConfig.generators.stream().map(generatorConfig -> {
             String generatorPath = generatorConfig.path;
+            String filePath = templatesFilePath(basePath, generatorPath);
+            String classPath = "generators/" + generatorPath;
 
+            List<String> mainTemplatesNames = listMainTemplateNames(filePath, classPath, generatorPath);
+            Map<String, String> templateSources = loadTemplateSources(filePath, classPath, mainTemplatesNames);
+            Map<String, String> reachableSources = reachableTemplateSources(templateLoader, generatorPath, templateSources);
             Map<String, PebbleTemplate> mainTemplates =
-                    loadMainTemplatesForGenerator(templateEngines, basePath, generatorPath, schemas);
+                    loadMainTemplatesForGenerator(templateEngines, templateEngine, generatorPath, templateSources,
+                            isCompiledBackend(generatorConfig.templateBackend) ? templateCache : null);
+            generatorTemplateSources.put(generatorPath, templateSources);
+            if (Files.isDirectory(Path.of(filePath))) {
+                templateFolders.put(generatorPath, Path.of(filePath).toAbsolutePath().normalize());
+            }
+            dependencies.put(generatorPath, resolveDependencies(generatorConfig, reachableSources.values()));
 
             logger.info("Evaluate values");
             Map<String, String> valuesContext = new HashMap<>();
@@ -104,7 +273,9 @@ public class Factory {
                         });
             }
 
-            return new Generator(
+            localFingerprints.put(generatorPath, generatorFingerprint(generatorConfig, reachableSources, valuesContext, pluginClasses));
+
+            Generator generator = new Generator(
                     generatorPath,
                     mainTemplates,
                     new Generator.Templates(
@@ -118,31 +289,376 @@ public class Factory {
                     templateEngines.compileInlineTemplate(generatorConfig.postCall),
                     schemas,
                     valuesContext,
-                    templateEngines.getTemplateEvaluator());
+                    templateEngines.getTemplateEvaluator(),
+                    statePath.resolve(manifestFileName(generatorPath)),
+                    resolveParallelism(generatorConfig.parallelism));
+            if (Boolean.TRUE.equals(generatorConfig.batchWrites)) {
+                generator.enableBatchedWrites();
+            }
+            if (generatorConfig.postCallBatchSize != null || generatorConfig.postCallOptional != null) {
+                if (generatorConfig.postCallBatchSize != null && generatorConfig.postCallBatchSize < 0) {
+                    throw new RuntimeException("postCallBatchSize of `" + generatorPath + "` must not be negative");
+                }
+                generator.configurePostCall(
+                        generatorConfig.postCallBatchSize != null ? generatorConfig.postCallBatchSize : 0,
+                        Boolean.TRUE.equals(generatorConfig.postCallOptional));
+            }
+            if (generatorConfig.output != null) {
+                OutputTarget target = OutputTarget.of(generatorConfig.output, basePath, session.getOutputFileSystems());
+                logger.info("Generator `{}` writes to {}", generatorPath, target);
+                Path archive = target.archive();
+                if (archive != null && archives.putIfAbsent(archive, generatorPath) != null) {
+                    throw new RuntimeException("Generators `" + archives.get(archive) + "` and `" + generatorPath + "` write to the same archive " + archive);
+                }
+                generator.writeTo(target);
+            }
+            if (generatorConfig.compile != null) {
+                generator.enableCompilation(createSourceCompiler(basePath, generatorConfig, factoryConfig.generators, dependencies.get(generatorPath)));
+            }
+            return generator;
         }).toList();
+        templateCache.retainUsed();
 
-
+        Map<String, String> generatorFingerprints = new HashMap<>();
         for (Generator generator : generators) {
-            logger.info("Start generator `{}`", generator.getName());
-            generator.generate(scopeOfWork);
+            combinedFingerprint(generator.getName(), localFingerprints, dependencies, generatorFingerprints, new HashSet<>());
+        }
+        if (cache != null) {
+            String scopeFingerprint = fingerprintScopeOfWork(scopeOfWork);
+            for (Generator generator : generators) {
+                generator.enableCache(cache, Hashes.fingerprint()
+                        .add(generatorFingerprints.get(generator.getName()))
+                        .add(scopeFingerprint)
+                        .hex());
+            }
+        }
+
+        GeneratorScheduler scheduler =
+                new GeneratorScheduler(generators, dependencies, resolveParallelism(factoryConfig.parallelism));
+        return new PreparedConfiguration(
+                configFile.getAbsoluteFile().toPath().normalize(),
+                resolveSchemaFiles(basePath, factoryConfig.schemas),
+                templateFolders,
+                generatorTemplateSources,
+                SchemaModel.of(scopeOfWork),
+                schemas,
+                scheduler,
+                generatorFingerprints,
+                Boolean.TRUE.equals(factoryConfig.incremental) ? statePath.resolve("graph-snapshot.json") : null);
+    }
+
+    /**
+     * Configuration with parsed schemas and created generators
+     * @param configFile Absolute path to the configuration file
+     * @param schemaFiles Schema files loaded from the file system, classpath schemas excluded
+     * @param templateFolders Template folders of generators loaded from the file system, keyed by generator name
+     * @param templateSources Main template sources keyed by generator name and template name
+     * @param model Structure of Avro entities in generation order shared by generators
+     * @param schemas Registry generators publish their entities to
+     * @param scheduler Runs generators in dependency order
+     * @param generatorFingerprints Fingerprints of generator inputs other than schemas, including
+     *                              generators they depend on, keyed by generator name
+     * @param snapshotPath Path to the snapshot of the previous generation, null unless incremental
+     */
+    record PreparedConfiguration(
+            Path configFile,
+            List<Path> schemaFiles,
+            Map<String, Path> templateFolders,
+            Map<String, Map<String, String>> templateSources,
+            SchemaModel model,
+            GeneratedSchemas schemas,
+            GeneratorScheduler scheduler,
+            Map<String, String> generatorFingerprints,
+            Path snapshotPath) {
+    }
+
+    /**
+     * Resolves schema specifications loaded from files the same way {@link #loadSchema} does
+     * @param basePath Base directory path
+     * @param schemas List of schema path specifications
+     * @return Absolute paths of existing schema files
+     */
+    private static List<Path> resolveSchemaFiles(String basePath, List<String> schemas) {
+        return schemas.stream()
+                .filter(schemaSpec -> schemaSpec.chars().filter(ch -> ch == ':').count() != 2)
+                .map(schemaSpec -> new File(basePath + "/" + schemaSpec).getAbsoluteFile().toPath().normalize())
+                .filter(Files::exists)
+                .toList();
+    }
+
+    /**
+     * Creates the generation cache if configured
+     * @param basePath Configuration folder
+     * @param cacheConfig Cache configuration, null when disabled
+     * @return Cache or null
+     */
+    private static GenerationCache createCache(String basePath, CacheConfig cacheConfig) {
+        if (cacheConfig == null || cacheConfig.path == null) {
+            return null;
+        }
+        Path cachePath = Path.of(basePath).resolve(cacheConfig.path);
+        long maxSizeMb = cacheConfig.maxSizeMb != null ? cacheConfig.maxSizeMb : 1024;
+        logger.info("Generation cache {} limited to {}MB", cachePath, maxSizeMb);
+        return new GenerationCache(cachePath, maxSizeMb * 1024 * 1024, basePath);
+    }
+
+    /**
+     * Fingerprints the scope of work. Full schema definitions are used instead of the parsing
+     * canonical form, templates may read docs, defaults and custom properties
+     * @param scopeOfWork Avro entities in generation order
+     * @return Fingerprint
+     */
+    private static String fingerprintScopeOfWork(List<AvroEntity> scopeOfWork) {
+        Hashes.Fingerprint fingerprint = Hashes.fingerprint();
+        for (AvroEntity avroEntity : scopeOfWork) {
+            fingerprint.add(avroEntity.schema.toString()).add(String.valueOf(avroEntity.isRoot));
+        }
+        return fingerprint.hex();
+    }
+
+    /**
+     * Fingerprint of the code SOFA runs from, computed once per JVM. The jar manifest carries no
+     * version, so the jar or the class files holding {@link Factory} are hashed instead and any change
+     * of converters, filters or bundled templates changes cache keys.
+     */
+    private static final class CodeVersion {
+        static final String VALUE = codeVersion();
+
+        private static String codeVersion() {
+            Path source;
+            try {
+                source = Path.of(Factory.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to locate the code source of SOFA", e);
+            }
+            try {
+                if (Files.isRegularFile(source)) {
+                    try (InputStream jar = Files.newInputStream(source)) {
+                        return Hashes.sha256(jar);
+                    }
+                }
+                Hashes.Fingerprint fingerprint = Hashes.fingerprint();
+                try (Stream<Path> files = Files.walk(source)) {
+                    for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                        try (InputStream classFile = Files.newInputStream(file)) {
+                            fingerprint.add(source.relativize(file).toString()).add(Hashes.sha256(classFile));
+                        }
+                    }
+                }
+                return fingerprint.hex();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to fingerprint the code of SOFA at " + source, e);
+            }
+        }
+    }
+
+    /**
+     * Fingerprints inputs of a generator other than schemas: SOFA version, sources of all templates
+     * it may load, naming templates, filters, evaluated values and plugins
+     * @param templateSources Sources of templates the generator may load, keyed by namespaced name
+     * @return Fingerprint without generators it depends on
+     */
+    private static String generatorFingerprint(
+            GeneratorConfig generatorConfig,
+            Map<String, String> templateSources,
+            Map<String, String> valuesContext,
+            List<String> pluginClasses) {
+        String basePath = valuesContext.get("basePath");
+        Hashes.Fingerprint fingerprint = Hashes.fingerprint()
+                .add(CodeVersion.VALUE)
+                .add(generatorConfig.path);
+        new TreeMap<>(templateSources).forEach((name, source) -> fingerprint.add(name).add(source));
+        fingerprint.add((String) null);
+        if (generatorConfig.templates != null) {
+            fingerprint.add(generatorConfig.templates.namespace)
+                    .add(generatorConfig.templates.name)
+                    .add(generatorConfig.templates.fullname)
+                    .add(generatorConfig.templates.folder)
+                    .add(generatorConfig.templates.filename);
+        }
+        if (generatorConfig.filters != null) {
+            fingerprint.add(generatorConfig.filters.white != null ? generatorConfig.filters.white : List.of())
+                    .add(generatorConfig.filters.black != null ? generatorConfig.filters.black : List.of());
+        }
+        fingerprint.add(generatorConfig.overrides);
+        fingerprint.add(generatorConfig.output);
+        // the configuration folder differs between checkouts sharing the cache
+        new TreeMap<>(valuesContext).forEach((name, value) ->
+                fingerprint.add(name).add(value.replace(basePath, "${basePath}")));
+        fingerprint.add((String) null);
+        return fingerprint.add(pluginClasses).hex();
+    }
+
+    /**
+     * Combines the fingerprint of a generator with fingerprints of generators it depends on, their
+     * naming and entities affect this generator output
+     */
+    private static String combinedFingerprint(
+            String generatorPath,
+            Map<String, String> localFingerprints,
+            Map<String, Set<String>> dependencies,
+            Map<String, String> combinedFingerprints,
+            Set<String> visiting) {
+        String cached = combinedFingerprints.get(generatorPath);
+        if (cached != null) {
+            return cached;
+        }
+        if (!visiting.add(generatorPath)) {
+            throw new RuntimeException("Cyclic dependency between generators at `" + generatorPath + "`");
+        }
+        Hashes.Fingerprint fingerprint = Hashes.fingerprint().add(localFingerprints.get(generatorPath));
+        for (String dependency : new TreeSet<>(dependencies.getOrDefault(generatorPath, Set.of()))) {
+            if (!dependency.equals(generatorPath) && localFingerprints.containsKey(dependency)) {
+                fingerprint.add(combinedFingerprint(dependency, localFingerprints, dependencies, combinedFingerprints, visiting));
+            }
+        }
+        String combined = fingerprint.hex();
+        visiting.remove(generatorPath);
+        combinedFingerprints.put(generatorPath, combined);
+        return combined;
+    }
+
+    /**
+     * Creates a compiler of generated sources, classes compiled by generators this one depends on
+     * are added to its class path
+     * @param basePath Configuration folder
+     * @param generatorConfig Configuration of the compiled generator
+     * @param generatorConfigs Configurations of all generators
+     * @param dependencies Names of generators the generator depends on
+     * @return Source compiler
+     */
+    private static SourceCompiler createSourceCompiler(String basePath, GeneratorConfig generatorConfig, List<GeneratorConfig> generatorConfigs, Set<String> dependencies) {
+        if (generatorConfig.compile.output == null) {
+            throw new RuntimeException("Compile output of generator `" + generatorConfig.path + "` is missed");
+        }
+        List<String> classPath = new ArrayList<>();
+        if (generatorConfig.compile.classpath != null) {
+            generatorConfig.compile.classpath.forEach(entry -> classPath.add(resolvePath(basePath, entry).toString()));
+        }
+        for (GeneratorConfig dependency : generatorConfigs) {
+            if (dependencies.contains(dependency.path) && dependency.compile != null && dependency.compile.output != null) {
+                classPath.add(resolvePath(basePath, dependency.compile.output).toString());
+            }
+        }
+        return new SourceCompiler(resolvePath(basePath, generatorConfig.compile.output), classPath, generatorConfig.compile.options);
+    }
+
+    private static Path resolvePath(String basePath, String path) {
+        return Path.of(path.startsWith("/") ? path : basePath + "/" + path).normalize();
+    }
+
+    /**
+     * Resolves the folder holding generation state of a configuration, configurations sharing a
+     * folder get separate subfolders named after the configuration file
+     * @param basePath Configuration folder
+     * @param configFile Configuration file
+     * @param statePath Configured state path, null for {@code .sofa}
+     * @return Absolute state folder of the configuration
+     */
+    private static Path resolveStatePath(String basePath, File configFile, String statePath) {
+        Path path = Path.of(basePath).resolve(statePath != null ? statePath : ".sofa");
+        String configName = configFile.getName();
+        int extension = configName.lastIndexOf('.');
+        return path.resolve(extension > 0 ? configName.substring(0, extension) : configName);
+    }
+
+    /**
+     * Builds a manifest file name for a generator, generator paths may contain separators
+     * @param generatorPath Generator path from the configuration
+     * @return Manifest file name
+     */
+    private static String manifestFileName(String generatorPath) {
+        return generatorPath.replaceAll("[^A-Za-z0-9._-]", "_") + ".sofa-manifest.json";
+    }
+
+    /**
+     * Collects generators a generator depends on: the overridden one, explicitly declared ones and
+     * ones referenced by the {@code from} filter in templates it may load, including macro templates
+     * it imports
+     * @param generatorConfig Generator configuration
+     * @param templateSources Sources of all templates the generator may load
+     * @return Names of generators to run before this one
+     */
+    private static Set<String> resolveDependencies(GeneratorConfig generatorConfig, Collection<String> templateSources) {
+        Set<String> dependencies = new LinkedHashSet<>();
+        if (generatorConfig.overrides != null) {
+            dependencies.add(generatorConfig.overrides);
+        }
+        if (generatorConfig.dependsOn != null) {
+            dependencies.addAll(generatorConfig.dependsOn);
+        }
+        dependencies.addAll(GeneratorScheduler.detectFromReferences(templateSources));
+        logger.debug("Generator `{}` depends on {}", generatorConfig.path, dependencies);
+        return dependencies;
+    }
+
+    /**
+     * Resolves configured parallelism to a number of threads
+     * @param parallelism Configured value, null for sequential, 0 for all available processors
+     * @return Number of threads to use, at least 1
+     */
+    private static int resolveParallelism(Integer parallelism) {
+        if (parallelism == null) {
+            return 1;
+        }
+        if (parallelism == 0) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        if (parallelism < 0) {
+            throw new RuntimeException("Parallelism must not be negative, got " + parallelism);
+        }
+        return parallelism;
+    }
+
+    /**
+     * Resolves the configured template backend of a generator
+     * @param templateBackend Configured value, null for the interpreter
+     * @return Whether templates are compiled to Java classes
+     */
+    private static boolean isCompiledBackend(String templateBackend) {
+        if (templateBackend == null || templateBackend.equals("interpreter")) {
+            return false;
+        }
+        if (templateBackend.equals("compiled")) {
+            return true;
         }
+        throw new RuntimeException("Unknown template backend `" + templateBackend + "`, expected `interpreter` or `compiled`");
     }
 
+    /**
+     * Loads main templates of a generator through the engine shared by generators
+     * @param templateEngine Engine of the configuration
+     * @param templateSources Main template sources keyed by template name
+     * @param templateCache Compiled templates of previous runs, null to interpret templates
+     * @return Main templates keyed by template name
+     */
     private static Map<String, PebbleTemplate> loadMainTemplatesForGenerator(
             TemplateEngineFactory templateEngines,
-            String basePath,
+            PebbleEngine templateEngine,
             String generatorPath,
-            Map<String, Map<String, Entity>> schemas) {
-        String filePath = basePath + "/" + generatorPath;
-        String classPath = "generators/" + generatorPath;
-        if (generatorPath.startsWith("/")) {
-            filePath = generatorPath;
+            Map<String, String> templateSources,
+            TemplateCache templateCache) {
+        Map<String, PebbleTemplate> mainTemplates = new HashMap<>();
+        if (templateCache != null) {
+            Map<String, String> namespacedSources = new LinkedHashMap<>();
+            templateSources.forEach((name, source) -> namespacedSources.put(NamespacedLoader.name(generatorPath, name), source));
+            Map<String, PebbleTemplate> compiled = templateEngines.compileTemplates(templateEngine, namespacedSources, templateCache);
+            templateSources.keySet().forEach(name -> mainTemplates.put(name, compiled.get(NamespacedLoader.name(generatorPath, name))));
+        } else {
+            templateSources.keySet().forEach(name -> mainTemplates.put(name, templateEngine.getTemplate(NamespacedLoader.name(generatorPath, name))));
         }
+        logger.info("Create generator `{}`, with templates: \r\n{}", generatorPath, String.join("\r\n", mainTemplates.keySet().stream().toList()));
+        return mainTemplates;
+    }
 
-        //Configure for regular and class loader
-        PebbleEngine pebbleEngineForPath =
-                templateEngines.createPebbleEngineForPath(filePath, classPath, schemas);
-
+    /**
+     * Lists names of main templates of a generator, a regular folder takes precedence over classpath
+     * @param filePath File system path to templates
+     * @param classPath Classpath to templates
+     * @param generatorPath Generator path from the configuration
+     * @return Template names without extension
+     */
+    private static List<String> listMainTemplateNames(String filePath, String classPath, String generatorPath) {
         List<String> mainTemplatesNames = new ArrayList<>();
         //regular external filepath
         Path path = Path.of(filePath);
@@ -208,11 +724,62 @@ public class Factory {
             }
         }
 
-        Map<String, PebbleTemplate> mainTemplates = mainTemplatesNames.stream()
-                .map(pebbleEngineForPath::getTemplate)
-                .collect(Collectors.toMap(PebbleTemplate::getName, identity()));
-        logger.info("Create generator `{}`, with templates: \r\n{}", generatorPath, String.join("\r\n", mainTemplates.keySet().stream().toList()));
-        return mainTemplates;
+        return mainTemplatesNames;
+    }
+
+    /**
+     * Resolves the folder of generator templates
+     * @param basePath Configuration folder
+     * @param generatorPath Generator path from the configuration, absolute or relative to the configuration folder
+     * @return File system path to templates
+     */
+    private static String templatesFilePath(String basePath, String generatorPath) {
+        return generatorPath.startsWith("/") ? generatorPath : basePath + "/" + generatorPath;
+    }
+
+    /**
+     * Collects sources of all templates a generator may load: its own templates and templates they
+     * include, import or extend, from its own folder or from other generators
+     * @param templateLoader Loader of the engine with all generators registered
+     * @param generatorPath Generator path from the configuration
+     * @param templateSources Sources of the generator templates keyed by template name
+     * @return Template sources keyed by namespaced name
+     */
+    private static Map<String, String> reachableTemplateSources(
+            NamespacedLoader templateLoader, String generatorPath, Map<String, String> templateSources) {
+        Map<String, String> namespacedSources = new HashMap<>();
+        templateSources.forEach((name, source) -> namespacedSources.put(NamespacedLoader.name(generatorPath, name), source));
+        return templateLoader.withReferenced(namespacedSources);
+    }
+
+    /**
+     * Reads sources of templates the same way the template loader resolves them: regular file first,
+     * classpath resource otherwise
+     * @param filePath File system path to templates
+     * @param classPath Classpath to templates
+     * @param templateNames Template names without extension
+     * @return Template sources keyed by template name
+     */
+    private static Map<String, String> loadTemplateSources(String filePath, String classPath, List<String> templateNames) {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (String templateName : templateNames) {
+            Path path = Path.of(filePath, templateName + ".peb");
+            try {
+                if (Files.exists(path)) {
+                    sources.put(templateName, Files.readString(path));
+                    continue;
+                }
+                try (InputStream is = Factory.class.getClassLoader().getResourceAsStream(classPath + "/" + templateName + ".peb")) {
+                    if (is == null) {
+                        throw new RuntimeException("Unable to read template `" + templateName + "` from " + path + " or " + classPath);
+                    }
+                    sources.put(templateName, new String(is.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read template `" + templateName + "`", e);
+            }
+        }
+        return sources;
     }
 
     /**
@@ -251,11 +818,14 @@ public class Factory {
      * </ul>
      * Schemas are loaded strictly in the order they are defined in the {@code schemas} list.
      *
+     * Parsed schemas are shared with other configurations through {@code schemaParseCache}.
+     *
      * @param basePath Base directory path
      * @param schemas  List of schema path specifications
+     * @param schemaParseCache Cache of parsed schemas
      * @return SchemaDefinition containing parsed schemas
      */
-    private static SchemaDefinition loadSchema(String basePath, List<String> schemas) {
+    private static SchemaDefinition loadSchema(String basePath, List<String> schemas, SchemaParseCache schemaParseCache) {
         SchemaDefinition schemaDefinition = new SchemaDefinition();
         Parser parser = new Parser();
         ClassLoader classLoader = Factory.class.getClassLoader();
@@ -283,7 +853,8 @@ public class Factory {
                             throw new RuntimeException("Schema `" + schemaSpec + "` not found as classpath resource `" +
                                     resourcePath + "`; ensure dependency `" + ga + "` is on the generator classpath");
                         }
-                        schema = parser.parse(is);
+                        schema = schemaParseCache.parse(parser, "classpath:" + resourcePath,
+                                new String(is.readAllBytes(), StandardCharsets.UTF_8));
                     }
                 } else {
                     // Local schema: relative path resolved against basePath, with optional classpath fallback
@@ -292,7 +863,8 @@ public class Factory {
 
                     if (file.exists()) {
                         logger.info("Parsing schema from file {}", file.getAbsolutePath());
-                        schema = parser.parse(file);
+                        schema = schemaParseCache.parse(parser, file.getAbsolutePath(),
+                                Files.readString(file.toPath()));
                     } else {
                         String resourcePath = "sofa/" + schemaSpec;
                         logger.info("File `{}` not found, trying to load schema from classpath resource `{}`",
@@ -302,7 +874,8 @@ public class Factory {
                                 throw new RuntimeException("Schema `" + schemaSpec + "` not found as file `" +
                                         file.getAbsolutePath() + "` or classpath resource `" + resourcePath + "`");
                             }
-                            schema = parser.parse(is);
+                            schema = schemaParseCache.parse(parser, "classpath:" + resourcePath,
+                                    new String(is.readAllBytes(), StandardCharsets.UTF_8));
                         }
                     }
                 }
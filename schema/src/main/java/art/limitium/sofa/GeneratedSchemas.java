@@ -0,0 +1,125 @@
+package art.limitium.sofa;
+
+import art.limitium.sofa.schema.Entity;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe registry of entities created by generators, keyed by generator name and Avro full
+ * name.
+ *
+ * <p>Generators declared upfront are awaited: a lookup blocks until the generator has published its
+ * entities or failed. Lookups of unknown generators fail immediately.
+ */
+public class GeneratedSchemas {
+    private final Map<String, CompletableFuture<Supplier<Map<String, Entity>>>> schemas =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Declares a generator which is going to publish its entities, lookups will wait for it
+     *
+     * @param name Generator name
+     */
+    public void declare(String name) {
+        schemas.computeIfAbsent(name, n -> new CompletableFuture<>());
+    }
+
+    /**
+     * Publishes entities created by a generator and releases all waiting lookups
+     *
+     * @param name Generator name
+     * @param entities Entities keyed by Avro full name
+     */
+    public void publish(String name, Map<String, Entity> entities) {
+        Map<String, Entity> published = Collections.unmodifiableMap(entities);
+        publish(name, () -> published);
+    }
+
+    /**
+     * Publishes entities created on first lookup, used when a generator output is restored without
+     * creating entities
+     *
+     * @param name Generator name
+     * @param entities Creates entities keyed by Avro full name, called at most once
+     */
+    public void publishLazily(String name, Supplier<Map<String, Entity>> entities) {
+        publish(name, new Memoized(entities));
+    }
+
+    private void publish(String name, Supplier<Map<String, Entity>> published) {
+        CompletableFuture<Supplier<Map<String, Entity>>> future =
+                schemas.computeIfAbsent(name, n -> new CompletableFuture<>());
+        if (!future.complete(published)) {
+            // republished by a subsequent run
+            schemas.put(name, CompletableFuture.completedFuture(published));
+        }
+    }
+
+    /**
+     * Marks a declared generator as failed, waiting lookups fail as well
+     *
+     * @param name Generator name
+     * @param cause Failure of the generator
+     */
+    public void fail(String name, Throwable cause) {
+        CompletableFuture<Supplier<Map<String, Entity>>> future = schemas.get(name);
+        if (future != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Gets entities of a generator, waits until a declared generator has published them
+     *
+     * @param name Generator name
+     * @return Entities keyed by Avro full name
+     */
+    public Map<String, Entity> get(String name) {
+        CompletableFuture<Supplier<Map<String, Entity>>> future = schemas.get(name);
+        if (future == null) {
+            throw new RuntimeException(
+                    "Unable to find generator `"
+                            + name
+                            + "`, available generators: "
+                            + String.join(",", names()));
+        }
+        try {
+            return future.join().get();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Generator `" + name + "` failed", e.getCause());
+        }
+    }
+
+    /**
+     * Gets names of all declared or published generators
+     *
+     * @return Sorted generator names
+     */
+    public Set<String> names() {
+        return new TreeSet<>(schemas.keySet());
+    }
+
+    private static final class Memoized implements Supplier<Map<String, Entity>> {
+        private Supplier<Map<String, Entity>> delegate;
+        private Map<String, Entity> entities;
+
+        private Memoized(Supplier<Map<String, Entity>> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized Map<String, Entity> get() {
+            if (entities == null) {
+                entities = Collections.unmodifiableMap(delegate.get());
+                delegate = null;
+            }
+            return entities;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package art.limitium.sofa;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed cache of generator outputs.
+ *
+ * <p>File contents are stored once under {@code objects/<sha256>}, a generator output is stored as
+ * an entry under {@code entries/<key>.json} mapping file paths to content hashes. Paths below the
+ * configuration folder are stored relative to it, so the cache folder can be shared by checkouts
+ * at different locations. Files are written atomically, a concurrent reader sees either a complete
+ * file or no file, an entry with missing objects is a miss.
+ *
+ * <p>When the cache grows beyond its size limit, least recently used entries are removed together
+ * with objects no remaining entry refers to. Objects are stored before the entry referring to them,
+ * possibly by another generator or another process sharing the folder, so an unreferenced object is
+ * only removed once it has not been stored or reused for a grace period.
+ */
+final class GenerationCache {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationCache.class);
+    private static final Gson gson = new Gson();
+    private static final String BASE_PATH = "${basePath}";
+    /** Time a store may take between storing its objects and its entry */
+    static final Duration OBJECT_GRACE_PERIOD = Duration.ofHours(1);
+
+    private final Path objects;
+    private final Path entries;
+    private final long maxSizeBytes;
+    private final String basePath;
+    private final Duration objectGracePeriod;
+
+    /**
+     * @param root Cache folder
+     * @param maxSizeBytes Size limit of the cache folder
+     * @param basePath Configuration folder, paths below it are stored relative to it
+     */
+    GenerationCache(Path root, long maxSizeBytes, String basePath) {
+        this(root, maxSizeBytes, basePath, OBJECT_GRACE_PERIOD);
+    }
+
+    /**
+     * @param root Cache folder
+     * @param maxSizeBytes Size limit of the cache folder
+     * @param basePath Configuration folder, paths below it are stored relative to it
+     * @param objectGracePeriod Time an unreferenced object is kept after it was last stored
+     */
+    GenerationCache(Path root, long maxSizeBytes, String basePath, Duration objectGracePeriod) {
+        this.objectGracePeriod = objectGracePeriod;
+        this.objects = root.resolve("objects");
+        this.entries = root.resolve("entries");
+        this.maxSizeBytes = maxSizeBytes;
+        this.basePath = basePath;
+        try {
+            Files.createDirectories(objects);
+            Files.createDirectories(entries);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create cache folder " + root, e);
+        }
+    }
+
+    /**
+     * Stores file content unless the same content is already stored, stored content is marked as
+     * recently stored to keep it through the grace period
+     *
+     * @param sha256 Content hash
+     * @param content File content
+     */
+    void storeObject(String sha256, byte[] content) {
+        Path object = objects.resolve(sha256);
+        try {
+            if (Files.exists(object)) {
+                try {
+                    Files.setLastModifiedTime(object, FileTime.fromMillis(System.currentTimeMillis()));
+                    return;
+                } catch (NoSuchFileException e) {
+                    // evicted concurrently, stored again
+                }
+            }
+            writeAtomically(object, content);
+        } catch (IOException e) {
+            logger.warn("Unable to store object {} in cache", sha256, e);
+        }
+    }
+
+    /**
+     * Stores a generator output, file contents must be stored before
+     *
+     * @param key Cache key
+     * @param outputs Content hashes keyed by file path
+     * @param files Files passed to postCall, in order
+     */
+    void store(String key, Map<String, String> outputs, List<String> files) {
+        Entry entry = new Entry();
+        entry.outputs = new TreeMap<>();
+        outputs.forEach((path, sha256) -> entry.outputs.put(toCachePath(path), sha256));
+        entry.files = files.stream().map(this::toCachePath).toList();
+        try {
+            writeAtomically(
+                    entries.resolve(key + ".json"), gson.toJson(entry).getBytes(StandardCharsets.UTF_8));
+            logger.info("Stored {} files in cache under {}", entry.outputs.size(), key);
+        } catch (IOException e) {
+            logger.warn("Unable to store cache entry {}", key, e);
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Loads a generator output
+     *
+     * @param key Cache key
+     * @return Stored output or empty on a miss
+     */
+    Optional<CachedOutput> load(String key) {
+        Path entryPath = entries.resolve(key + ".json");
+        Entry entry;
+        try (Reader reader = Files.newBufferedReader(entryPath, StandardCharsets.UTF_8)) {
+            entry = gson.fromJson(reader, Entry.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Unable to read cache entry {}", key, e);
+            return Optional.empty();
+        }
+        if (entry == null || entry.outputs == null || entry.files == null) {
+            return Optional.empty();
+        }
+
+        Map<String, String> contents = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> output : entry.outputs.entrySet()) {
+                byte[] content = Files.readAllBytes(objects.resolve(output.getValue()));
+                contents.put(fromCachePath(output.getKey()), new String(content, StandardCharsets.UTF_8));
+            }
+            // keeps recently used entries from eviction
+            Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            logger.info("Cache entry {} refers to evicted content", key);
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("Unable to read cache entry {}", key, e);
+            return Optional.empty();
+        }
+        return Optional.of(
+                new CachedOutput(contents, entry.files.stream().map(this::fromCachePath).toList()));
+    }
+
+    /**
+     * Removes least recently used entries and objects they alone refer to until the cache fits its
+     * limit. Entries and objects are listed and read once per eviction, objects within the grace
+     * period are kept even if no entry refers to them.
+     */
+    private synchronized void evict() {
+        try {
+            Map<Path, Long> entrySizes = sizes(entries);
+            Map<Path, Long> objectSizes = sizes(objects);
+            long size = entrySizes.values().stream().mapToLong(Long::longValue).sum()
+                    + objectSizes.values().stream().mapToLong(Long::longValue).sum();
+            if (size <= maxSizeBytes) {
+                return;
+            }
+            logger.info("Cache size {} bytes exceeds limit {} bytes, evicting", size, maxSizeBytes);
+
+            List<Path> byLastUse = new ArrayList<>(entrySizes.keySet());
+            byLastUse.sort(Comparator.comparing(GenerationCache::lastModified));
+            Map<Path, Collection<String>> referencesOf = new HashMap<>();
+            Map<String, Integer> referenceCounts = new HashMap<>();
+            for (Path entryPath : byLastUse) {
+                Collection<String> references = readReferences(entryPath);
+                referencesOf.put(entryPath, references);
+                references.forEach(sha256 -> referenceCounts.merge(sha256, 1, Integer::sum));
+            }
+
+            long keepSince = System.currentTimeMillis() - objectGracePeriod.toMillis();
+            Set<String> unreferenced = new HashSet<>();
+            for (Path object : objectSizes.keySet()) {
+                String name = object.getFileName().toString();
+                if (!name.startsWith(".tmp-") && !referenceCounts.containsKey(name)) {
+                    unreferenced.add(name);
+                }
+            }
+            size -= deleteObjects(unreferenced, objectSizes, keepSince);
+
+            for (Path evicted : byLastUse) {
+                if (size <= maxSizeBytes) {
+                    break;
+                }
+                Files.deleteIfExists(evicted);
+                size -= entrySizes.get(evicted);
+                Set<String> released = new HashSet<>();
+                for (String sha256 : referencesOf.get(evicted)) {
+                    if (referenceCounts.merge(sha256, -1, Integer::sum) == 0) {
+                        released.add(sha256);
+                    }
+                }
+                size -= deleteObjects(released, objectSizes, keepSince);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to evict cache entries", e);
+        }
+    }
+
+    /** Deletes objects last stored before a time, returns the number of deleted bytes */
+    private long deleteObjects(Set<String> names, Map<Path, Long> objectSizes, long keepSince) throws IOException {
+        long deleted = 0;
+        for (String name : names) {
+            Path object = objects.resolve(name);
+            Long objectSize = objectSizes.get(object);
+            if (objectSize != null && lastModified(object).toMillis() < keepSince) {
+                Files.deleteIfExists(object);
+                deleted += objectSize;
+            }
+        }
+        return deleted;
+    }
+
+    private static Collection<String> readReferences(Path entryPath) throws IOException {
+        try (Reader reader = Files.newBufferedReader(entryPath, StandardCharsets.UTF_8)) {
+            Entry entry = gson.fromJson(reader, Entry.class);
+            return entry != null && entry.outputs != null ? new HashSet<>(entry.outputs.values()) : List.of();
+        } catch (NoSuchFileException e) {
+            // evicted concurrently
+            return List.of();
+        } catch (JsonParseException e) {
+            return List.of();
+        }
+    }
+
+    private String toCachePath(String path) {
+        if (path.startsWith(basePath + "/")) {
+            return BASE_PATH + path.substring(basePath.length());
+        }
+        return path;
+    }
+
+    private String fromCachePath(String path) {
+        if (path.startsWith(BASE_PATH + "/")) {
+            return basePath + path.substring(BASE_PATH.length());
+        }
+        return path;
+    }
+
+    /**
+     * Writes a file through a temporary sibling, so readers never see a partial file
+     */
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), ".tmp-", null);
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // stored concurrently
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Map<Path, Long> sizes(Path folder) throws IOException {
+        Map<Path, Long> sizes = new HashMap<>();
+        try (Stream<Path> files = Files.list(folder)) {
+            files.forEach(file -> sizes.put(file, sizeOrZero(file)));
+        }
+        return sizes;
+    }
+
+    private static long sizeOrZero(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Generator output restored from the cache
+     *
+     * @param contents File contents keyed by file path
+     * @param files Files passed to postCall, in order
+     */
+    record CachedOutput(Map<String, String> contents, List<String> files) {}
+
+    /** Cache entry file layout */
+    private static class Entry {
+        Map<String, String> outputs;
+        List<String> files;
+    }
+}
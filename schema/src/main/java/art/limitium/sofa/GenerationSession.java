@@ -0,0 +1,56 @@
+package art.limitium.sofa;
+
+import java.nio.file.FileSystem;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State shared by all configurations generated in one JVM run: parsed schemas and template engine
+ * factories with their discovered plugins and compiled inline templates, and output file systems
+ * given by the caller.
+ */
+final class GenerationSession {
+    private final ClassLoader classLoader;
+    private final Map<String, FileSystem> outputFileSystems;
+    private final SchemaParseCache schemaParseCache = new SchemaParseCache();
+    private final Map<List<String>, TemplateEngineFactory> templateEngines =
+            new ConcurrentHashMap<>();
+
+    GenerationSession(ClassLoader classLoader) {
+        this(classLoader, Map.of());
+    }
+
+    /**
+     * @param classLoader Class loader plugins are discovered with
+     * @param outputFileSystems File systems generators can write to, keyed by name
+     */
+    GenerationSession(ClassLoader classLoader, Map<String, FileSystem> outputFileSystems) {
+        this.classLoader = classLoader;
+        this.outputFileSystems = Map.copyOf(outputFileSystems);
+    }
+
+    /**
+     * Gets file systems given by the caller, selected by {@code output: memory:<name>}
+     *
+     * @return File systems keyed by name
+     */
+    Map<String, FileSystem> getOutputFileSystems() {
+        return outputFileSystems;
+    }
+
+    SchemaParseCache getSchemaParseCache() {
+        return schemaParseCache;
+    }
+
+    /**
+     * Gets a template engine factory for a set of plugins, plugins are discovered once per set
+     *
+     * @param pluginClassNames Fully-qualified plugin class names in configuration order
+     * @return Shared template engine factory
+     */
+    TemplateEngineFactory getTemplateEngines(List<String> pluginClassNames) {
+        return templateEngines.computeIfAbsent(
+                List.copyOf(pluginClassNames), plugins -> new TemplateEngineFactory(classLoader, plugins));
+    }
+}
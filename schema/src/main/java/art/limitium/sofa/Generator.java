@@ -2,18 +2,22 @@ package art.limitium.sofa;
 
 import art.limitium.sofa.config.FiltersConfig;
 import art.limitium.sofa.schema.Entity;
+import art.limitium.sofa.schema.EntityGraph;
 import art.limitium.sofa.schema.EnumEntity;
 import art.limitium.sofa.schema.RecordEntity;
 import art.limitium.sofa.schema.Type;
+import art.limitium.sofa.schema.Types;
 import com.mitchellbosecke.pebble.template.PebbleTemplate;
 import org.apache.avro.Schema;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class Generator {
     private final String name;
@@ -22,11 +26,24 @@ public class Generator {
     private final String overrides;
     private final FiltersConfig filters;
     public PebbleTemplate postCall;
-    private final Map<String, Map<String, Entity>> schemas;
+    private final GeneratedSchemas schemas;
     private final Map<String, String> valuesContext;
     private final String basePath;
     private final TemplateEvaluator templateEvaluator;
-    private String folder;
+    private final Path manifestPath;
+    private final int parallelism;
+    private GeneratorOutput output;
+    private boolean batchedWrites;
+    private OutputTarget target = OutputTarget.FOLDERS;
+    private SourceCompiler compiler;
+    private int postCallBatchSize;
+    private boolean postCallOptional;
+    private CompletableFuture<Void> postCallRun;
+    /** Writes the manifest and the cache entry of the last generation once its postCall succeeded */
+    private Runnable pendingCommit;
+    private final Map<String, String> origins = new ConcurrentHashMap<>();
+    private GenerationCache cache;
+    private String cacheKey;
 
     /**
      * Creates a new Generator instance
@@ -37,8 +54,11 @@ public class Generator {
      * @param overrides name generators to override
      * @param filters Configuration for filtering entities
      * @param postCall Template for post-generation command
-     * @param schemas Map of schema name to entities
+     * @param schemas Registry of entities published by generators
      * @param valuesContext Context values for template evaluation
+     * @param templateEvaluator Evaluator used for inline templates
+     * @param manifestPath Path to the manifest of generated files, null to always rewrite all files
+     * @param parallelism Number of entities rendered concurrently, 1 renders sequentially
      */
     public Generator(
             String name,
@@ -47,9 +67,11 @@ public class Generator {
             String overrides,
             FiltersConfig filters,
             PebbleTemplate postCall,
-            Map<String, Map<String, Entity>> schemas,
+            GeneratedSchemas schemas,
             Map<String, String> valuesContext,
-            TemplateEvaluator templateEvaluator) {
+            TemplateEvaluator templateEvaluator,
+            Path manifestPath,
+            int parallelism) {
         this.name = name;
         this.mainTemplates = mainTemplates;
         this.templates = templates;
@@ -60,10 +82,13 @@ public class Generator {
         this.valuesContext = valuesContext;
         this.basePath = valuesContext.get("basePath");
         this.templateEvaluator = templateEvaluator;
+        this.manifestPath = manifestPath;
+        this.parallelism = parallelism;
     }
 
     /**
-     * Evaluates a template and writes output to a file
+     * Evaluates a template and writes output to a file, the file is left untouched when its content
+     * is the same
      *
      * @param template The template to evaluate
      * @param context Context map for template evaluation
@@ -71,8 +96,9 @@ public class Generator {
      */
     public void evaluateTemplateToFile(PebbleTemplate template, Map<String, Object> context, String filePath) {
         Factory.logger.debug("Evaluate template {} to file {} with context {}", template, filePath, context.keySet());
-        try (FileWriter fileWriter = new FileWriter(filePath)) {
-            template.evaluate(fileWriter, context);
+        try (RenderBuffer buffer = RenderBuffer.acquire()) {
+            template.evaluate(buffer, context);
+            output.write(filePath, buffer.encode());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -84,17 +110,114 @@ public class Generator {
      * @param avroEntities List of Avro entities to generate code for
      */
     public void generate(List<AvroEntity> avroEntities) {
+        generate(SchemaModel.of(avroEntities), null);
+        awaitPostCall();
+    }
+
+    /**
+     * Processes Avro entities and generates code for entities affected by changes. Entities are
+     * created and published for all Avro entities either way.
+     *
+     * @param model Structure of Avro entities shared by generators of a configuration
+     * @param changes Changes selecting entities to render, null renders all entities
+     */
+    public void generate(SchemaModel model, Invalidation changes) {
+        target.open();
+        try {
+            generateToTarget(model, changes);
+        } finally {
+            target.close();
+        }
+    }
+
+    private void generateToTarget(SchemaModel model, Invalidation changes) {
+        output = new GeneratorOutput(name, manifestPath, cache, batchedWrites, target);
+        if (compiler != null) {
+            output.retainContents();
+            origins.clear();
+        }
+        Invalidation invalidation = changes;
+        if (changes != null && !output.isPreviousOutputIntact()) {
+            Factory.logger.info("Previous output of `{}` is missing, render all entities", name);
+            invalidation = null;
+        }
+        if (cache != null && invalidation == null) {
+            Optional<GenerationCache.CachedOutput> cached = cache.load(cacheKey);
+            if (cached.isPresent()) {
+                restore(model, cached.get());
+                return;
+            }
+        }
+
+        if(mainTemplates.containsKey("schema") && (invalidation == null || invalidation.rendersSchema())){
+            String fileName = evaluateFolderFileName("", Collections.singletonMap("fullname", "schema"), "", Collections.singletonMap("fullname", "schema"));
+            origins.put(fileName, "template `schema`");
+            evaluateTemplateToFile(mainTemplates.get("schema"), extendValuesContext(Map.of("entities", model.avroEntities())), fileName);
+        }
+
+        CreatedEntities created = createEntities(model);
+        schemas.publish(name, created.byAvroName());
+
+        List<Entity> toRender = created.toGenerate();
+        if (invalidation != null) {
+            Invalidation selection = invalidation;
+            toRender = toRender.stream()
+                    .filter(entity -> selection.affects(entity.getSchema().getFullName(), templateNameFor(entity)))
+                    .toList();
+            Factory.logger.info("Render {} of {} entities affected by changes", toRender.size(), created.toGenerate().size());
+        }
+
+        List<String> files = generateAll(toRender);
+        output.flush();
+        if (invalidation != null) {
+            output.keepUnwritten();
+        }
+        compileSources();
+        runPostCall(files);
+        GeneratorOutput generated = output;
+        boolean storesInCache = cache != null && invalidation == null;
+        pendingCommit = () -> {
+            if (storesInCache) {
+                cache.store(cacheKey, generated.hashes(), files);
+            }
+            generated.commit();
+        };
+    }
+
+    /**
+     * Restores generated files from the cache without rendering templates, entities are created
+     * only if another generator looks them up
+     *
+     * @param model Structure of Avro entities the output was generated for
+     * @param cached Cached output
+     */
+    private void restore(SchemaModel model, GenerationCache.CachedOutput cached) {
+        Factory.logger.info("Restore generator `{}` output from cache {}", name, cacheKey);
+        schemas.publishLazily(name, () -> createEntities(model).byAvroName());
+        cached.contents().forEach(output::write);
+        output.flush();
+        compileSources();
+        runPostCall(cached.files());
+        pendingCommit = output::commit;
+    }
+
+    /**
+     * Creates naming views of entities bound to a graph resolving their relations, structure is taken
+     * from the shared model
+     *
+     * @param model Structure of Avro entities
+     * @return Created entities
+     */
+    private CreatedEntities createEntities(SchemaModel model) {
         Map<String, Entity> entities = new HashMap<>();
         Map<String, Entity> mapByAvroName = new HashMap<>();
+        Types types = new Types(mapByAvroName);
         List<Entity> toGenerate = new ArrayList<>();
+        EntityGraph graph = new EntityGraph(model.structure());
 
-        if(mainTemplates.containsKey("schema")){
-            String fileName = evaluateFolderFileNameCreateFolder("", Collections.singletonMap("fullname", "schema"), "", Collections.singletonMap("fullname", "schema"));
-            evaluateTemplateToFile(mainTemplates.get("schema"), extendValuesContext(Map.of("entities", avroEntities)), fileName);
-        }
-
-        for (AvroEntity avroEntity : avroEntities) {
-            boolean shouldBeGenerated = shouldBeGenerated(avroEntity);
+        for (SchemaModel.EntityModel entityModel : model.entities()) {
+            AvroEntity avroEntity = entityModel.avro();
+            boolean shouldBeGenerated = shouldBeGenerated(entityModel);
 
             String namespace = generateNamespace(avroEntity.schema);
             String name = generateName(avroEntity.schema);
@@ -113,82 +236,149 @@ public class Generator {
 
             Entity entity = null;
             if (avroEntity.schema.getType() == Schema.Type.ENUM) {
-                entity = new EnumEntity(namespace, name, fullname, avroEntity.schema, avroEntity.schema.getEnumSymbols());
+                entity = new EnumEntity(entityModel.id(), namespace, name, fullname, avroEntity.schema, avroEntity.schema.getEnumSymbols());
             }
             if (avroEntity.schema.getType() == Schema.Type.RECORD) {
-                List<RecordEntity.Field> fields = new ArrayList<>();
-
-                for (Schema.Field field : avroEntity.schema.getFields()) {
-                    Type type = Type.fromSchema(field.schema(), mapByAvroName);
-                    Factory.logger.debug("Create field `{}` from type `{}` to `{}`", field.name(), field.schema().getType(), type);
-                    fields.add(new RecordEntity.Field(field.name(), type));
+                List<RecordEntity.Field> fields = entityModel.sharedFields();
+                if (fields == null) {
+                    fields = new ArrayList<>();
+                    for (SchemaModel.FieldModel field : entityModel.fields()) {
+                        if (field.shared() != null) {
+                            fields.add(field.shared());
+                            continue;
+                        }
+                        Type type = types.of(field.schema());
+                        Factory.logger.debug("Create field `{}` from type `{}` to `{}`", field.name(), field.schema().getType(), type);
+                        fields.add(new RecordEntity.Field(field.name(), type));
+                    }
                 }
-                entity = new RecordEntity(namespace, name, fullname, avroEntity.schema, fields, avroEntity.isRoot);
+                entity = new RecordEntity(entityModel.id(), namespace, name, fullname, avroEntity.schema, fields, entityModel.isRoot(), entityModel.isOwner(), entityModel.isDependent(), graph);
             }
 
             if (entity != null) {
                 entities.put(entity.getFullname(), entity);
                 mapByAvroName.put(avroEntity.getFullname(), entity);
+                graph.bind(entity);
                 if (shouldBeGenerated) {
                     toGenerate.add(entity);
                 }
             }
         }
 
-        schemas.put(name, mapByAvroName);
-
         Factory.logger.info("{} Entities created", entities.size());
+        return new CreatedEntities(mapByAvroName, toGenerate);
+    }
 
-        for (AvroEntity avroEntity : avroEntities) {
-            Entity entity = mapByAvroName.get(avroEntity.getFullname());
-            if (entity instanceof RecordEntity recordEntity) {
-                //Regular direct dependencies
-                for (AvroEntity dependency : avroEntity.dependencies.values()) {
-                    Entity dependencyEntity = mapByAvroName.get(dependency.getFullname());
-                    recordEntity.getDependencies().add(dependencyEntity);
-                    if(dependencyEntity instanceof RecordEntity dependencyRecordEntity){
-                        dependencyRecordEntity.getParents().add(recordEntity);
-                    }
-                }
+    /**
+     * Compiles generated Java sources of this run and previous runs kept by it, unless none of them
+     * changed and the classes are in place
+     */
+    private void compileSources() {
+        if (compiler == null) {
+            return;
+        }
+        List<String> javaFiles = output.hashes().keySet().stream().filter(f -> f.endsWith(".java")).toList();
+        if (output.changedOf(javaFiles).isEmpty() && Files.exists(compiler.output())) {
+            Factory.logger.info("No sources of `{}` changed, skip compilation", name);
+            return;
+        }
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (String javaFile : javaFiles) {
+            sources.put(javaFile, output.read(javaFile));
+        }
+        compiler.compile(name, sources, file -> origins.getOrDefault(file, "unchanged file"));
+    }
 
-                //1-N relations
-                for (AvroEntity ownerAvro : avroEntity.owners) {
-                    Entity ownerEntity = mapByAvroName.get(ownerAvro.getFullname());
-                    if (ownerEntity instanceof RecordEntity owner) {
-                        recordEntity.getOwners().add(owner);
-                    } else {
-                        throw new RuntimeException("Record `" + recordEntity.getFullname() + "` can be used only by other record, but used by`" + ownerEntity.getFullname() + "`");
-                    }
-                }
+    /**
+     * Starts the postCall command for files changed by this run without waiting for it, files are
+     * split into batches run concurrently when a batch size is set
+     *
+     * @param files Generated files in order
+     */
+    private void runPostCall(List<String> files) {
+        if (postCall == null) {
+            return;
+        }
+        List<String> changedFiles = output.changedOf(files);
+        if (changedFiles.isEmpty()) {
+            Factory.logger.info("No files changed, skip postCall");
+            return;
+        }
+        List<List<String>> batches = new ArrayList<>();
+        int batchSize = postCallBatchSize > 0 ? postCallBatchSize : changedFiles.size();
+        for (int from = 0; from < changedFiles.size(); from += batchSize) {
+            batches.add(changedFiles.subList(from, Math.min(from + batchSize, changedFiles.size())));
+        }
+        List<List<String>> commands = new ArrayList<>(batches.size());
+        for (List<String> batch : batches) {
+            String command = generatePostCall(batch);
+            if (!command.startsWith("/")) {
+                command = basePath + "/" + command;
             }
+            commands.add(PostCallExecutor.parse(command));
         }
-        Factory.logger.info("Relations created");
-
-        List<String> files = toGenerate.stream().map(this::generateFor).toList();
+        Factory.logger.info("Start postCall of `{}` for {} files in {} batches", name, changedFiles.size(), commands.size());
+        postCallRun = PostCallExecutor.runAll(name, commands);
+    }
 
-        String postCall = generatePostCall(files);
-        if (postCall != null) {
-            if (!postCall.startsWith("/")) {
-                postCall = basePath + "/" + postCall;
-            }
-            Factory.logger.info("Run postCall: {}", postCall);
+    /**
+     * Waits for the postCall started by the last generation, then writes the manifest and the cache
+     * entry of the generation. A failed postCall leaves the previous manifest in place, so its files
+     * are changed for the next run and passed to the postCall again. A failed optional postCall is
+     * logged and the generation is written.
+     */
+    public void awaitPostCall() {
+        CompletableFuture<Void> run = postCallRun;
+        Runnable commit = pendingCommit;
+        postCallRun = null;
+        pendingCommit = null;
+        if (run != null) {
             try {
-                Process exec = Runtime.getRuntime().exec(postCall);
-                String out = new String(exec.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
-                Factory.logger.info("Output: {}", out);
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to run postCall", e);
+                run.join();
+            } catch (CompletionException e) {
+                RuntimeException failure = e.getCause() instanceof RuntimeException runtimeException
+                        ? runtimeException
+                        : new RuntimeException("postCall of `" + name + "` failed", e.getCause());
+                if (!postCallOptional) {
+                    Factory.logger.warn("postCall of `{}` failed, its files are passed to postCall on the next run", name);
+                    throw failure;
+                }
+                Factory.logger.warn("Optional postCall of `{}` failed: {}", name, failure.getMessage());
             }
         }
+        if (commit != null) {
+            commit.run();
+        }
+    }
+
+    /**
+     * Generates code for all entities, concurrently when parallelism is greater than one.
+     * The returned list keeps the order of the given entities regardless of the rendering order.
+     *
+     * @param toGenerate Entities to generate code for
+     * @return Paths to the generated files in the order of the entities
+     */
+    private List<String> generateAll(List<Entity> toGenerate) {
+        if (parallelism <= 1 || toGenerate.size() <= 1) {
+            return toGenerate.stream().map(this::generateFor).toList();
+        }
+        Factory.logger.info("Render {} entities with parallelism {}", toGenerate.size(), parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> toGenerate.parallelStream().map(this::generateFor).toList()).join();
+        } finally {
+            pool.shutdown();
+        }
     }
 
     /**
      * Determines if an entity should have code generated for it based on filters and available templates
      *
-     * @param entity The entity to check
+     * @param entityModel The entity to check
      * @return true if code should be generated for this entity
      */
-    private boolean shouldBeGenerated(AvroEntity entity) {
+    private boolean shouldBeGenerated(SchemaModel.EntityModel entityModel) {
+        AvroEntity entity = entityModel.avro();
         if (filters != null) {
             //@todo: enforce white list items be in scope of work
             if (filters.white != null && !filters.white.isEmpty() && !filters.white.contains(entity.schema.getFullName())) {
@@ -201,11 +391,11 @@ public class Generator {
             }
         }
 
-        if ((mainTemplates.containsKey("enum") && entity.schema.getType() == Schema.Type.ENUM)
-                || (mainTemplates.containsKey("root") && entity.schema.getType() == Schema.Type.RECORD && entity.isRoot)
-                || (mainTemplates.containsKey("owner") && entity.schema.getType() == Schema.Type.RECORD && entity.isOwner())
-                || (mainTemplates.containsKey("dependent") && entity.schema.getType() == Schema.Type.RECORD && !entity.owners.isEmpty())
-                || (mainTemplates.containsKey("child") && entity.schema.getType() == Schema.Type.RECORD && !entity.isRoot)
+        if ((mainTemplates.containsKey("enum") && entityModel.isEnum())
+                || (mainTemplates.containsKey("root") && entityModel.isRoot())
+                || (mainTemplates.containsKey("owner") && entityModel.isOwner())
+                || (mainTemplates.containsKey("dependent") && entityModel.isDependent())
+                || (mainTemplates.containsKey("child") && entityModel.isChild())
                 || mainTemplates.containsKey("record")
         ) {
             return true;
@@ -232,66 +422,50 @@ public class Generator {
         String fileName = entity.getName();
         Map<String, Object> filenameContext = Map.of("namespace", entity.getNamespace(), "name", entity.getName(), "fullname", entity.getFullname(), "schema", entity.getSchema(), "entity", entity);
 
-        String fullFileName = evaluateFolderFileNameCreateFolder(folderName, folderContext, fileName, filenameContext);
+        String fullFileName = evaluateFolderFileName(folderName, folderContext, fileName, filenameContext);
 
-        PebbleTemplate template;
+        String templateName = templateNameFor(entity);
+        if (compiler != null) {
+            origins.put(fullFileName, "entity `" + entity.getFullname() + "` template `" + templateName + "`");
+        }
+        Factory.logger.info("Generate {} {} into {}", templateName, entity.getFullname(), fullFileName);
         if (entity instanceof EnumEntity enumEntity) {
-            Factory.logger.info("Generate enum {} into {}", enumEntity.getFullname(), fullFileName);
             context.put("symbols", enumEntity.getSymbols());
-            template = mainTemplates.get("enum");
-
-        } else {
-            RecordEntity recordEntity = (RecordEntity) entity;
-            if (mainTemplates.containsKey("root") && recordEntity.isRoot()) {
-                Factory.logger.info("Generate root {} into {}", recordEntity.getFullname(), fullFileName);
-                template = mainTemplates.get("root");
-            } else if (mainTemplates.containsKey("owner") && recordEntity.isOwner()) {
-                Factory.logger.info("Generate owner {} into {}", recordEntity.getFullname(), fullFileName);
-                template = mainTemplates.get("owner");
-            } else if (mainTemplates.containsKey("dependent") && !recordEntity.getOwners().isEmpty()) {
-                Factory.logger.info("Generate dependent {} into {}", recordEntity.getFullname(), fullFileName);
-                template = mainTemplates.get("dependent");
-            } else if (mainTemplates.containsKey("child") && !recordEntity.isRoot()) {
-                Factory.logger.info("Generate child {} into {}", recordEntity.getFullname(), fullFileName);
-                template = mainTemplates.get("child");
-            } else {
-                Factory.logger.info("Generate record {} into {}", recordEntity.getFullname(), fullFileName);
-                template = mainTemplates.get("record");
-            }
-        }
-        if (fullFileName.contains("/")) {
-            String[] pathParts = fullFileName.split("/");
-            String folderPath = String.join("/", Arrays.copyOf(pathParts, pathParts.length - 1));
-            if (!folderPath.startsWith("/")) {
-                folderPath = basePath + "/" + folderPath;
-            }
-
-            try {
-                Files.createDirectories(Paths.get(folderPath));
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to create folder " + folder, e);
-            }
         }
+        PebbleTemplate template = mainTemplates.get(templateName);
         evaluateTemplateToFile(template, extendValuesContext(context), fullFileName);
         return fullFileName;
     }
 
-    private String evaluateFolderFileNameCreateFolder(String folderName, Map<String, Object> folderContext, String fileName, Map<String, Object> filenameContext) {
-        String generatedFolder = generateFolder(folderName, folderContext);
-        folder = basePath + "/" + generatedFolder;
-        if (generatedFolder.startsWith("/")) {
-            folder = generatedFolder;
-        }
-        if (!folder.endsWith("/")) {
-            folder += "/";
+    /**
+     * Selects the main template rendering an entity
+     *
+     * @param entity The entity to render
+     * @return Template name without extension
+     */
+    String templateNameFor(Entity entity) {
+        if (entity instanceof EnumEntity) {
+            return "enum";
         }
-        try {
-            Files.createDirectories(Paths.get(folder));
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to create folder " + folder, e);
+        RecordEntity recordEntity = (RecordEntity) entity;
+        if (mainTemplates.containsKey("root") && recordEntity.isRoot()) {
+            return "root";
+        } else if (mainTemplates.containsKey("owner") && recordEntity.isOwner()) {
+            return "owner";
+        } else if (mainTemplates.containsKey("dependent") && recordEntity.isDependent()) {
+            return "dependent";
+        } else if (mainTemplates.containsKey("child") && recordEntity.isChild()) {
+            return "child";
         }
+        return "record";
+    }
 
-        return folder + generateFilename(fileName, filenameContext);
+    /**
+     * Evaluates the path of a generated file, its folder is created by the output when the file is
+     * written
+     */
+    private String evaluateFolderFileName(String folderName, Map<String, Object> folderContext, String fileName, Map<String, Object> filenameContext) {
+        return target.folder(basePath, generateFolder(folderName, folderContext)) + generateFilename(fileName, filenameContext);
     }
 
     /**
@@ -372,7 +546,7 @@ public class Generator {
     /**
      * Generates a post-generation command using the postCall template if available
      *
-     * @param files List of generated files
+     * @param files List of changed generated files
      * @return The generated command or null if no postCall template
      */
     private String generatePostCall(List<String> files) {
@@ -383,15 +557,61 @@ public class Generator {
     }
 
     /**
-     * Creates a new context map by combining the values context with additional values
+     * Creates a context map layering additional values over the values context without copying it
      *
      * @param extension Additional context values to add
-     * @return Combined context map
+     * @return Layered context map
+     */
+    private Map<String, Object> extendValuesContext(Map<String, Object> extension) {
+        return new LayeredContext(valuesContext, extension);
+    }
+
+    /**
+     * Enables restoring generated files from the cache and storing them after generation
+     *
+     * @param cache Generation cache
+     * @param cacheKey Key of this generator output, covers every input affecting it
+     */
+    public void enableCache(GenerationCache cache, String cacheKey) {
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * Keeps changed files in memory while entities are rendered and writes them in one batch before
+     * the postCall runs
      */
-    private HashMap<String, Object> extendValuesContext(Map<String, Object> extension) {
-        HashMap<String, Object> extendedContext = new HashMap<>(valuesContext);
-        extendedContext.putAll(extension);
-        return extendedContext;
+    public void enableBatchedWrites() {
+        this.batchedWrites = true;
+    }
+
+    /**
+     * Writes generated files to a target other than folders on disk
+     *
+     * @param target Archive or file system receiving generated files
+     */
+    void writeTo(OutputTarget target) {
+        this.target = target;
+    }
+
+    /**
+     * Configures how the postCall runs
+     *
+     * @param batchSize Maximum number of files passed to one command, 0 passes all files at once
+     * @param optional Whether a failed postCall is only logged
+     */
+    void configurePostCall(int batchSize, boolean optional) {
+        this.postCallBatchSize = batchSize;
+        this.postCallOptional = optional;
+    }
+
+    /**
+     * Compiles generated Java sources after entities are rendered
+     *
+     * @param compiler Compiler writing classes of this generator
+     */
+    void enableCompilation(SourceCompiler compiler) {
+        this.compiler = compiler;
     }
 
     /**
@@ -403,6 +623,40 @@ public class Generator {
         return name;
     }
 
+    /**
+     * Gets the name of the generator whose naming is reused for filtered out entities
+     *
+     * @return The overridden generator name or null
+     */
+    public String getOverrides() {
+        return overrides;
+    }
+
+    /**
+     * Changes since the previous generation selecting entities to render
+     *
+     * @param avroNames Avro full names of entities whose output may depend on changed schemas
+     * @param templates Names of changed main templates
+     */
+    public record Invalidation(Set<String> avroNames, Set<String> templates) {
+        boolean affects(String avroName, String template) {
+            return avroNames.contains(avroName) || templates.contains(template);
+        }
+
+        boolean rendersSchema() {
+            return !avroNames.isEmpty() || templates.contains("schema");
+        }
+    }
+
+    /**
+     * Entities created for a generator
+     *
+     * @param byAvroName All entities keyed by Avro full name
+     * @param toGenerate Entities to generate code for
+     */
+    private record CreatedEntities(Map<String, Entity> byAvroName, List<Entity> toGenerate) {
+    }
+
     /**
      * Record containing templates for generating names and paths
      */
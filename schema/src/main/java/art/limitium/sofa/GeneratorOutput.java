@@ -0,0 +1,360 @@
+package art.limitium.sofa;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes generated files only when their content changed since the previous run.
+ *
+ * <p>Rendered content is hashed and compared with the generator manifest written by the previous
+ * run, unchanged files keep their modification time. The manifest lists every generated file, the
+ * files changed by the run and stale files generated previously but not anymore. Without a manifest
+ * path every file is written and reported as changed.
+ *
+ * <p>Files are written through a {@link FileChannel} as UTF-8, folders created for them are
+ * remembered so each folder is created once per run. Batched output keeps changed files in memory
+ * and writes all of them on {@link #flush()}.
+ *
+ * <p>Contents are also stored in the generation cache when one is configured.
+ */
+final class GeneratorOutput {
+    private static final Logger logger = LoggerFactory.getLogger(GeneratorOutput.class);
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final String generator;
+    private final Path manifestPath;
+    private final GenerationCache cache;
+    private final OutputTarget target;
+    private final Map<String, FileState> previousFiles;
+    private final Map<String, FileState> files = new ConcurrentHashMap<>();
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Path> folders = ConcurrentHashMap.newKeySet();
+    private final boolean batched;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final LongAdder filesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private Map<String, byte[]> contents;
+
+    /**
+     * @param generator Generator name
+     * @param manifestPath Path to the generator manifest, null to always write files
+     * @param cache Cache to store contents in, null without cache
+     */
+    GeneratorOutput(String generator, Path manifestPath, GenerationCache cache) {
+        this(generator, manifestPath, cache, false);
+    }
+
+    /**
+     * @param generator Generator name
+     * @param manifestPath Path to the generator manifest, null to always write files
+     * @param cache Cache to store contents in, null without cache
+     * @param batched Whether changed files are written on {@link #flush()} only
+     */
+    GeneratorOutput(String generator, Path manifestPath, GenerationCache cache, boolean batched) {
+        this(generator, manifestPath, cache, batched, OutputTarget.FOLDERS);
+    }
+
+    /**
+     * @param generator Generator name
+     * @param manifestPath Path to the generator manifest, null to always write files
+     * @param cache Cache to store contents in, null without cache
+     * @param batched Whether changed files are written on {@link #flush()} only
+     * @param target Opened target resolving paths of generated files
+     */
+    GeneratorOutput(String generator, Path manifestPath, GenerationCache cache, boolean batched, OutputTarget target) {
+        this.generator = generator;
+        this.manifestPath = manifestPath;
+        this.cache = cache;
+        this.batched = batched;
+        this.target = target;
+        this.previousFiles = readManifest(manifestPath);
+    }
+
+    /**
+     * Writes content to a file unless the file already holds it
+     *
+     * @param filePath Path of output file
+     * @param content Rendered content
+     */
+    void write(String filePath, String content) {
+        write(filePath, ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes content to a file unless the file already holds it, the parent folder is created when
+     * missing. Content is copied if it has to outlive the call.
+     *
+     * @param filePath Path of output file
+     * @param content UTF-8 content, its position is not changed
+     */
+    void write(String filePath, ByteBuffer content) {
+        String hash = Hashes.sha256(content);
+        if (cache != null) {
+            cache.storeObject(hash, toBytes(content));
+        }
+        if (contents != null) {
+            contents.put(filePath, toBytes(content));
+        }
+        Path path = target.resolve(filePath);
+        try {
+            FileState previous = previousFiles.get(filePath);
+            if (previous != null && previous.sha256.equals(hash) && previous.matches(path, target.timestampPrecisionMillis())) {
+                logger.debug("File {} is unchanged", filePath);
+            } else {
+                changed.add(filePath);
+                if (holds(path, content)) {
+                    logger.debug("File {} is up to date", filePath);
+                } else if (batched) {
+                    pending.put(filePath, new Pending(hash, ByteBuffer.wrap(toBytes(content))));
+                    return;
+                } else {
+                    writeFile(path, content);
+                }
+            }
+            files.put(filePath, FileState.of(hash, path));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write file " + filePath, e);
+        }
+    }
+
+    /** Writes files kept by batched output, does nothing otherwise */
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        logger.info("Generator `{}` flushes {} files", generator, pending.size());
+        for (String filePath : new TreeMap<>(pending).keySet()) {
+            Pending file = pending.remove(filePath);
+            Path path = target.resolve(filePath);
+            try {
+                writeFile(path, file.content());
+                files.put(filePath, FileState.of(file.sha256(), path));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write file " + filePath, e);
+            }
+        }
+    }
+
+    /** Keeps contents of files written or checked by this run in memory for {@link #read(String)} */
+    void retainContents() {
+        contents = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Reads a generated file, from memory if this run retained its content
+     *
+     * @param filePath Path of generated file
+     * @return File content
+     */
+    String read(String filePath) {
+        byte[] bytes = contents != null ? contents.get(filePath) : null;
+        try {
+            return new String(bytes != null ? bytes : Files.readAllBytes(target.resolve(filePath)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read file " + filePath, e);
+        }
+    }
+
+    /**
+     * Gets the number of files written to disk by this run, up to date files are not counted
+     *
+     * @return Written files
+     */
+    long filesWritten() {
+        return filesWritten.sum();
+    }
+
+    /**
+     * Gets the number of bytes written to disk by this run
+     *
+     * @return Written bytes
+     */
+    long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    private void writeFile(Path path, ByteBuffer content) throws IOException {
+        createFolder(path.toAbsolutePath().getParent());
+        ByteBuffer remaining = content.duplicate();
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (remaining.hasRemaining()) {
+                channel.write(remaining);
+            }
+        }
+        filesWritten.increment();
+        bytesWritten.add(content.remaining());
+    }
+
+    /** Creates a folder unless this run already did, concurrent writers may both create it */
+    private void createFolder(Path folder) throws IOException {
+        if (folder != null && !folders.contains(folder)) {
+            Files.createDirectories(folder);
+            folders.add(folder);
+        }
+    }
+
+    private static boolean holds(Path path, ByteBuffer content) throws IOException {
+        return Files.exists(path)
+                && Files.size(path) == content.remaining()
+                && ByteBuffer.wrap(Files.readAllBytes(path)).equals(content);
+    }
+
+    private static byte[] toBytes(ByteBuffer content) {
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Filters files changed by this run
+     *
+     * @param filePaths Generated files
+     * @return Changed files in the given order
+     */
+    List<String> changedOf(Collection<String> filePaths) {
+        return filePaths.stream().filter(changed::contains).toList();
+    }
+
+    /**
+     * Gets content hashes of files written or checked by this run
+     *
+     * @return Content hashes keyed by file path
+     */
+    Map<String, String> hashes() {
+        Map<String, String> hashes = new TreeMap<>();
+        files.forEach((path, state) -> hashes.put(path, state.sha256));
+        return hashes;
+    }
+
+    /**
+     * Gets files generated by the previous run and not generated by this one
+     *
+     * @return Sorted stale file paths
+     */
+    List<String> staleFiles() {
+        return previousFiles.keySet().stream().filter(f -> !files.containsKey(f)).sorted().toList();
+    }
+
+    /**
+     * Checks that the previous run recorded files and all of them still exist, a partial
+     * regeneration relies on them
+     *
+     * @return true if files of the previous run are in place
+     */
+    boolean isPreviousOutputIntact() {
+        return !previousFiles.isEmpty()
+                && previousFiles.keySet().stream().allMatch(f -> Files.exists(target.resolve(f)));
+    }
+
+    /**
+     * Keeps files of the previous run not written by this one, used when only a part of the files
+     * was regenerated
+     */
+    void keepUnwritten() {
+        previousFiles.forEach(files::putIfAbsent);
+    }
+
+    /** Writes pending files and the manifest for this run */
+    void commit() {
+        flush();
+        List<String> stale = staleFiles();
+        logger.info(
+                "Generator `{}` changed {} of {} files, wrote {} files of {} bytes, stale files {}",
+                generator,
+                changed.size(),
+                files.size(),
+                filesWritten(),
+                bytesWritten(),
+                stale.size());
+        if (!stale.isEmpty()) {
+            logger.info("Stale files: \r\n{}", String.join("\r\n", stale));
+        }
+        if (manifestPath == null) {
+            return;
+        }
+        Manifest manifest = new Manifest();
+        manifest.generator = generator;
+        manifest.files = new TreeMap<>(files);
+        manifest.changed = new ArrayList<>(changed);
+        manifest.changed.sort(null);
+        manifest.stale = stale;
+        try {
+            Files.createDirectories(manifestPath.getParent());
+            try (Writer writer = Files.newBufferedWriter(manifestPath, StandardCharsets.UTF_8)) {
+                gson.toJson(manifest, writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write manifest " + manifestPath, e);
+        }
+    }
+
+    private static Map<String, FileState> readManifest(Path manifestPath) {
+        if (manifestPath == null || !Files.exists(manifestPath)) {
+            return Map.of();
+        }
+        try (Reader reader = Files.newBufferedReader(manifestPath, StandardCharsets.UTF_8)) {
+            Manifest manifest = gson.fromJson(reader, Manifest.class);
+            if (manifest == null || manifest.files == null) {
+                return Map.of();
+            }
+            return manifest.files;
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Unable to read manifest {}, all files are regenerated", manifestPath, e);
+            return Map.of();
+        }
+    }
+
+    /** Changed file kept by batched output until flushed */
+    private record Pending(String sha256, ByteBuffer content) {}
+
+    /** Manifest file layout */
+    private static class Manifest {
+        String generator;
+        Map<String, FileState> files;
+        List<String> changed;
+        List<String> stale;
+    }
+
+    /** State of a generated file right after it was written or checked */
+    private static class FileState {
+        String sha256;
+        long size;
+        long lastModified;
+
+        static FileState of(String sha256, Path path) throws IOException {
+            FileState state = new FileState();
+            state.sha256 = sha256;
+            state.size = Files.size(path);
+            state.lastModified = Files.getLastModifiedTime(path).toMillis();
+            return state;
+        }
+
+        /** Detects files modified outside of the generator, timestamps closer than the precision match */
+        boolean matches(Path path, long precisionMillis) throws IOException {
+            return Files.exists(path)
+                    && Files.size(path) == size
+                    && Math.abs(Files.getLastModifiedTime(path).toMillis() - lastModified) < precisionMillis;
+        }
+    }
+}
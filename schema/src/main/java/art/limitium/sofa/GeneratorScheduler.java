@@ -0,0 +1,191 @@
+package art.limitium.sofa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs generators in dependency order.
+ *
+ * <p>A generator depends on the generator it overrides, on generators referenced by the {@code
+ * from} filter in its templates and on explicitly declared ones. Generators without a dependency
+ * path between them run concurrently when parallelism is greater than one.
+ */
+final class GeneratorScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(GeneratorScheduler.class);
+
+    /** Matches {@code from("generator")} and {@code from('generator')} filter invocations */
+    private static final Pattern FROM_REFERENCE =
+            Pattern.compile("\\bfrom\\(\\s*[\"']([^\"']+)[\"']\\s*\\)");
+
+    private final List<Generator> generators;
+    private final Map<String, Set<String>> dependencies;
+    private final int parallelism;
+
+    /**
+     * @param generators Generators in declaration order
+     * @param dependencies Names of generators each generator depends on, keyed by generator name
+     * @param parallelism Number of generators run concurrently
+     */
+    GeneratorScheduler(
+            List<Generator> generators, Map<String, Set<String>> dependencies, int parallelism) {
+        this.generators = generators;
+        this.parallelism = parallelism;
+        this.dependencies = resolveKnownDependencies(generators, dependencies);
+    }
+
+    /**
+     * Detects generators referenced by the {@code from} filter with a literal argument
+     *
+     * @param templateSources Template sources to scan
+     * @return Referenced generator names
+     */
+    static Set<String> detectFromReferences(Collection<String> templateSources) {
+        Set<String> references = new LinkedHashSet<>();
+        for (String source : templateSources) {
+            Matcher matcher = FROM_REFERENCE.matcher(source);
+            while (matcher.find()) {
+                references.add(matcher.group(1));
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Orders generators so that every generator follows its dependencies, declaration order is
+     * kept otherwise
+     *
+     * @return Generators in execution order
+     */
+    List<Generator> topologicalOrder() {
+        List<Generator> ordered = new ArrayList<>();
+        Set<String> placed = new LinkedHashSet<>();
+        List<Generator> pending = new ArrayList<>(generators);
+        while (!pending.isEmpty()) {
+            Generator next = null;
+            for (Generator candidate : pending) {
+                if (placed.containsAll(dependenciesOf(candidate))) {
+                    next = candidate;
+                    break;
+                }
+            }
+            if (next == null) {
+                throw new RuntimeException(
+                        "Cyclic dependency between generators: "
+                                + pending.stream()
+                                        .map(this::describe)
+                                        .collect(Collectors.joining(", ")));
+            }
+            pending.remove(next);
+            placed.add(next.getName());
+            ordered.add(next);
+        }
+        return ordered;
+    }
+
+    /**
+     * Runs an action for every generator once all generators it depends on have completed
+     *
+     * @param schemas Registry generators publish their entities to
+     * @param action Action to run for a generator
+     */
+    void run(GeneratedSchemas schemas, Consumer<Generator> action) {
+        List<Generator> ordered = topologicalOrder();
+        if (parallelism <= 1) {
+            ordered.forEach(action);
+            return;
+        }
+
+        Set<String> names = new LinkedHashSet<>();
+        for (Generator generator : ordered) {
+            if (!names.add(generator.getName())) {
+                throw new RuntimeException(
+                        "Generator `"
+                                + generator.getName()
+                                + "` is declared more than once, unable to run generators"
+                                + " concurrently");
+            }
+            schemas.declare(generator.getName());
+        }
+
+        logger.info("Run {} generators with parallelism {}", ordered.size(), parallelism);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+            for (Generator generator : ordered) {
+                CompletableFuture<?>[] upstream =
+                        dependenciesOf(generator).stream()
+                                .map(futures::get)
+                                .toArray(CompletableFuture[]::new);
+                CompletableFuture<Void> future =
+                        CompletableFuture.allOf(upstream)
+                                .thenRunAsync(() -> action.accept(generator), pool);
+                future.whenComplete(
+                        (ignored, e) -> {
+                            if (e != null) {
+                                schemas.fail(generator.getName(), e);
+                            }
+                        });
+                futures.put(generator.getName(), future);
+            }
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Set<String> dependenciesOf(Generator generator) {
+        return dependencies.getOrDefault(generator.getName(), Set.of());
+    }
+
+    private String describe(Generator generator) {
+        return generator.getName() + " -> " + String.join(",", dependenciesOf(generator));
+    }
+
+    /**
+     * Drops self references and references to undeclared generators, the latter still fail on
+     * lookup during generation
+     */
+    private static Map<String, Set<String>> resolveKnownDependencies(
+            List<Generator> generators, Map<String, Set<String>> dependencies) {
+        Set<String> known = generators.stream().map(Generator::getName).collect(Collectors.toSet());
+        Map<String, Set<String>> resolved = new HashMap<>();
+        dependencies.forEach(
+                (name, references) -> {
+                    Set<String> upstream = new LinkedHashSet<>();
+                    for (String reference : references) {
+                        if (reference.equals(name)) {
+                            continue;
+                        }
+                        if (!known.contains(reference)) {
+                            logger.warn(
+                                    "Generator `{}` references unknown generator `{}`",
+                                    name,
+                                    reference);
+                            continue;
+                        }
+                        upstream.add(reference);
+                    }
+                    resolved.put(name, upstream);
+                });
+        return resolved;
+    }
+}
@@ -0,0 +1,107 @@
+package art.limitium.sofa;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fingerprints of entities and generators of a generation, persisted between runs to regenerate
+ * only outputs affected by changes.
+ */
+final class GraphSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(GraphSnapshot.class);
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    /** Entity fingerprints keyed by Avro full name */
+    private Map<String, String> entities;
+    /** Generator input fingerprints keyed by generator name */
+    private Map<String, String> generators;
+
+    GraphSnapshot(Map<String, String> entities, Map<String, String> generators) {
+        this.entities = new TreeMap<>(entities);
+        this.generators = new TreeMap<>(generators);
+    }
+
+    /**
+     * Reads a snapshot of a previous generation
+     *
+     * @param path Snapshot file
+     * @return Snapshot or null when missing or unreadable
+     */
+    static GraphSnapshot read(Path path) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            GraphSnapshot snapshot = gson.fromJson(reader, GraphSnapshot.class);
+            if (snapshot == null || snapshot.entities == null || snapshot.generators == null) {
+                return null;
+            }
+            return snapshot;
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Unable to read snapshot {}, all entities are regenerated", path, e);
+            return null;
+        }
+    }
+
+    void write(Path path) {
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                gson.toJson(this, writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write snapshot " + path, e);
+        }
+    }
+
+    /**
+     * Compares this snapshot with the previous one and selects entities to render per generator.
+     * A generator with changed inputs, including templates its templates include, import or extend,
+     * or with changed inputs of generators it depends on, renders all entities. Removed entities regenerate everything, so stale files are detected.
+     *
+     * @param previous Snapshot of the previous generation, null renders all entities
+     * @param scopeOfWork Avro entities of this generation
+     * @return Invalidation per generator, null renders all entities of a generator
+     */
+    Function<Generator, Generator.Invalidation> invalidations(
+            GraphSnapshot previous, Collection<AvroEntity> scopeOfWork) {
+        if (previous == null) {
+            logger.info("No snapshot of a previous generation, render all entities");
+            return generator -> null;
+        }
+        Set<String> changed = SchemaGraphDiff.changed(previous.entities, entities);
+        if (!entities.keySet().containsAll(previous.entities.keySet())) {
+            logger.info("Entities removed since the previous generation, render all entities");
+            return generator -> null;
+        }
+        Set<String> affected = SchemaGraphDiff.affected(scopeOfWork, changed);
+        logger.info(
+                "Entities changed {}, affected {} of {}: {}",
+                changed.size(),
+                affected.size(),
+                entities.size(),
+                affected);
+        return generator -> {
+            if (!Objects.equals(previous.generators.get(generator.getName()), generators.get(generator.getName()))) {
+                logger.info("Inputs of generator `{}` changed, render all entities", generator.getName());
+                return null;
+            }
+            return new Generator.Invalidation(affected, Set.of());
+        };
+    }
+}
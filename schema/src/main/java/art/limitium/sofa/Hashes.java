@@ -0,0 +1,88 @@
+package art.limitium.sofa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/** Content hashing used to detect changed inputs and outputs. */
+final class Hashes {
+    private Hashes() {}
+
+    static String sha256(String content) {
+        return sha256(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String sha256(byte[] content) {
+        return HexFormat.of().formatHex(sha256Digest().digest(content));
+    }
+
+    static String sha256(ByteBuffer content) {
+        MessageDigest digest = sha256Digest();
+        digest.update(content.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes a stream without holding its content, the stream is read to its end and not closed
+     *
+     * @param content Stream to hash
+     * @return Content hash
+     */
+    static String sha256(InputStream content) throws IOException {
+        DigestInputStream input = new DigestInputStream(content, sha256Digest());
+        input.transferTo(OutputStream.nullOutputStream());
+        return HexFormat.of().formatHex(input.getMessageDigest().digest());
+    }
+
+    /**
+     * Starts a fingerprint of several values, values are length prefixed so adjacent values can't
+     * be confused
+     *
+     * @return Empty fingerprint
+     */
+    static Fingerprint fingerprint() {
+        return new Fingerprint();
+    }
+
+    private static MessageDigest sha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    static final class Fingerprint {
+        private final MessageDigest digest = sha256Digest();
+
+        private Fingerprint() {}
+
+        Fingerprint add(String value) {
+            if (value == null) {
+                digest.update(ByteBuffer.allocate(4).putInt(-1).array());
+                return this;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            digest.update(bytes);
+            return this;
+        }
+
+        Fingerprint add(Iterable<String> values) {
+            for (String value : values) {
+                add(value);
+            }
+            return add((String) null);
+        }
+
+        String hex() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
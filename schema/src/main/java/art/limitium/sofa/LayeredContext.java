@@ -0,0 +1,60 @@
+package art.limitium.sofa;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Template context resolving values from a small per-call overlay over shared global values.
+ *
+ * <p>Pebble uses the context map as the bottom scope of an evaluation and only looks values up in
+ * it, so global values are never copied. Values put by templates go to the overlay, which is copied
+ * on the first write when it was given read-only. Iterating the context merges both layers.
+ */
+final class LayeredContext extends AbstractMap<String, Object> {
+    private final Map<String, ?> globals;
+    private Map<String, Object> overlay;
+    private boolean overlayOwned;
+
+    /**
+     * @param globals Values shared by evaluations, never modified
+     * @param overlay Values of this evaluation, shadow global values, copied before the first write
+     */
+    LayeredContext(Map<String, ?> globals, Map<String, Object> overlay) {
+        this.globals = globals;
+        this.overlay = overlay;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = overlay.get(key);
+        if (value != null || overlay.containsKey(key)) {
+            return value;
+        }
+        return globals.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return overlay.containsKey(key) || globals.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (!overlayOwned) {
+            overlay = new HashMap<>(overlay);
+            overlayOwned = true;
+        }
+        Object previous = get(key);
+        overlay.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> merged = new HashMap<>(globals);
+        merged.putAll(overlay);
+        return merged.entrySet();
+    }
+}
@@ -0,0 +1,163 @@
+package art.limitium.sofa;
+
+import art.limitium.sofa.schema.Entity;
+import art.limitium.sofa.schema.EnumEntity;
+import art.limitium.sofa.schema.RecordEntity;
+import art.limitium.sofa.schema.Type;
+import com.mitchellbosecke.pebble.attributes.AttributeResolver;
+import com.mitchellbosecke.pebble.attributes.ResolvedAttribute;
+import com.mitchellbosecke.pebble.extension.AbstractExtension;
+import com.mitchellbosecke.pebble.extension.Extension;
+import com.mitchellbosecke.pebble.node.ArgumentsNode;
+import com.mitchellbosecke.pebble.template.EvaluationContextImpl;
+import java.util.List;
+
+/**
+ * Resolves template attributes of schema model objects with direct accessor calls.
+ *
+ * <p>Templates read attributes such as {@code entity.fields} or {@code field.type.elementType.name}
+ * for every field of every entity, which Pebble otherwise resolves through its reflective member
+ * cache. Attributes follow Pebble naming, {@code name} resolves {@code getName()}, {@code isName()}
+ * or {@code name()}. Attributes with arguments and attributes unknown here return {@code null}, so
+ * Pebble falls back to reflection.
+ */
+final class ModelAttributeResolver implements AttributeResolver {
+    static final ModelAttributeResolver INSTANCE = new ModelAttributeResolver();
+
+    /** Marks an attribute not known for the instance, as resolved values may be null */
+    private static final Object UNRESOLVED = new Object();
+
+    private ModelAttributeResolver() {}
+
+    /**
+     * Pebble tries resolvers of extensions given to the engine builder before its own reflective
+     * resolver, resolvers of extensions added to a built engine are never reached
+     *
+     * @return Extension registering the resolver
+     */
+    static Extension extension() {
+        return new AbstractExtension() {
+            @Override
+            public List<AttributeResolver> getAttributeResolver() {
+                return List.of(INSTANCE);
+            }
+        };
+    }
+
+    @Override
+    public ResolvedAttribute resolve(
+            Object instance,
+            Object attributeNameValue,
+            Object[] argumentValues,
+            ArgumentsNode args,
+            EvaluationContextImpl context,
+            String filename,
+            int lineNumber) {
+        if (argumentValues != null && argumentValues.length > 0
+                || !(attributeNameValue instanceof String attribute)) {
+            return null;
+        }
+        Object value;
+        if (instance instanceof Type type) {
+            value = typeAttribute(type, attribute);
+        } else if (instance instanceof RecordEntity.Field field) {
+            value = fieldAttribute(field, attribute);
+        } else if (instance instanceof Entity entity) {
+            value = entityAttribute(entity, attribute);
+        } else {
+            return null;
+        }
+        return value == UNRESOLVED ? null : new ResolvedAttribute(value);
+    }
+
+    private static Object fieldAttribute(RecordEntity.Field field, String attribute) {
+        return switch (attribute) {
+            case "name" -> field.name();
+            case "type" -> field.type();
+            case "primary" -> field.isPrimary();
+            case "camelCaseName" -> field.camelCaseName();
+            case "snakeCaseName" -> field.snakeCaseName();
+            default -> UNRESOLVED;
+        };
+    }
+
+    private static Object entityAttribute(Entity entity, String attribute) {
+        switch (attribute) {
+            case "id":
+                return entity.getId();
+            case "namespace":
+                return entity.getNamespace();
+            case "name":
+                return entity.getName();
+            case "fullname":
+                return entity.getFullname();
+            case "schema":
+                return entity.getSchema();
+            default:
+                break;
+        }
+        if (entity instanceof RecordEntity record) {
+            return switch (attribute) {
+                case "fields" -> record.getFields();
+                case "root" -> record.isRoot();
+                case "owner" -> record.isOwner();
+                case "dependent" -> record.isDependent();
+                case "child" -> record.isChild();
+                case "dependencies" -> record.getDependencies();
+                case "owners" -> record.getOwners();
+                case "parents" -> record.getParents();
+                case "primaryKey" -> record.getPrimaryKey();
+                case "graph" -> record.getGraph();
+                default -> UNRESOLVED;
+            };
+        }
+        if (entity instanceof EnumEntity enumEntity) {
+            return switch (attribute) {
+                case "symbols" -> enumEntity.getSymbols();
+                case "aliases" -> enumEntity.getAliases();
+                default -> UNRESOLVED;
+            };
+        }
+        return UNRESOLVED;
+    }
+
+    private static Object typeAttribute(Type type, String attribute) {
+        switch (attribute) {
+            case "name":
+                return type.getName();
+            case "properties":
+                return type.getProperties();
+            default:
+                break;
+        }
+        if (type instanceof Type.ArrayType arrayType) {
+            return "elementType".equals(attribute) ? arrayType.getElementType() : UNRESOLVED;
+        }
+        if (type instanceof Type.RecordType recordType) {
+            return "record".equals(attribute) ? recordType.getRecord() : UNRESOLVED;
+        }
+        if (type instanceof Type.RecordCloseType recordCloseType) {
+            return "record".equals(attribute) ? recordCloseType.getRecord() : UNRESOLVED;
+        }
+        if (type instanceof Type.EnumType enumType) {
+            return "enum".equals(attribute) ? enumType.getEnum() : UNRESOLVED;
+        }
+        if (type instanceof Type.UnionType unionType) {
+            return "types".equals(attribute) ? unionType.getTypes() : UNRESOLVED;
+        }
+        if (type instanceof Type.FixedType fixedType) {
+            return "size".equals(attribute) ? fixedType.getSize() : UNRESOLVED;
+        }
+        if (type instanceof Type.DecimalType decimalType) {
+            return switch (attribute) {
+                case "precision" -> decimalType.getPrecision();
+                case "scale" -> decimalType.getScale();
+                default -> UNRESOLVED;
+            };
+        }
+        if (type instanceof Type.DatetimeType datetimeType) {
+            return "format".equals(attribute) ? datetimeType.getFormat() : UNRESOLVED;
+        }
+        return UNRESOLVED;
+    }
+}
@@ -0,0 +1,157 @@
+package art.limitium.sofa;
+
+import com.mitchellbosecke.pebble.error.LoaderException;
+import com.mitchellbosecke.pebble.loader.Loader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Template loader of all generators of a configuration, so they share one Pebble engine.
+ *
+ * <p>Template names are prefixed with the generator path, {@code <namespace>::<template>}, and
+ * each namespace reads templates with its own loader. Includes, imports and parents are resolved
+ * within the namespace of the template referring to them unless they name a namespace explicitly.
+ */
+final class NamespacedLoader implements Loader<String> {
+    static final String SEPARATOR = "::";
+    /** Include, import, extends and from tags with a literal template name */
+    private static final Pattern REFERENCE =
+            Pattern.compile("\\{%-?\\s*(?:include|import|extends|from)\\s+([\"'])([^\"']+)\\1");
+
+    private final Map<String, Loader<?>> namespaces = new ConcurrentHashMap<>();
+    private volatile String charset;
+
+    /**
+     * @param namespace Generator path
+     * @param templateName Template name within the generator
+     * @return Template name for the shared engine
+     */
+    static String name(String namespace, String templateName) {
+        return namespace + SEPARATOR + templateName;
+    }
+
+    /**
+     * Registers a loader of a namespace, a namespace registered again keeps its first loader
+     * @param namespace Generator path
+     * @param loader Loader of the generator templates
+     */
+    void register(String namespace, Loader<?> loader) {
+        String configured = charset;
+        if (namespaces.putIfAbsent(namespace, loader) == null && configured != null) {
+            loader.setCharset(configured);
+        }
+    }
+
+    /**
+     * Collects templates a generator may load besides its own: templates referenced by include,
+     * import, extends and from tags with a literal name, followed recursively and resolved the way
+     * the engine resolves them. Referenced templates missing in their namespace are skipped, the
+     * engine reports them on rendering.
+     * @param sources Template sources keyed by namespaced name
+     * @return Given sources and sources of referenced templates, keyed by namespaced name
+     */
+    Map<String, String> withReferenced(Map<String, String> sources) {
+        Map<String, String> reachable = new TreeMap<>(sources);
+        Deque<String> pending = new ArrayDeque<>(sources.keySet());
+        while (!pending.isEmpty()) {
+            String anchor = pending.poll();
+            Matcher matcher = REFERENCE.matcher(reachable.get(anchor));
+            while (matcher.find()) {
+                String referenced = resolveRelativePath(matcher.group(2), anchor);
+                if (reachable.containsKey(referenced) || !resourceExists(referenced)) {
+                    continue;
+                }
+                try (Reader reader = getReader(referenced)) {
+                    StringWriter source = new StringWriter();
+                    reader.transferTo(source);
+                    reachable.put(referenced, source.toString());
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to read template `" + referenced + "`", e);
+                }
+                pending.add(referenced);
+            }
+        }
+        return reachable;
+    }
+
+    @Override
+    public Reader getReader(String templateName) {
+        int separator = separator(templateName);
+        return read(loader(templateName, separator), templateName.substring(separator + SEPARATOR.length()));
+    }
+
+    private static <T> Reader read(Loader<T> loader, String templateName) {
+        return loader.getReader(loader.createCacheKey(templateName));
+    }
+
+    @Override
+    public String resolveRelativePath(String relativePath, String anchorPath) {
+        if (relativePath == null || relativePath.contains(SEPARATOR) || anchorPath == null || !anchorPath.contains(SEPARATOR)) {
+            return relativePath;
+        }
+        int separator = separator(anchorPath);
+        String resolved = loader(anchorPath, separator).resolveRelativePath(relativePath, anchorPath.substring(separator + SEPARATOR.length()));
+        return name(anchorPath.substring(0, separator), resolved != null ? resolved : relativePath);
+    }
+
+    @Override
+    public String createCacheKey(String templateName) {
+        return templateName;
+    }
+
+    @Override
+    public boolean resourceExists(String templateName) {
+        int separator = templateName.indexOf(SEPARATOR);
+        if (separator < 0 || !namespaces.containsKey(templateName.substring(0, separator))) {
+            return false;
+        }
+        return loader(templateName, separator).resourceExists(templateName.substring(separator + SEPARATOR.length()));
+    }
+
+    /**
+     * Sets the charset of loaders of all namespaces, including ones registered later
+     */
+    @Override
+    public void setCharset(String charset) {
+        this.charset = charset;
+        namespaces.values().forEach(loader -> loader.setCharset(charset));
+    }
+
+    /**
+     * Does nothing, loaders of namespaces keep the folders of their generators
+     */
+    @Override
+    public void setPrefix(String prefix) {
+    }
+
+    /**
+     * Does nothing, loaders of namespaces keep the template suffix of their generators
+     */
+    @Override
+    public void setSuffix(String suffix) {
+    }
+
+    private static int separator(String templateName) {
+        int separator = templateName.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new LoaderException(null, "Template name `" + templateName + "` has no generator namespace");
+        }
+        return separator;
+    }
+
+    private Loader<?> loader(String templateName, int separator) {
+        Loader<?> loader = namespaces.get(templateName.substring(0, separator));
+        if (loader == null) {
+            throw new LoaderException(null, "Unknown generator namespace of template `" + templateName + "`");
+        }
+        return loader;
+    }
+}
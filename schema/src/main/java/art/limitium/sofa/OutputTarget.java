@@ -0,0 +1,205 @@
+package art.limitium.sofa;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Where a generator writes its files.
+ *
+ * <p>By default files go to folders evaluated by the folder template relative to the configuration.
+ * An archive target streams files into a zip or jar archive, a file system target into a
+ * {@link FileSystem} given by the caller, e.g. an in-memory one. For both the evaluated folder and
+ * filename become a path inside the archive or file system, rooted at {@code /}.
+ *
+ * <p>A target is opened before a generator runs and closed after it, an archive is written when it
+ * is closed. An existing archive is updated, so unchanged entries are detected as for files.
+ */
+abstract sealed class OutputTarget {
+    /** Prefix of the output option selecting a file system given by the caller */
+    static final String FILE_SYSTEM_PREFIX = "memory:";
+
+    /** Writes files to the default file system */
+    static final OutputTarget FOLDERS = new Folders();
+
+    /**
+     * Resolves the output option of a generator
+     *
+     * @param output Missing for folders, a path to a {@code .zip} or {@code .jar} archive relative to
+     *               the configuration, or {@code memory:<name>} for a file system given by the caller
+     * @param basePath Folder of the configuration
+     * @param fileSystems File systems given by the caller keyed by name
+     * @return Output target
+     */
+    static OutputTarget of(String output, String basePath, Map<String, FileSystem> fileSystems) {
+        if (output == null) {
+            return FOLDERS;
+        }
+        if (output.startsWith(FILE_SYSTEM_PREFIX)) {
+            String name = output.substring(FILE_SYSTEM_PREFIX.length());
+            FileSystem fileSystem = fileSystems.get(name);
+            if (fileSystem == null) {
+                throw new RuntimeException("Output file system `" + name + "` is not provided, known are " + fileSystems.keySet());
+            }
+            return new GivenFileSystem(name, fileSystem);
+        }
+        if (output.endsWith(".zip") || output.endsWith(".jar")) {
+            return new Archive(Path.of(output.startsWith("/") ? output : basePath + "/" + output).normalize());
+        }
+        throw new RuntimeException("Unsupported output `" + output + "`, expected a .zip or .jar archive or " + FILE_SYSTEM_PREFIX + "<name>");
+    }
+
+    /**
+     * Gets the folder files are written to
+     *
+     * @param basePath Folder of the configuration
+     * @param generatedFolder Folder evaluated by the folder template
+     * @return Folder ending with a slash
+     */
+    abstract String folder(String basePath, String generatedFolder);
+
+    /**
+     * Resolves a path of a generated file
+     *
+     * @param filePath Path built from {@link #folder(String, String)}
+     * @return Path in the target file system
+     */
+    abstract Path resolve(String filePath);
+
+    /**
+     * Gets the precision of modification times kept by the target, files are detected as modified
+     * outside of the generator by their size and modification time
+     *
+     * @return Precision in milliseconds
+     */
+    long timestampPrecisionMillis() {
+        return 1;
+    }
+
+    /** Opens the target before a generator writes to it */
+    void open() {}
+
+    /** Closes the target after a generator has written to it */
+    void close() {}
+
+    /**
+     * Gets an archive written by this target
+     *
+     * @return Archive path or null if files are not written to an archive
+     */
+    Path archive() {
+        return null;
+    }
+
+    private static String withSlash(String folder) {
+        return folder.endsWith("/") ? folder : folder + "/";
+    }
+
+    private static final class Folders extends OutputTarget {
+        @Override
+        String folder(String basePath, String generatedFolder) {
+            return withSlash(generatedFolder.startsWith("/") ? generatedFolder : basePath + "/" + generatedFolder);
+        }
+
+        @Override
+        Path resolve(String filePath) {
+            return Path.of(filePath);
+        }
+    }
+
+    /** Base of targets resolving files inside another file system */
+    private abstract static sealed class Rooted extends OutputTarget permits Archive, GivenFileSystem {
+        @Override
+        String folder(String basePath, String generatedFolder) {
+            return withSlash("/" + generatedFolder.replaceFirst("^/+", ""));
+        }
+
+        @Override
+        Path resolve(String filePath) {
+            return fileSystem().getPath(filePath);
+        }
+
+        abstract FileSystem fileSystem();
+    }
+
+    private static final class Archive extends Rooted {
+        private final Path path;
+        private volatile FileSystem fileSystem;
+
+        private Archive(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        synchronized void open() {
+            try {
+                Files.createDirectories(path.getParent());
+                fileSystem = FileSystems.newFileSystem(path, Map.of("create", "true"));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to open archive " + path, e);
+            }
+        }
+
+        @Override
+        synchronized void close() {
+            if (fileSystem == null) {
+                return;
+            }
+            try {
+                fileSystem.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write archive " + path, e);
+            } finally {
+                fileSystem = null;
+            }
+        }
+
+        @Override
+        FileSystem fileSystem() {
+            FileSystem open = fileSystem;
+            if (open == null) {
+                throw new IllegalStateException("Archive " + path + " is not open");
+            }
+            return open;
+        }
+
+        @Override
+        Path archive() {
+            return path;
+        }
+
+        /** Zip entries keep modification times in seconds or, without extended timestamps, in two seconds */
+        @Override
+        long timestampPrecisionMillis() {
+            return 2000;
+        }
+
+        @Override
+        public String toString() {
+            return path.toString();
+        }
+    }
+
+    private static final class GivenFileSystem extends Rooted {
+        private final String name;
+        private final FileSystem fileSystem;
+
+        private GivenFileSystem(String name, FileSystem fileSystem) {
+            this.name = name;
+            this.fileSystem = fileSystem;
+        }
+
+        @Override
+        FileSystem fileSystem() {
+            return fileSystem;
+        }
+
+        @Override
+        public String toString() {
+            return FILE_SYSTEM_PREFIX + name;
+        }
+    }
+}
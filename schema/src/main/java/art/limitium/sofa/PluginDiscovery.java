@@ -142,6 +142,11 @@ final class PluginDiscovery {
                             e);
                 }
             }
+
+            @Override
+            public boolean isCacheable() {
+                return sofaTypeConverter.isCacheable();
+            }
         };
     }
 
@@ -161,32 +166,7 @@ final class PluginDiscovery {
 
         @Override
         public Kind kind() {
-            if (type instanceof Type.UUIDType) return Kind.UUID;
-            if (type instanceof Type.DatetimeType) return Kind.DATETIME_STR;
-            if (type instanceof Type.DateType) return Kind.DATE;
-            if (type instanceof Type.TimeMillisType) return Kind.TIME_MILLIS;
-            if (type instanceof Type.TimeMicrosType) return Kind.TIME_MICROS;
-            if (type instanceof Type.TimestampMillisType) return Kind.TIMESTAMP_MILLIS;
-            if (type instanceof Type.TimestampMicrosType) return Kind.TIMESTAMP_MICROS;
-            if (type instanceof Type.LocalTimestampMillisType) return Kind.LOCAL_TIMESTAMP_MILLIS;
-            if (type instanceof Type.LocalTimestampMicrosType) return Kind.LOCAL_TIMESTAMP_MICROS;
-            if (type instanceof Type.DecimalType) return Kind.DECIMAL;
-            if (type instanceof Type.NullType) return Kind.NULL;
-            if (type instanceof Type.BooleanType) return Kind.BOOLEAN;
-            if (type instanceof Type.IntType) return Kind.INT;
-            if (type instanceof Type.LongType) return Kind.LONG;
-            if (type instanceof Type.FloatType) return Kind.FLOAT;
-            if (type instanceof Type.DoubleType) return Kind.DOUBLE;
-            if (type instanceof Type.StringType) return Kind.STRING;
-            if (type instanceof Type.BytesType) return Kind.BYTES;
-            if (type instanceof Type.RecordType) return Kind.RECORD;
-            if (type instanceof Type.RecordCloseType) return Kind.RECORD_CLOSE;
-            if (type instanceof Type.EnumType) return Kind.ENUM;
-            if (type instanceof Type.ArrayType) return Kind.ARRAY;
-            if (type instanceof Type.MapType) return Kind.MAP;
-            if (type instanceof Type.UnionType) return Kind.UNION;
-            if (type instanceof Type.FixedType) return Kind.FIXED;
-            return Kind.STRING;
+            return type.getKind();
         }
 
         @Override
@@ -0,0 +1,151 @@
+package art.limitium.sofa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs postCall commands as processes.
+ *
+ * <p>Commands of all generators share a pool bounded by the number of processors, so post-calls of
+ * different generators and batches of one generator run concurrently. Standard output and error of
+ * a process are streamed to the log line by line while it runs, a non-zero exit code fails the
+ * command.
+ */
+final class PostCallExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(PostCallExecutor.class);
+
+    private static final ExecutorService processes = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), daemonThreads("sofa-post-call-"));
+    private static final ExecutorService pipes = Executors.newCachedThreadPool(daemonThreads("sofa-post-call-pipe-"));
+
+    private PostCallExecutor() {}
+
+    /**
+     * Starts commands concurrently
+     *
+     * @param generator Generator name used in log and error messages
+     * @param commands Commands split into arguments
+     * @return Completes once all commands exited, exceptionally if any of them failed
+     */
+    static CompletableFuture<Void> runAll(String generator, List<List<String>> commands) {
+        CompletableFuture<?>[] runs = commands.stream()
+                .map(command -> CompletableFuture.runAsync(() -> run(generator, command), processes))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(runs);
+    }
+
+    /**
+     * Runs a command and waits for it to exit
+     *
+     * @param generator Generator name used in log and error messages
+     * @param command Command split into arguments
+     */
+    static void run(String generator, List<String> command) {
+        logger.info("Generator `{}` runs postCall: {}", generator, String.join(" ", command));
+        try {
+            Process process = new ProcessBuilder(command).start();
+            process.getOutputStream().close();
+            CompletableFuture<Void> errors = CompletableFuture.runAsync(
+                    () -> drain(process.getErrorStream(), line -> logger.warn("[{}] {}", generator, line)), pipes);
+            drain(process.getInputStream(), line -> logger.info("[{}] {}", generator, line));
+            errors.join();
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new RuntimeException("postCall of `" + generator + "` exited with code " + exitCode + ": " + String.join(" ", command));
+            }
+        } catch (IOException | UncheckedIOException | CompletionException e) {
+            throw new RuntimeException("Unable to run postCall of `" + generator + "`: " + String.join(" ", command), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running postCall of `" + generator + "`", e);
+        }
+    }
+
+    /**
+     * Splits a command into arguments on whitespace. Single quotes keep their content as is, double
+     * quotes and a backslash outside of single quotes escape the next character. Shell features like
+     * redirections or pipes are not supported, run a shell for them.
+     *
+     * @param command Command line
+     * @return Arguments
+     */
+    static List<String> parse(String command) {
+        List<String> arguments = new ArrayList<>();
+        StringBuilder argument = new StringBuilder();
+        boolean inArgument = false;
+        char quote = 0;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    argument.append(c);
+                }
+            } else if (c == '\\' && i + 1 < command.length()) {
+                argument.append(command.charAt(++i));
+                inArgument = true;
+            } else if (quote == '"') {
+                if (c == '"') {
+                    quote = 0;
+                } else {
+                    argument.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inArgument = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    arguments.add(argument.toString());
+                    argument.setLength(0);
+                    inArgument = false;
+                }
+            } else {
+                argument.append(c);
+                inArgument = true;
+            }
+        }
+        if (quote != 0) {
+            throw new RuntimeException("Unclosed quote in postCall: " + command);
+        }
+        if (inArgument) {
+            arguments.add(argument.toString());
+        }
+        return arguments;
+    }
+
+    private static void drain(InputStream stream, Consumer<String> lines) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.accept(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
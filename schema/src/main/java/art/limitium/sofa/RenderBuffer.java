@@ -0,0 +1,105 @@
+package art.limitium.sofa;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer templates are rendered into.
+ *
+ * <p>Buffers are pooled per thread, rendering thousands of files reuses a few grown buffers instead
+ * of growing a new writer per file. Rendered content is encoded to UTF-8 into a reused byte buffer
+ * which stays valid until the buffer is acquired again. A buffer acquired while the pooled one is in
+ * use, e.g. by a nested render, is not pooled.
+ */
+final class RenderBuffer extends Writer {
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<RenderBuffer> pool = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int length;
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_CAPACITY);
+    private boolean inUse;
+
+    private RenderBuffer() {}
+
+    /**
+     * Takes the buffer of the current thread, it is released by {@link #close()}
+     *
+     * @return Empty buffer
+     */
+    static RenderBuffer acquire() {
+        RenderBuffer buffer = pool.get();
+        if (buffer.inUse) {
+            buffer = new RenderBuffer();
+        }
+        buffer.inUse = true;
+        buffer.length = 0;
+        return buffer;
+    }
+
+    @Override
+    public void write(int c) {
+        ensureCapacity(length + 1);
+        chars[length++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(cbuf, off, chars, length, len);
+        length += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ensureCapacity(length + len);
+        str.getChars(off, off + len, chars, length);
+        length += len;
+    }
+
+    /**
+     * Encodes rendered content
+     *
+     * @return Read only UTF-8 content, valid until the buffer is acquired again
+     */
+    ByteBuffer encode() {
+        int maxBytes = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+        if (bytes.capacity() < maxBytes) {
+            bytes = ByteBuffer.allocate(maxBytes);
+        }
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(chars, 0, length), bytes, true);
+        encoder.flush(bytes);
+        bytes.flip();
+        return bytes.asReadOnlyBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    @Override
+    public void flush() {}
+
+    /** Releases the buffer to the pool, the encoded content stays valid */
+    @Override
+    public void close() {
+        inUse = false;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+}
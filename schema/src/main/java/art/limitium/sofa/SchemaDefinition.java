@@ -2,10 +2,12 @@ package art.limitium.sofa;
 
 import org.apache.avro.Schema;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 /**
  * Represents a schema definition containing Avro entities and their relationships.
  * This class helps build and analyze the dependency graph between Avro records.
@@ -20,9 +22,20 @@ public class SchemaDefinition {
      */
     Map<String, AvroEntity> records = new HashMap<>();
 
+    /**
+     * Adds a record or an enum with everything it uses. Each schema is unfolded once, relations of
+     * an already added schema are not collected again.
+     *
+     * @param schema Named Avro schema
+     * @return Entity of the schema
+     */
     public AvroEntity addRecord(Schema schema) {
-
-        AvroEntity avroEntity = records.computeIfAbsent(schema.getFullName(), s -> new AvroEntity(schema));
+        AvroEntity added = records.get(schema.getFullName());
+        if (added != null) {
+            return added;
+        }
+        AvroEntity avroEntity = new AvroEntity(schema);
+        records.put(schema.getFullName(), avroEntity);
 
         if (schema.getType() == Schema.Type.RECORD) {
             for (Schema.Field field : schema.getFields()) {
@@ -49,9 +62,26 @@ public class SchemaDefinition {
         }
     }
 
+    /**
+     * Finalizes the definition once all records are added: marks root and dependent records and
+     * collects roots. Roles are resolved in a single pass, later they are read as flags.
+     *
+     * @return Records which are not used by other records
+     */
     public List<AvroEntity> findRoots() {
-        List<String> dependencies = records.values().stream().flatMap(n -> n.dependencies.keySet().stream()).collect(Collectors.toList());
-        roots = records.values().stream().filter(avroEntity -> avroEntity.schema.getType() == Schema.Type.RECORD && !dependencies.contains(avroEntity.getFullname())).peek(avroEntity -> avroEntity.isRoot = true).collect(Collectors.toList());
+        Set<String> dependencies = new HashSet<>();
+        for (AvroEntity avroEntity : records.values()) {
+            dependencies.addAll(avroEntity.dependencies.keySet());
+        }
+        roots = new ArrayList<>();
+        for (AvroEntity avroEntity : records.values()) {
+            boolean isRecord = avroEntity.schema.getType() == Schema.Type.RECORD;
+            avroEntity.isRoot = isRecord && !dependencies.contains(avroEntity.getFullname());
+            avroEntity.isDependent = isRecord && !avroEntity.owners.isEmpty();
+            if (avroEntity.isRoot) {
+                roots.add(avroEntity);
+            }
+        }
         return roots;
     }
 
@@ -0,0 +1,189 @@
+package art.limitium.sofa;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.avro.Schema;
+
+/**
+ * Compares Avro entity graphs of two generations and finds entities whose output may be affected.
+ *
+ * <p>An entity fingerprint covers its own definition with referenced named types by name only, its
+ * root flag and its owners, so a change of a nested record does not change fingerprints of records
+ * using it. Output of an entity may read its dependencies recursively and walk up through parents
+ * and owners, so a changed entity affects all its ancestors and descendants.
+ */
+final class SchemaGraphDiff {
+    private SchemaGraphDiff() {}
+
+    /**
+     * Fingerprints entities
+     *
+     * @param entities All Avro entities of a schema definition
+     * @return Fingerprints keyed by Avro full name
+     */
+    static Map<String, String> fingerprints(Collection<AvroEntity> entities) {
+        Map<String, String> fingerprints = new TreeMap<>();
+        for (AvroEntity entity : entities) {
+            fingerprints.put(
+                    entity.getFullname(),
+                    Hashes.fingerprint()
+                            .add(describe(entity.schema).toString())
+                            .add(String.valueOf(entity.isRoot))
+                            .add(entity.owners.stream().map(AvroEntity::getFullname).sorted().toList())
+                            .hex());
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Describes a schema definition the way it is written, named types it refers to are described by
+     * full name only
+     *
+     * @param schema Avro schema of an entity
+     * @return JSON description
+     */
+    private static JsonObject describe(Schema schema) {
+        JsonObject description = describeType(schema);
+        switch (schema.getType()) {
+            case RECORD -> {
+                JsonArray fields = new JsonArray();
+                for (Schema.Field field : schema.getFields()) {
+                    JsonObject described = new JsonObject();
+                    described.addProperty("name", field.name());
+                    described.addProperty("doc", field.doc());
+                    described.add("type", reference(field.schema()));
+                    described.addProperty("default", field.hasDefaultValue() ? String.valueOf(field.defaultVal()) : null);
+                    described.addProperty("order", field.order().name());
+                    described.add("aliases", strings(field.aliases()));
+                    described.add("props", props(field.getObjectProps()));
+                    fields.add(described);
+                }
+                description.add("fields", fields);
+            }
+            case ENUM -> {
+                JsonArray symbols = new JsonArray();
+                schema.getEnumSymbols().forEach(symbols::add);
+                description.add("symbols", symbols);
+                description.addProperty("default", schema.getEnumDefault());
+            }
+            case FIXED -> description.addProperty("size", schema.getFixedSize());
+            default -> {}
+        }
+        return description;
+    }
+
+    private static JsonElement reference(Schema schema) {
+        JsonObject description = describeType(schema);
+        switch (schema.getType()) {
+            case RECORD, ENUM, FIXED -> {
+                return new JsonPrimitive(schema.getFullName());
+            }
+            case ARRAY -> description.add("items", reference(schema.getElementType()));
+            case MAP -> description.add("values", reference(schema.getValueType()));
+            case UNION -> {
+                JsonArray types = new JsonArray();
+                schema.getTypes().forEach(type -> types.add(reference(type)));
+                description.add("types", types);
+            }
+            default -> {}
+        }
+        return description;
+    }
+
+    private static JsonObject describeType(Schema schema) {
+        JsonObject description = new JsonObject();
+        description.addProperty("type", schema.getType().getName());
+        switch (schema.getType()) {
+            case RECORD, ENUM, FIXED -> {
+                description.addProperty("name", schema.getFullName());
+                description.addProperty("doc", schema.getDoc());
+                description.add("aliases", strings(schema.getAliases()));
+            }
+            default -> {}
+        }
+        // logical types are kept in props
+        description.add("props", props(schema.getObjectProps()));
+        return description;
+    }
+
+    private static JsonArray strings(Collection<String> values) {
+        JsonArray array = new JsonArray();
+        values.stream().sorted().forEach(array::add);
+        return array;
+    }
+
+    private static JsonObject props(Map<String, Object> props) {
+        JsonObject object = new JsonObject();
+        new TreeMap<>(props).forEach((name, value) -> object.addProperty(name, String.valueOf(value)));
+        return object;
+    }
+
+    /**
+     * Finds entities added, removed or modified between generations
+     *
+     * @param previous Fingerprints of the previous generation
+     * @param current Fingerprints of the current generation
+     * @return Avro full names of changed entities
+     */
+    static Set<String> changed(Map<String, String> previous, Map<String, String> current) {
+        Set<String> changed = new HashSet<>();
+        current.forEach((name, fingerprint) -> {
+            if (!Objects.equals(previous.get(name), fingerprint)) {
+                changed.add(name);
+            }
+        });
+        previous.keySet().stream().filter(name -> !current.containsKey(name)).forEach(changed::add);
+        return changed;
+    }
+
+    /**
+     * Extends changed entities with entities whose output may depend on them
+     *
+     * @param entities All Avro entities of the current generation
+     * @param changed Avro full names of changed entities
+     * @return Avro full names of affected entities
+     */
+    static Set<String> affected(Collection<AvroEntity> entities, Set<String> changed) {
+        Map<String, Set<String>> parents = new HashMap<>();
+        Map<String, Set<String>> children = new HashMap<>();
+        for (AvroEntity entity : entities) {
+            for (AvroEntity dependency : entity.dependencies.values()) {
+                children.computeIfAbsent(entity.getFullname(), n -> new HashSet<>()).add(dependency.getFullname());
+                parents.computeIfAbsent(dependency.getFullname(), n -> new HashSet<>()).add(entity.getFullname());
+            }
+            for (AvroEntity owner : entity.owners) {
+                children.computeIfAbsent(owner.getFullname(), n -> new HashSet<>()).add(entity.getFullname());
+                parents.computeIfAbsent(entity.getFullname(), n -> new HashSet<>()).add(owner.getFullname());
+            }
+        }
+        Set<String> affected = new HashSet<>(changed);
+        affected.addAll(reachable(changed, parents));
+        affected.addAll(reachable(changed, children));
+        return affected;
+    }
+
+    private static Set<String> reachable(Set<String> from, Map<String, Set<String>> edges) {
+        Set<String> reached = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(from);
+        while (!queue.isEmpty()) {
+            for (String next : edges.getOrDefault(queue.poll(), Set.of())) {
+                if (reached.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return reached;
+    }
+}
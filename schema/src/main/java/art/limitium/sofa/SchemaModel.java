@@ -0,0 +1,207 @@
+package art.limitium.sofa;
+
+import art.limitium.sofa.schema.EntityGraph;
+import art.limitium.sofa.schema.RecordEntity;
+import art.limitium.sofa.schema.Type;
+import art.limitium.sofa.schema.Types;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.avro.Schema;
+
+/**
+ * Structure of Avro entities shared by all generators of a configuration.
+ *
+ * <p>Fields, roles and relations do not depend on generator naming, so they are resolved once per
+ * configuration. Roles are flags computed while the model is built. Entities get dense ids, their
+ * index in generation order, and relations are stored as id arrays. Generators create only naming
+ * views on top of it: entities with generated names whose fields reuse shared types. A field type
+ * referencing records or enums points to a view of a particular generator and is the only part
+ * created per generator.
+ */
+public final class SchemaModel {
+    private final List<AvroEntity> avroEntities;
+    private final List<EntityModel> entities;
+    private final EntityGraph.Structure structure;
+
+    private SchemaModel(
+            List<AvroEntity> avroEntities, List<EntityModel> entities, EntityGraph.Structure structure) {
+        this.avroEntities = avroEntities;
+        this.entities = entities;
+        this.structure = structure;
+    }
+
+    /**
+     * Resolves structure of Avro entities
+     *
+     * @param avroEntities Avro entities in generation order
+     * @return Shared model
+     */
+    public static SchemaModel of(List<AvroEntity> avroEntities) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int id = 0; id < avroEntities.size(); id++) {
+            ids.put(avroEntities.get(id).getFullname(), id);
+        }
+
+        int size = avroEntities.size();
+        int[][] dependencies = new int[size][];
+        int[][] owners = new int[size][];
+        List<List<Integer>> parents = new ArrayList<>(size);
+        int[][] arrayRecords = new int[size][];
+        BitSet records = new BitSet(size);
+        BitSet roots = new BitSet(size);
+        BitSet dependents = new BitSet(size);
+        for (int id = 0; id < size; id++) {
+            parents.add(new ArrayList<>());
+        }
+        for (int id = 0; id < size; id++) {
+            AvroEntity avroEntity = avroEntities.get(id);
+            boolean isRecord = avroEntity.schema.getType() == Schema.Type.RECORD;
+            dependencies[id] = idsOf(avroEntity.dependencies.values(), ids);
+            owners[id] = idsOf(avroEntity.owners, ids);
+            arrayRecords[id] = isRecord ? arrayRecordsOf(avroEntity.schema, ids) : new int[0];
+            for (AvroEntity owner : avroEntity.owners) {
+                if (owner.schema.getType() != Schema.Type.RECORD) {
+                    throw new RuntimeException("Record `" + avroEntity.getFullname() + "` can be used only by other record, but used by`" + owner.getFullname() + "`");
+                }
+            }
+            if (!isRecord) {
+                continue;
+            }
+            records.set(id);
+            roots.set(id, avroEntity.isRoot);
+            dependents.set(id, owners[id].length > 0);
+            for (int dependency : dependencies[id]) {
+                List<Integer> dependencyParents = parents.get(dependency);
+                if (avroEntities.get(dependency).schema.getType() == Schema.Type.RECORD
+                        && (dependencyParents.isEmpty() || dependencyParents.get(dependencyParents.size() - 1) != id)) {
+                    dependencyParents.add(id);
+                }
+            }
+        }
+
+        List<EntityModel> entities = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            AvroEntity avroEntity = avroEntities.get(id);
+            boolean isRecord = avroEntity.schema.getType() == Schema.Type.RECORD;
+            List<FieldModel> fields = isRecord ? fieldsOf(avroEntity.schema) : List.of();
+            entities.add(new EntityModel(
+                    id,
+                    avroEntity,
+                    fields,
+                    sharedFieldsOf(fields),
+                    roots.get(id),
+                    isRecord && avroEntity.isOwner(),
+                    dependents.get(id),
+                    isRecord && !roots.get(id),
+                    !isRecord));
+        }
+        EntityGraph.Structure structure = new EntityGraph.Structure(
+                dependencies,
+                owners,
+                parents.stream().map(p -> p.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new),
+                arrayRecords,
+                records,
+                roots,
+                dependents);
+        return new SchemaModel(List.copyOf(avroEntities), Collections.unmodifiableList(entities), structure);
+    }
+
+    private static int[] idsOf(Collection<AvroEntity> related, Map<String, Integer> ids) {
+        return related.stream().mapToInt(e -> ids.get(e.getFullname())).toArray();
+    }
+
+    /** Finds records used as array elements by fields, a 1-to-many relation for traversals */
+    private static int[] arrayRecordsOf(Schema schema, Map<String, Integer> ids) {
+        return schema.getFields().stream()
+                .map(Schema.Field::schema)
+                .filter(s -> s.getType() == Schema.Type.ARRAY && s.getElementType().getType() == Schema.Type.RECORD)
+                .map(s -> ids.get(s.getElementType().getFullName()))
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Gets Avro entities the model is built of
+     *
+     * @return Avro entities in generation order
+     */
+    public List<AvroEntity> avroEntities() {
+        return avroEntities;
+    }
+
+    /**
+     * Gets structure of entities
+     *
+     * @return Entity models in generation order
+     */
+    List<EntityModel> entities() {
+        return entities;
+    }
+
+    /**
+     * Gets relations of entities indexed by id
+     *
+     * @return Structure shared by entity graphs of generators
+     */
+    EntityGraph.Structure structure() {
+        return structure;
+    }
+
+    private static List<FieldModel> fieldsOf(Schema schema) {
+        List<FieldModel> fields = new ArrayList<>(schema.getFields().size());
+        for (Schema.Field field : schema.getFields()) {
+            RecordEntity.Field shared = Types.referencesNamedType(field.schema())
+                    ? null
+                    : new RecordEntity.Field(field.name(), Type.fromSchema(field.schema(), Map.of()));
+            fields.add(new FieldModel(field.name(), field.schema(), shared));
+        }
+        return List.copyOf(fields);
+    }
+
+    private static List<RecordEntity.Field> sharedFieldsOf(List<FieldModel> fields) {
+        if (fields.stream().anyMatch(f -> f.shared() == null)) {
+            return null;
+        }
+        return fields.stream().map(FieldModel::shared).toList();
+    }
+
+    /**
+     * Generator independent structure of an entity
+     *
+     * @param id Dense id of the entity, its index in generation order
+     * @param avro Avro entity
+     * @param fields Fields of a record, empty for enums
+     * @param sharedFields Fields reused by all views, null if any field references records or enums
+     * @param isRoot Whether a record is not used by other records
+     * @param isOwner Whether a record owns other records through array fields
+     * @param isDependent Whether a record is owned by other records in 1-to-many relations
+     * @param isChild Whether a record is used by other records
+     * @param isEnum Whether the entity is an enum
+     */
+    record EntityModel(
+            int id,
+            AvroEntity avro,
+            List<FieldModel> fields,
+            List<RecordEntity.Field> sharedFields,
+            boolean isRoot,
+            boolean isOwner,
+            boolean isDependent,
+            boolean isChild,
+            boolean isEnum) {}
+
+    /**
+     * Field of a record
+     *
+     * @param name Field name
+     * @param schema Field schema
+     * @param shared Field shared by all views, null if its type references records or enums
+     */
+    record FieldModel(String name, Schema schema, RecordEntity.Field shared) {}
+}
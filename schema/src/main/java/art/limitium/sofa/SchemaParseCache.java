@@ -0,0 +1,128 @@
+package art.limitium.sofa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe cache of parsed Avro schemas shared by configurations running in one JVM.
+ *
+ * <p>Schemas are keyed by their source location and content hash. A schema may reference named
+ * types defined by schemas parsed before it, so a cached result is reused only when the parser
+ * resolves every referenced type to an equal schema. Otherwise the schema is parsed again and kept
+ * as another variant.
+ */
+final class SchemaParseCache {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaParseCache.class);
+
+    private final Map<String, List<ParsedSchema>> parsed = new ConcurrentHashMap<>();
+
+    /**
+     * Parses a schema or takes it from the cache, named types it defines are registered in the
+     * parser either way
+     *
+     * @param parser Parser holding types defined by previously loaded schemas
+     * @param location Absolute file path or classpath resource the content was read from
+     * @param content Schema source
+     * @return Parsed schema
+     */
+    Schema parse(Parser parser, String location, String content) {
+        String key = location + "#" + Hashes.sha256(content);
+        List<ParsedSchema> variants = parsed.computeIfAbsent(key, k -> new ArrayList<>());
+        // parsing under the lock lets concurrent configurations wait for the first parse
+        synchronized (variants) {
+            Map<String, Schema> known = parser.getTypes();
+            for (ParsedSchema variant : variants) {
+                if (variant.resolvesSameAs(known)) {
+                    logger.debug("Reusing parsed schema {}", location);
+                    parser.addTypes(variant.definedTypes);
+                    return variant.schema;
+                }
+            }
+
+            Map<String, Schema> before = new HashMap<>(known);
+            Schema schema = parser.parse(content);
+            Map<String, Schema> definedTypes = new LinkedHashMap<>(parser.getTypes());
+            definedTypes.keySet().removeAll(before.keySet());
+            variants.add(
+                    new ParsedSchema(schema, definedTypes, collectReferences(schema, before)));
+            return schema;
+        }
+    }
+
+    /**
+     * Collects named types a schema takes from the parser instead of defining them
+     *
+     * @param schema Parsed schema
+     * @param known Types known to the parser before parsing
+     * @return Referenced types keyed by full name
+     */
+    private static Map<String, Schema> collectReferences(Schema schema, Map<String, Schema> known) {
+        Map<String, Schema> references = new HashMap<>();
+        collectReferences(schema, known, references, new IdentityHashMap<>());
+        return references;
+    }
+
+    private static void collectReferences(
+            Schema schema,
+            Map<String, Schema> known,
+            Map<String, Schema> references,
+            Map<Schema, Boolean> visited) {
+        if (visited.put(schema, Boolean.TRUE) != null) {
+            return;
+        }
+        switch (schema.getType()) {
+            case RECORD, ENUM, FIXED -> {
+                if (known.get(schema.getFullName()) == schema) {
+                    references.put(schema.getFullName(), schema);
+                    return;
+                }
+                if (schema.getType() == Schema.Type.RECORD) {
+                    for (Schema.Field field : schema.getFields()) {
+                        collectReferences(field.schema(), known, references, visited);
+                    }
+                }
+            }
+            case ARRAY -> collectReferences(schema.getElementType(), known, references, visited);
+            case MAP -> collectReferences(schema.getValueType(), known, references, visited);
+            case UNION -> {
+                for (Schema type : schema.getTypes()) {
+                    collectReferences(type, known, references, visited);
+                }
+            }
+            default -> {}
+        }
+    }
+
+    private record ParsedSchema(
+            Schema schema, Map<String, Schema> definedTypes, Map<String, Schema> references) {
+
+        boolean resolvesSameAs(Map<String, Schema> known) {
+            Set<String> redefined = definedTypes.keySet();
+            for (String name : redefined) {
+                if (known.containsKey(name)) {
+                    // let the parser report the redefinition
+                    return false;
+                }
+            }
+            for (Map.Entry<String, Schema> reference : references.entrySet()) {
+                Schema current = known.get(reference.getKey());
+                if (current == null
+                        || (current != reference.getValue()
+                                && !current.toString().equals(reference.getValue().toString()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
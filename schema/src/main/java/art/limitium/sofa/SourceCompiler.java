@@ -0,0 +1,204 @@
+package art.limitium.sofa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles generated Java sources within the generator JVM.
+ *
+ * <p>Sources are passed to {@link JavaCompiler} from memory and compiled classes are kept in memory
+ * until all of them compile, then they are written to a folder or a jar. Compilation errors name the
+ * entity and the template the failing file was rendered from.
+ */
+final class SourceCompiler {
+    private static final Logger logger = LoggerFactory.getLogger(SourceCompiler.class);
+
+    private final Path output;
+    private final List<String> classPath;
+    private final List<String> options;
+
+    /**
+     * @param output Folder or {@code .jar} archive compiled classes are written to
+     * @param classPath Class path entries in addition to the generator class path
+     * @param options Javac options, null for {@code --release} of the running JVM
+     */
+    SourceCompiler(Path output, List<String> classPath, List<String> options) {
+        this.output = output;
+        this.classPath = List.copyOf(classPath);
+        this.options = options != null
+                ? List.copyOf(options)
+                : List.of("--release", String.valueOf(Runtime.version().feature()));
+    }
+
+    /**
+     * Gets where compiled classes are written to
+     *
+     * @return Folder or jar path
+     */
+    Path output() {
+        return output;
+    }
+
+    /**
+     * Compiles sources and writes their classes
+     *
+     * @param generator Generator name
+     * @param sources Java sources keyed by generated file path
+     * @param origins Describes what a generated file was rendered from, e.g. entity and template
+     * @return Number of compiled classes
+     */
+    int compile(String generator, Map<String, String> sources, Function<String, String> origins) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("Generator `" + generator + "` compiles its sources, which needs a JDK at runtime");
+        }
+        List<JavaFileObject> files = new ArrayList<>(sources.size());
+        sources.forEach((filePath, source) -> files.add(new SourceFile(filePath, source)));
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> compilerOptions = new ArrayList<>(options);
+        compilerOptions.addAll(List.of("-classpath", compilerClassPath(), "-proc:none"));
+
+        Map<String, byte[]> classes;
+        boolean compiled;
+        try (ClassOutput classOutput = new ClassOutput(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8))) {
+            compiled = compiler.getTask(null, classOutput, diagnostics, compilerOptions, null, files).call();
+            classes = classOutput.classes;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to compile sources of `" + generator + "`", e);
+        }
+
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            String filePath = diagnostic.getSource() instanceof SourceFile file ? file.filePath : null;
+            String message = (filePath == null ? "" : origins.apply(filePath) + " " + filePath + ":" + diagnostic.getLineNumber() + ":" + diagnostic.getColumnNumber() + ": ")
+                    + diagnostic.getMessage(null);
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(message);
+            } else {
+                logger.debug("Generator `{}` compilation: {}", generator, message);
+            }
+        }
+        if (!compiled) {
+            throw new RuntimeException("Generated sources of `" + generator + "` do not compile, " + errors.size() + " errors:\r\n" + String.join("\r\n", errors));
+        }
+
+        try {
+            write(classes);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write classes of `" + generator + "` to " + output, e);
+        }
+        logger.info("Generator `{}` compiled {} sources to {} classes in {}", generator, sources.size(), classes.size(), output);
+        return classes.size();
+    }
+
+    private String compilerClassPath() {
+        List<String> entries = new ArrayList<>(classPath);
+        entries.add(System.getProperty("java.class.path"));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /** Writes classes to a jar replaced at once, or to a folder keeping classes not compiled now */
+    private void write(Map<String, byte[]> classes) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        classes.forEach((className, bytes) -> entries.put(className.replace('.', '/') + ".class", bytes));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        if (!output.toString().endsWith(".jar")) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                Path file = output.resolve(entry.getKey());
+                Files.createDirectories(file.getParent());
+                Files.write(file, entry.getValue());
+            }
+            return;
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream jar = new JarOutputStream(bytes, manifest)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                jar.putNextEntry(new JarEntry(entry.getKey()));
+                jar.write(entry.getValue());
+                jar.closeEntry();
+            }
+        }
+        GenerationCache.writeAtomically(output, bytes.toByteArray());
+    }
+
+    /** Source held in memory, named after the generated file so public classes match file names */
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String filePath;
+        private final String source;
+
+        SourceFile(String filePath, String source) {
+            super(uriOf(filePath), Kind.SOURCE);
+            this.filePath = filePath;
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+
+        private static URI uriOf(String filePath) {
+            try {
+                return new URI("string", null, "/" + filePath.replaceFirst("^/+", ""), null);
+            } catch (URISyntaxException e) {
+                throw new RuntimeException("Invalid source path " + filePath, e);
+            }
+        }
+    }
+
+    /**
+     * Keeps compiled classes in memory
+     */
+    private static final class ClassOutput extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes = new TreeMap<>();
+
+        ClassOutput(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
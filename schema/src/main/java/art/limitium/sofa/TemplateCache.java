@@ -0,0 +1,295 @@
+package art.limitium.sofa;
+
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.extension.ExtensionRegistry;
+import com.mitchellbosecke.pebble.extension.Filter;
+import com.mitchellbosecke.pebble.extension.NamedArguments;
+import com.mitchellbosecke.pebble.extension.core.DefaultFilter;
+import com.mitchellbosecke.pebble.extension.core.DefinedTest;
+import com.mitchellbosecke.pebble.node.ArgumentsNode;
+import com.mitchellbosecke.pebble.node.PositionalArgumentNode;
+import com.mitchellbosecke.pebble.node.expression.LiteralNullExpression;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of templates compiled by {@link TemplateCompiler}, keyed by template name and
+ * source.
+ *
+ * <p>Parsed Pebble templates can not be serialized, a compiled template is stored as class bytes
+ * with the constants its class is created with, so an unchanged template is neither parsed nor
+ * compiled by a later run. Filters and tests are stored by name and looked up in the engine on
+ * load, an entry referring to a missing filter or to one taking other arguments is a miss. Keys
+ * include a fingerprint of the compiler classes, the engine options, the Pebble version and the
+ * Java version, so upgrades and reconfigured engines don't reuse stale classes.
+ *
+ * <p>Entries are written atomically, {@link #retainUsed()} removes entries a run did not use. An
+ * entry starts with a sha256 of its payload, which is verified before the payload is deserialized,
+ * and deserialization is limited to the classes entries are made of, so a damaged or truncated
+ * file is a miss. The checksum is not keyed: entries are trusted like the generator templates, and
+ * the cache folder must not be writable by anyone who can't change the templates.
+ */
+final class TemplateCache {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCache.class);
+    private static final String SUFFIX = ".template";
+    private static final String VERSION = backendVersion();
+    private static final int CHECKSUM_LENGTH = 64;
+    /** Classes entries are serialized with, arrays of them and of primitives are allowed too */
+    private static final Set<String> SERIALIZED_CLASSES = Set.of(
+            Entry.class.getName(), Text.class.getName(), Literal.class.getName(),
+            FilterReference.class.getName(), TestReference.class.getName(), Arguments.class.getName(),
+            Object.class.getName(), String.class.getName(), Number.class.getName(), Boolean.class.getName(),
+            Character.class.getName(), Byte.class.getName(), Short.class.getName(), Integer.class.getName(),
+            Long.class.getName(), Float.class.getName(), Double.class.getName(),
+            BigInteger.class.getName(), BigDecimal.class.getName(),
+            ArrayList.class.getName(), HashMap.class.getName(), LinkedHashMap.class.getName(), Map.Entry.class.getName(),
+            // List.copyOf and Map.of are serialized through CollSer and resolved to immutable collections
+            "java.util.CollSer", "java.util.ImmutableCollections$List12", "java.util.ImmutableCollections$ListN",
+            "java.util.ImmutableCollections$Map1", "java.util.ImmutableCollections$MapN");
+
+    private final Path root;
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param root Cache folder, created on first store
+     */
+    TemplateCache(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * @param name Template name
+     * @param source Template source
+     * @return Key of the compiled template
+     */
+    String key(String name, String source) {
+        return Hashes.fingerprint().add(VERSION).add(name).add(source).hex();
+    }
+
+    /**
+     * Loads a stored entry, unreadable entries are misses
+     * @param key Template key
+     * @return Stored entry if any
+     */
+    Optional<Entry> load(String key) {
+        used.add(key);
+        byte[] content;
+        try {
+            content = Files.readAllBytes(root.resolve(key + SUFFIX));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("Ignore unreadable template cache entry {}", key, e);
+            return Optional.empty();
+        }
+        if (content.length < CHECKSUM_LENGTH || !new String(content, 0, CHECKSUM_LENGTH, StandardCharsets.US_ASCII)
+                .equals(Hashes.sha256(ByteBuffer.wrap(content, CHECKSUM_LENGTH, content.length - CHECKSUM_LENGTH)))) {
+            logger.warn("Ignore template cache entry {} not matching its checksum", key);
+            return Optional.empty();
+        }
+        try (ObjectInputStream input = new ObjectInputStream(
+                new ByteArrayInputStream(content, CHECKSUM_LENGTH, content.length - CHECKSUM_LENGTH))) {
+            input.setObjectInputFilter(TemplateCache::serializedClass);
+            return Optional.of((Entry) input.readObject());
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.warn("Ignore unreadable template cache entry {}", key, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores an entry, failures are logged as the template is compiled anyway
+     * @param key Template key
+     * @param entry Compiled template
+     */
+    void store(String key, Entry entry) {
+        used.add(key);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(entry);
+        } catch (IOException e) {
+            logger.info("Template cache entry {} is not serializable", key, e);
+            return;
+        }
+        byte[] payload = bytes.toByteArray();
+        byte[] content = new byte[CHECKSUM_LENGTH + payload.length];
+        System.arraycopy(Hashes.sha256(payload).getBytes(StandardCharsets.US_ASCII), 0, content, 0, CHECKSUM_LENGTH);
+        System.arraycopy(payload, 0, content, CHECKSUM_LENGTH, payload.length);
+        try {
+            Files.createDirectories(root);
+            GenerationCache.writeAtomically(root.resolve(key + SUFFIX), content);
+        } catch (IOException e) {
+            logger.warn("Unable to store template cache entry {}", key, e);
+        }
+    }
+
+    /**
+     * Removes entries not loaded or stored through this instance
+     */
+    void retainUsed() {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : files.toList()) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(SUFFIX) && !used.contains(fileName.substring(0, fileName.length() - SUFFIX.length()))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to clean template cache {}", root, e);
+        }
+    }
+
+    private static ObjectInputFilter.Status serializedClass(ObjectInputFilter.FilterInfo info) {
+        Class<?> type = info.serialClass();
+        if (type == null) {
+            return ObjectInputFilter.Status.UNDECIDED;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || SERIALIZED_CLASSES.contains(type.getName())
+                ? ObjectInputFilter.Status.ALLOWED
+                : ObjectInputFilter.Status.REJECTED;
+    }
+
+    /**
+     * Fingerprint of classes compiled templates are generated by and linked against
+     */
+    private static String backendVersion() {
+        Hashes.Fingerprint fingerprint = Hashes.fingerprint()
+                .add(String.valueOf(Runtime.version().feature()))
+                .add(PebbleEngine.class.getPackage().getImplementationVersion())
+                .add(TemplateEngineFactory.engineOptions());
+        for (Class<?> host : List.of(TemplateCompiler.class, CompiledTemplate.class, TemplateCache.class)) {
+            for (Class<?> type : host.getNestMembers()) {
+                try (InputStream classFile = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+                    fingerprint.add(type.getName()).add(classFile == null ? null : Hashes.sha256(classFile.readAllBytes()));
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to read class " + type.getName(), e);
+                }
+            }
+        }
+        return fingerprint.hex();
+    }
+
+    /**
+     * Compiled template
+     * @param bytecode Class extending {@link CompiledTemplate}
+     * @param constants Constants passed to the class constructor
+     */
+    record Entry(byte[] bytecode, List<Constant> constants) implements Serializable {
+        /**
+         * @param registry Extensions of the engine loading the template
+         * @return Constructor constants, null if a filter or a test differs from the stored one
+         */
+        Object[] resolveConstants(ExtensionRegistry registry) {
+            Object[] values = new Object[constants.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = constants.get(i).resolve(registry);
+                if (values[i] == null) {
+                    return null;
+                }
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Stored form of a template class constant
+     */
+    sealed interface Constant extends Serializable {
+        /**
+         * @return Constant value, null if it can not be restored
+         */
+        Object resolve(ExtensionRegistry registry);
+    }
+
+    /**
+     * Template text, a {@code char[]}
+     */
+    record Text(String value) implements Constant {
+        @Override
+        public Object resolve(ExtensionRegistry registry) {
+            return value.toCharArray();
+        }
+    }
+
+    /**
+     * Literal or a list or a map of literals
+     */
+    record Literal(Serializable value) implements Constant {
+        @Override
+        public Object resolve(ExtensionRegistry registry) {
+            return value;
+        }
+    }
+
+    /**
+     * Filter with argument names the template was compiled for
+     */
+    record FilterReference(String name, List<String> argumentNames) implements Constant {
+        @Override
+        public Object resolve(ExtensionRegistry registry) {
+            Filter filter = registry.getFilter(name);
+            return filter instanceof DefaultFilter ? null : matching(filter, argumentNames);
+        }
+    }
+
+    /**
+     * Test with argument names the template was compiled for
+     */
+    record TestReference(String name, List<String> argumentNames) implements Constant {
+        @Override
+        public Object resolve(ExtensionRegistry registry) {
+            com.mitchellbosecke.pebble.extension.Test test = registry.getTest(name);
+            return test instanceof DefinedTest ? null : matching(test, argumentNames);
+        }
+    }
+
+    /**
+     * Arguments of a method call attribute. Attribute resolvers get evaluated argument values,
+     * so the node is restored with placeholders of its positional arguments
+     */
+    record Arguments(int positional, int line) implements Constant {
+        @Override
+        public Object resolve(ExtensionRegistry registry) {
+            List<PositionalArgumentNode> arguments = new ArrayList<>();
+            for (int i = 0; i < positional; i++) {
+                arguments.add(new PositionalArgumentNode(new LiteralNullExpression(line)));
+            }
+            return new ArgumentsNode(arguments, null, line);
+        }
+    }
+
+    private static Object matching(NamedArguments target, List<String> argumentNames) {
+        return target != null && Objects.equals(target.getArgumentNames(), argumentNames) ? target : null;
+    }
+}
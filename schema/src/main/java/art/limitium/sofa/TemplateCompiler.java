@@ -0,0 +1,854 @@
+package art.limitium.sofa;
+
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.extension.AbstractExtension;
+import com.mitchellbosecke.pebble.extension.AbstractNodeVisitor;
+import com.mitchellbosecke.pebble.extension.Extension;
+import com.mitchellbosecke.pebble.extension.ExtensionRegistry;
+import com.mitchellbosecke.pebble.extension.Filter;
+import com.mitchellbosecke.pebble.extension.NamedArguments;
+import com.mitchellbosecke.pebble.extension.NodeVisitor;
+import com.mitchellbosecke.pebble.extension.NodeVisitorFactory;
+import com.mitchellbosecke.pebble.extension.Test;
+import com.mitchellbosecke.pebble.extension.core.DefaultFilter;
+import com.mitchellbosecke.pebble.extension.core.DefinedTest;
+import com.mitchellbosecke.pebble.node.AbstractRenderableNode;
+import com.mitchellbosecke.pebble.node.ArgumentsNode;
+import com.mitchellbosecke.pebble.node.BodyNode;
+import com.mitchellbosecke.pebble.node.ForNode;
+import com.mitchellbosecke.pebble.node.IfNode;
+import com.mitchellbosecke.pebble.node.NamedArgumentNode;
+import com.mitchellbosecke.pebble.node.PositionalArgumentNode;
+import com.mitchellbosecke.pebble.node.PrintNode;
+import com.mitchellbosecke.pebble.node.RenderableNode;
+import com.mitchellbosecke.pebble.node.RootNode;
+import com.mitchellbosecke.pebble.node.SetNode;
+import com.mitchellbosecke.pebble.node.TestInvocationExpression;
+import com.mitchellbosecke.pebble.node.TextNode;
+import com.mitchellbosecke.pebble.node.expression.AddExpression;
+import com.mitchellbosecke.pebble.node.expression.AndExpression;
+import com.mitchellbosecke.pebble.node.expression.ArrayExpression;
+import com.mitchellbosecke.pebble.node.expression.BinaryExpression;
+import com.mitchellbosecke.pebble.node.expression.ConcatenateExpression;
+import com.mitchellbosecke.pebble.node.expression.ContainsExpression;
+import com.mitchellbosecke.pebble.node.expression.ContextVariableExpression;
+import com.mitchellbosecke.pebble.node.expression.DivideExpression;
+import com.mitchellbosecke.pebble.node.expression.EqualsExpression;
+import com.mitchellbosecke.pebble.node.expression.Expression;
+import com.mitchellbosecke.pebble.node.expression.FilterExpression;
+import com.mitchellbosecke.pebble.node.expression.FilterInvocationExpression;
+import com.mitchellbosecke.pebble.node.expression.GetAttributeExpression;
+import com.mitchellbosecke.pebble.node.expression.GreaterThanEqualsExpression;
+import com.mitchellbosecke.pebble.node.expression.GreaterThanExpression;
+import com.mitchellbosecke.pebble.node.expression.LessThanEqualsExpression;
+import com.mitchellbosecke.pebble.node.expression.LessThanExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralBigDecimalExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralBooleanExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralDoubleExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralIntegerExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralLongExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralNullExpression;
+import com.mitchellbosecke.pebble.node.expression.LiteralStringExpression;
+import com.mitchellbosecke.pebble.node.expression.MapExpression;
+import com.mitchellbosecke.pebble.node.expression.ModulusExpression;
+import com.mitchellbosecke.pebble.node.expression.MultiplyExpression;
+import com.mitchellbosecke.pebble.node.expression.NegativeTestExpression;
+import com.mitchellbosecke.pebble.node.expression.NotEqualsExpression;
+import com.mitchellbosecke.pebble.node.expression.OrExpression;
+import com.mitchellbosecke.pebble.node.expression.PositiveTestExpression;
+import com.mitchellbosecke.pebble.node.expression.SubtractExpression;
+import com.mitchellbosecke.pebble.node.expression.UnaryMinusExpression;
+import com.mitchellbosecke.pebble.node.expression.UnaryNotExpression;
+import com.mitchellbosecke.pebble.node.expression.UnaryPlusExpression;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import com.mitchellbosecke.pebble.template.PebbleTemplateImpl;
+import com.mitchellbosecke.pebble.utils.Pair;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.BiConsumer;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles parsed Pebble templates to Java classes extending {@link CompiledTemplate}.
+ *
+ * <p>Supports the subset SOFA templates use: text, print, {@code set}, {@code if} and {@code for}
+ * tags with variables, attributes, filters, tests, literals and operators. Every {@code for} body
+ * becomes a method which takes enclosing loop variables as arguments. Classes are compiled in
+ * memory by the system Java compiler and defined as hidden classes. Templates with other tags,
+ * functions or macros, engines without a Java compiler at runtime and engines with an executor
+ * service keep the interpreted template.
+ *
+ * <p>Templates are captured while Pebble parses them, so the engine must be built with
+ * {@link #extension()}. Compiled classes can be kept in a {@link TemplateCache}, templates found
+ * there are not parsed.
+ */
+final class TemplateCompiler implements NodeVisitorFactory {
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCompiler.class);
+    private static final String PACKAGE = TemplateCompiler.class.getPackageName();
+
+    private final Map<PebbleTemplate, RootNode> parsedTemplates = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @return Extension capturing templates parsed by an engine, give it to the engine builder
+     */
+    Extension extension() {
+        return new AbstractExtension() {
+            @Override
+            public List<NodeVisitorFactory> getNodeVisitors() {
+                return List.of(TemplateCompiler.this);
+            }
+        };
+    }
+
+    @Override
+    public NodeVisitor createVisitor(PebbleTemplate template) {
+        return new AbstractNodeVisitor((PebbleTemplateImpl) template) {
+            @Override
+            public void visit(RootNode node) {
+                parsedTemplates.put(template, node);
+            }
+        };
+    }
+
+    /**
+     * Compiles templates of an engine with one compiler invocation
+     * @param engine Engine built with {@link #extension()}, which loaded the templates
+     * @param templates Templates by name
+     * @return Compiled templates by name, templates which can not be compiled stay interpreted
+     */
+    Map<String, PebbleTemplate> compile(PebbleEngine engine, Map<String, PebbleTemplate> templates) {
+        return compile(engine, templates, (name, entry) -> {});
+    }
+
+    /**
+     * Loads templates of an engine from a cache, parses and compiles ones missing there with one
+     * compiler invocation and stores them
+     * @param engine Engine built with {@link #extension()}
+     * @param sources Template sources by name, as the engine loads them
+     * @param cache Compiled templates of previous runs
+     * @return Compiled templates by name, templates which can not be compiled stay interpreted
+     */
+    Map<String, PebbleTemplate> compile(PebbleEngine engine, Map<String, String> sources, TemplateCache cache) {
+        Map<String, PebbleTemplate> result = new HashMap<>();
+        Map<String, PebbleTemplate> parsed = new LinkedHashMap<>();
+        Map<String, String> keys = new HashMap<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            String key = cache.key(source.getKey(), source.getValue());
+            PebbleTemplate cached = engine.getExecutorService() != null ? null : cache.load(key)
+                    .map(entry -> restore(engine, source.getKey(), entry))
+                    .orElse(null);
+            if (cached != null) {
+                result.put(source.getKey(), cached);
+            } else {
+                keys.put(source.getKey(), key);
+                parsed.put(source.getKey(), engine.getTemplate(source.getKey()));
+            }
+        }
+        if (!result.isEmpty()) {
+            logger.info("Loaded compiled templates from cache: \r\n{}", String.join("\r\n", result.keySet()));
+        }
+        result.putAll(compile(engine, parsed, (name, entry) -> cache.store(keys.get(name), entry)));
+        return result;
+    }
+
+    private Map<String, PebbleTemplate> compile(
+            PebbleEngine engine, Map<String, PebbleTemplate> templates, BiConsumer<String, TemplateCache.Entry> compiled) {
+        Map<String, PebbleTemplate> result = new HashMap<>(templates);
+        if (engine.getExecutorService() != null) {
+            logger.info("Render templates of an engine with an executor service with the interpreter");
+            return result;
+        }
+        Map<String, SourceGenerator> sources = new LinkedHashMap<>();
+        for (Map.Entry<String, PebbleTemplate> entry : templates.entrySet()) {
+            RootNode root = parsedTemplates.get(entry.getValue());
+            if (root == null) {
+                logger.warn("Template `{}` was not parsed by a compiling engine, render it with the interpreter", entry.getKey());
+                continue;
+            }
+            String className = "CompiledTemplate_" + sources.size() + "_" + entry.getKey().replaceAll("[^A-Za-z0-9_]", "_");
+            try {
+                sources.put(entry.getKey(), new SourceGenerator(engine.getExtensionRegistry(), className).generate(root));
+            } catch (UnsupportedTemplateException e) {
+                logger.info("Render template `{}` with the interpreter, it uses {}", entry.getKey(), e.getMessage());
+            }
+        }
+        if (sources.isEmpty()) {
+            return result;
+        }
+        try {
+            Map<String, byte[]> classes = compileSources(sources.values());
+            for (Map.Entry<String, SourceGenerator> entry : sources.entrySet()) {
+                PebbleTemplate template = templates.get(entry.getKey());
+                byte[] bytecode = classes.get(PACKAGE + "." + entry.getValue().className);
+                result.put(entry.getKey(), instantiate(engine, (PebbleTemplateImpl) template, bytecode, entry.getValue().constants.toArray()));
+                if (!entry.getValue().persistedConstants.contains(null)) {
+                    compiled.accept(entry.getKey(), new TemplateCache.Entry(bytecode, List.copyOf(entry.getValue().persistedConstants)));
+                }
+            }
+            logger.info("Compiled templates: \r\n{}", String.join("\r\n", sources.keySet()));
+        } catch (Throwable e) {
+            logger.warn("Unable to compile templates {}, render them with the interpreter", sources.keySet(), e);
+            result.putAll(templates);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a template from a cache entry, with an empty interpreted template standing for it
+     * @return Compiled template, null if the entry does not fit the engine
+     */
+    private static PebbleTemplate restore(PebbleEngine engine, String name, TemplateCache.Entry entry) {
+        Object[] constants = entry.resolveConstants(engine.getExtensionRegistry());
+        if (constants == null) {
+            logger.info("Compile template `{}` again, its filters or tests changed", name);
+            return null;
+        }
+        try {
+            return instantiate(engine, new PebbleTemplateImpl(engine, new RootNode(new BodyNode(0, List.of())), name), entry.bytecode(), constants);
+        } catch (Throwable e) {
+            logger.warn("Compile template `{}` again, unable to load it from cache", name, e);
+            return null;
+        }
+    }
+
+    private static PebbleTemplate instantiate(PebbleEngine engine, PebbleTemplateImpl template, byte[] bytes, Object[] constants) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+        return (PebbleTemplate) lookup.findConstructor(lookup.lookupClass(),
+                        MethodType.methodType(void.class, PebbleEngine.class, PebbleTemplateImpl.class, Object[].class))
+                .invoke(engine, template, constants);
+    }
+
+    private static Map<String, byte[]> compileSources(Iterable<SourceGenerator> sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available at runtime");
+        }
+        List<JavaFileObject> files = new ArrayList<>();
+        for (SourceGenerator source : sources) {
+            files.add(new SourceFile(source.className, source.source.toString()));
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        ClassOutput output = new ClassOutput(compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8));
+        List<String> options = List.of(
+                "--release", String.valueOf(Runtime.version().feature()),
+                "-classpath", compilerClassPath(),
+                "-proc:none");
+        if (!compiler.getTask(null, output, diagnostics, options, null, files).call()) {
+            throw new IllegalStateException("Generated template classes do not compile: " + diagnostics.getDiagnostics());
+        }
+        return output.classes;
+    }
+
+    /**
+     * Application class path extended with locations of Pebble and SOFA classes, which may be
+     * loaded by a class loader other than the application one
+     */
+    private static String compilerClassPath() {
+        List<String> entries = new ArrayList<>(List.of(System.getProperty("java.class.path").split(File.pathSeparator)));
+        for (Class<?> type : List.of(PebbleEngine.class, CompiledTemplate.class)) {
+            CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource == null || codeSource.getLocation() == null) {
+                continue;
+            }
+            try {
+                entries.add(Path.of(codeSource.getLocation().toURI()).toString());
+            } catch (Exception e) {
+                logger.debug("Skip class path of {}", type, e);
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Template part the compiler does not support, the message names it
+     */
+    private static final class UnsupportedTemplateException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedTemplateException(String construct, int line) {
+            super(construct + " at line " + line, null, false, false);
+        }
+    }
+
+    /**
+     * Variable of an enclosing {@code for} tag
+     * @param variable Iteration variable name
+     * @param item Java local holding the current item
+     * @param loop Java local holding loop variables
+     */
+    private record Frame(String variable, String item, String loop) {}
+
+    private static final class MethodSource {
+        private final StringBuilder body = new StringBuilder();
+        private final List<String> temporaries = new ArrayList<>();
+        private int indent = 2;
+
+        private void line(String code) {
+            body.append("    ".repeat(indent)).append(code).append('\n');
+        }
+    }
+
+    /**
+     * Generates source of one template class
+     */
+    private static final class SourceGenerator {
+        /** Node weight after which the rest of a body moves to a separate method */
+        private static final int METHOD_WEIGHT = 200;
+        /** Maximal weight of a branch body rendered inline */
+        private static final int INLINE_WEIGHT = 16;
+
+        private final ExtensionRegistry registry;
+        private final String className;
+        private final StringBuilder source = new StringBuilder();
+        private final StringBuilder methods = new StringBuilder();
+        private final List<Object> constants = new ArrayList<>();
+        /** Stored forms of constants, null for ones which can not be stored */
+        private final List<TemplateCache.Constant> persistedConstants = new ArrayList<>();
+        private final List<String> constantTypes = new ArrayList<>();
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private MethodSource method;
+        private int names;
+
+        private SourceGenerator(ExtensionRegistry registry, String className) {
+            this.registry = registry;
+            this.className = className;
+        }
+
+        private SourceGenerator generate(RootNode root) {
+            method = new MethodSource();
+            body(root.getBody());
+            appendMethod("@Override\n    protected void render(Writer w, EvaluationContextImpl c, ScopeChain s) throws IOException", method);
+
+            source.append("package ").append(PACKAGE).append(";\n\n")
+                    .append("import com.mitchellbosecke.pebble.PebbleEngine;\n")
+                    .append("import com.mitchellbosecke.pebble.extension.Filter;\n")
+                    .append("import com.mitchellbosecke.pebble.extension.Test;\n")
+                    .append("import com.mitchellbosecke.pebble.node.ArgumentsNode;\n")
+                    .append("import com.mitchellbosecke.pebble.template.EvaluationContextImpl;\n")
+                    .append("import com.mitchellbosecke.pebble.template.PebbleTemplateImpl;\n")
+                    .append("import com.mitchellbosecke.pebble.template.ScopeChain;\n")
+                    .append("import com.mitchellbosecke.pebble.utils.OperatorUtils;\n")
+                    .append("import java.io.IOException;\n")
+                    .append("import java.io.Writer;\n")
+                    .append("import java.util.Iterator;\n\n")
+                    .append("final class ").append(className).append(" extends CompiledTemplate {\n");
+            for (int i = 0; i < constants.size(); i++) {
+                source.append("    private final ").append(constantTypes.get(i)).append(" k").append(i).append(";\n");
+            }
+            source.append("\n    ").append(className).append("(PebbleEngine engine, PebbleTemplateImpl template, Object[] k) {\n")
+                    .append("        super(engine, template);\n");
+            for (int i = 0; i < constants.size(); i++) {
+                source.append("        k").append(i).append(" = (").append(constantTypes.get(i)).append(") k[").append(i).append("];\n");
+            }
+            source.append("    }\n").append(methods).append("}\n");
+            return this;
+        }
+
+        private void body(BodyNode body) {
+            if (body.isOnlyRenderInheritanceSafeNodes()) {
+                throw new UnsupportedTemplateException("template inheritance", body.getLineNumber());
+            }
+            children(body.getChildren());
+        }
+
+        private void children(List<RenderableNode> children) {
+            int weight = 0;
+            for (int i = 0; i < children.size(); i++) {
+                RenderableNode child = children.get(i);
+                int childWeight = weight(child);
+                if (weight > 0 && weight + childWeight > METHOD_WEIGHT) {
+                    List<RenderableNode> rest = children.subList(i, children.size());
+                    renderInMethod(() -> children(rest));
+                    return;
+                }
+                weight += childWeight;
+                node(child);
+            }
+        }
+
+        private void node(RenderableNode node) {
+            int line = ((AbstractRenderableNode) node).getLineNumber();
+            if (node.getClass() == TextNode.class) {
+                char[] text = ((TextNode) node).getData();
+                method.line("w.write(" + constant(text, "char[]", new TemplateCache.Text(new String(text))) + ");");
+            } else if (node.getClass() == PrintNode.class) {
+                method.line("print(w, " + expression(((PrintNode) node).getExpression()) + ");");
+            } else if (node.getClass() == SetNode.class) {
+                SetNode set = (SetNode) node;
+                if ("loop".equals(set.getName()) && !frames.isEmpty() || frame(set.getName()) != null) {
+                    throw new UnsupportedTemplateException("set of a loop variable", line);
+                }
+                method.line("s.set(" + literal(set.getName()) + ", " + expression(set.getValue()) + ");");
+            } else if (node.getClass() == IfNode.class) {
+                IfNode ifNode = (IfNode) node;
+                branches(ifNode.getConditionsWithBodies(), 0, ifNode.getElseBody(), line);
+            } else if (node.getClass() == ForNode.class) {
+                forLoop((ForNode) node, line);
+            } else {
+                throw new UnsupportedTemplateException(node.getClass().getSimpleName(), line);
+            }
+        }
+
+        private void branches(List<Pair<Expression<?>, BodyNode>> branches, int index, BodyNode elseBody, int line) {
+            String condition = name("b");
+            method.line("boolean " + condition + ";");
+            method.line("try {");
+            method.indent++;
+            method.line(condition + " = condition(c, " + expression(branches.get(index).getLeft()) + ", " + line + ");");
+            method.indent--;
+            method.line("} catch (RuntimeException e) {");
+            method.line("    throw error(e, \"Wrong operand(s) type in conditional expression\", " + line + ");");
+            method.line("}");
+            method.line("if (" + condition + ") {");
+            method.indent++;
+            branch(branches.get(index).getRight());
+            method.indent--;
+            if (index + 1 < branches.size()) {
+                method.line("} else {");
+                method.indent++;
+                branches(branches, index + 1, elseBody, line);
+                method.indent--;
+            } else if (elseBody != null) {
+                method.line("} else {");
+                method.indent++;
+                branch(elseBody);
+                method.indent--;
+            }
+            method.line("}");
+        }
+
+        private void branch(BodyNode body) {
+            if (weight(body) <= INLINE_WEIGHT) {
+                body(body);
+            } else {
+                renderInMethod(() -> body(body));
+            }
+        }
+
+        private void forLoop(ForNode node, int line) {
+            renderInMethod(() -> {
+                String iterable = name("i");
+                String iterator = name("t");
+                method.line("Object " + iterable + " = " + expression(node.getIterable()) + ";");
+                method.line("if (" + iterable + " == null) {");
+                method.line("    return;");
+                method.line("}");
+                method.line("Iterator<?> " + iterator + " = iterator(" + iterable + ", " + line + ");");
+                method.line("if (!" + iterator + ".hasNext()) {");
+                method.indent++;
+                if (node.getElseBody() != null) {
+                    body(node.getElseBody());
+                }
+                method.line("return;");
+                method.indent--;
+                method.line("}");
+                Frame frame = new Frame(node.getIterationVariable(), name("v"), name("l"));
+                method.line("s.pushScope();");
+                method.line("CompiledTemplate.Loop " + frame.loop + " = new CompiledTemplate.Loop(" + iterable + ");");
+                method.line("while (" + iterator + ".hasNext()) {");
+                method.indent++;
+                method.line("Object " + frame.item + " = " + frame.loop + ".next(" + iterator + ");");
+                method.line("s.put(\"loop\", " + frame.loop + ");");
+                method.line("s.put(" + literal(frame.variable) + ", " + frame.item + ");");
+                frames.push(frame);
+                body(node.getBody());
+                frames.pop();
+                method.indent--;
+                method.line("}");
+                method.line("s.popScope();");
+            });
+        }
+
+        /**
+         * Moves rendering to a new method, called from the current one
+         */
+        private void renderInMethod(Runnable render) {
+            String name = name("render");
+            method.line(name + "(w, c, s" + frameArguments() + ");");
+            MethodSource caller = method;
+            method = new MethodSource();
+            render.run();
+            appendMethod("private void " + name + "(Writer w, EvaluationContextImpl c, ScopeChain s" + frameParameters() + ") throws IOException", method);
+            method = caller;
+        }
+
+        /**
+         * Evaluates an operator in a new method, wrapping its failures as Pebble does
+         */
+        private String operator(BinaryExpression<?> expression, String operation, String message) {
+            String name = name("evaluate");
+            MethodSource caller = method;
+            method = new MethodSource();
+            String left = expression(expression.getLeftExpression());
+            String right = expression(expression.getRightExpression());
+            method.line("try {");
+            method.line("    return " + operation + "(" + left + ", " + right + ");");
+            method.line("} catch (Exception e) {");
+            method.line("    throw error(e, " + literal(message) + ", " + expression.getLineNumber() + ");");
+            method.line("}");
+            appendMethod("private Object " + name + "(EvaluationContextImpl c, ScopeChain s" + frameParameters() + ")", method);
+            method = caller;
+            return name + "(c, s" + frameArguments() + ")";
+        }
+
+        private void appendMethod(String signature, MethodSource source) {
+            methods.append("\n    ").append(signature).append(" {\n");
+            for (String temporary : source.temporaries) {
+                methods.append("        Object ").append(temporary).append(";\n");
+            }
+            methods.append(source.body).append("    }\n");
+        }
+
+        private String frameParameters() {
+            StringBuilder parameters = new StringBuilder();
+            for (Frame frame : frames) {
+                parameters.append(", Object ").append(frame.item).append(", CompiledTemplate.Loop ").append(frame.loop);
+            }
+            return parameters.toString();
+        }
+
+        private String frameArguments() {
+            StringBuilder arguments = new StringBuilder();
+            for (Frame frame : frames) {
+                arguments.append(", ").append(frame.item).append(", ").append(frame.loop);
+            }
+            return arguments.toString();
+        }
+
+        private String expression(Expression<?> expression) {
+            int line = expression.getLineNumber();
+            Class<?> type = expression.getClass();
+            if (type == LiteralStringExpression.class) {
+                return literal(((LiteralStringExpression) expression).getValue());
+            }
+            if (type == LiteralNullExpression.class) {
+                return "null";
+            }
+            if (type == LiteralIntegerExpression.class || type == LiteralLongExpression.class || type == LiteralDoubleExpression.class
+                    || type == LiteralBooleanExpression.class || type == LiteralBigDecimalExpression.class) {
+                Object value = expression.evaluate(null, null);
+                return constant(value, "Object", persistedLiteral(value));
+            }
+            if (type == ArrayExpression.class || type == MapExpression.class) {
+                return collectionLiteral(expression, line);
+            }
+            if (type == ContextVariableExpression.class) {
+                return variable(((ContextVariableExpression) expression).getName(), line);
+            }
+            if (type == GetAttributeExpression.class) {
+                return attribute((GetAttributeExpression) expression, line);
+            }
+            if (type == FilterExpression.class) {
+                FilterExpression filterExpression = (FilterExpression) expression;
+                FilterInvocationExpression invocation = (FilterInvocationExpression) filterExpression.getRightExpression();
+                Filter filter = registry.getFilter(invocation.getFilterName());
+                if (filter == null || filter instanceof DefaultFilter) {
+                    throw new UnsupportedTemplateException("filter " + invocation.getFilterName(), line);
+                }
+                TemplateCache.Constant reference = new TemplateCache.FilterReference(invocation.getFilterName(), argumentNames(filter));
+                return "filter(c, " + constant(filter, "Filter", reference) + ", " + arguments(invocation.getArgs(), filter, line) + ", "
+                        + expression(filterExpression.getLeftExpression()) + ", " + line + ")";
+            }
+            if (type == PositiveTestExpression.class || type == NegativeTestExpression.class) {
+                PositiveTestExpression testExpression = (PositiveTestExpression) expression;
+                TestInvocationExpression invocation = (TestInvocationExpression) testExpression.getRightExpression();
+                Test test = registry.getTest(invocation.getTestName());
+                if (test == null || test instanceof DefinedTest) {
+                    throw new UnsupportedTemplateException("test " + invocation.getTestName(), line);
+                }
+                TemplateCache.Constant reference = new TemplateCache.TestReference(invocation.getTestName(), argumentNames(test));
+                return "Boolean.valueOf(" + (type == NegativeTestExpression.class ? "!" : "") + "test(c, " + constant(test, "Test", reference) + ", "
+                        + arguments(invocation.getArgs(), test, line) + ", " + expression(testExpression.getLeftExpression()) + ", " + line + "))";
+            }
+            if (type == AndExpression.class || type == OrExpression.class) {
+                BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+                String operator = type == AndExpression.class ? "and" : "or";
+                return "Boolean.valueOf(operand(c, " + expression(binary.getLeftExpression()) + ", \"" + operator + "\", " + line + ")"
+                        + (type == AndExpression.class ? " && " : " || ")
+                        + "operand(c, " + expression(binary.getRightExpression()) + ", \"" + operator + "\", " + line + "))";
+            }
+            if (type == ContainsExpression.class) {
+                BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+                String container = name("t");
+                method.temporaries.add(container);
+                return "((" + container + " = " + expression(binary.getLeftExpression()) + ") == null ? Boolean.FALSE : contains("
+                        + container + ", " + expression(binary.getRightExpression()) + ", " + line + "))";
+            }
+            if (type == ConcatenateExpression.class) {
+                BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+                return "concatenate(" + expression(binary.getLeftExpression()) + ", " + expression(binary.getRightExpression()) + ")";
+            }
+            if (type == UnaryNotExpression.class) {
+                return "not(c, " + expression(((UnaryNotExpression) expression).getChildExpression()) + ", " + line + ")";
+            }
+            if (type == UnaryMinusExpression.class) {
+                return "OperatorUtils.unaryMinus(" + expression(((UnaryMinusExpression) expression).getChildExpression()) + ")";
+            }
+            if (type == UnaryPlusExpression.class) {
+                return "OperatorUtils.unaryPlus(" + expression(((UnaryPlusExpression) expression).getChildExpression()) + ")";
+            }
+            String[] operator = OPERATORS.get(type);
+            if (operator != null) {
+                return operator((BinaryExpression<?>) expression, operator[0], operator[1]);
+            }
+            throw new UnsupportedTemplateException(type.getSimpleName(), line);
+        }
+
+        /** Operators evaluated by {@code OperatorUtils}, with messages Pebble wraps their failures with */
+        private static final Map<Class<?>, String[]> OPERATORS = Map.ofEntries(
+                Map.entry(EqualsExpression.class, new String[] {"OperatorUtils.equals", "Could not perform equals comparison"}),
+                Map.entry(NotEqualsExpression.class, new String[] {"!OperatorUtils.equals", "Could not perform not equals comparison"}),
+                Map.entry(AddExpression.class, new String[] {"OperatorUtils.add", "Could not perform addition"}),
+                Map.entry(SubtractExpression.class, new String[] {"OperatorUtils.subtract", "Could not perform subtraction"}),
+                Map.entry(MultiplyExpression.class, new String[] {"OperatorUtils.multiply", "Could not perform multiplication"}),
+                Map.entry(DivideExpression.class, new String[] {"OperatorUtils.divide", "Could not perform division"}),
+                Map.entry(ModulusExpression.class, new String[] {"OperatorUtils.mod", "Could not perform greater modulus"}),
+                Map.entry(GreaterThanExpression.class, new String[] {"OperatorUtils.gt", "Could not perform greater than comparison"}),
+                Map.entry(GreaterThanEqualsExpression.class, new String[] {"OperatorUtils.gte", "Could not perform greater than or equals comparison"}),
+                Map.entry(LessThanExpression.class, new String[] {"OperatorUtils.lt", "Could not perform greater modulus"}),
+                Map.entry(LessThanEqualsExpression.class, new String[] {"OperatorUtils.lte", "Could not perform less than or equals comparison"}));
+
+        private String variable(String name, int line) {
+            for (Frame frame : frames) {
+                if (frame.variable.equals(name)) {
+                    return frame.item;
+                }
+                if ("loop".equals(name)) {
+                    return frame.loop;
+                }
+            }
+            return "variable(c, s, " + literal(name) + ", " + line + ")";
+        }
+
+        private String attribute(GetAttributeExpression expression, int line) {
+            Expression<?> node = expression.getNode();
+            Expression<?> attributeName = expression.getAttributeNameExpression();
+            ArgumentsNode arguments = expression.getArgumentsNode();
+            String rootName = node instanceof ContextVariableExpression variable ? variable.getName() : null;
+            if (rootName != null && arguments == null && attributeName.getClass() == LiteralStringExpression.class) {
+                String instance = variable(rootName, line);
+                String loopVariable = ((LiteralStringExpression) attributeName).getValue();
+                if (isLoopLocal(instance)) {
+                    switch (loopVariable) {
+                        case "first", "last", "index":
+                            return "(Object) " + instance + "." + loopVariable;
+                        case "length", "revindex":
+                            return instance + "." + loopVariable;
+                        default:
+                            break;
+                    }
+                }
+            }
+            String values = "null";
+            if (arguments != null) {
+                List<String> positional = new ArrayList<>();
+                if (arguments.getPositionalArgs() != null) {
+                    for (PositionalArgumentNode argument : arguments.getPositionalArgs()) {
+                        positional.add(expression(argument.getValueExpression()));
+                    }
+                }
+                values = "new Object[] {" + String.join(", ", positional) + "}";
+            }
+            return "attribute(c, " + expression(node) + ", " + expression(attributeName) + ", " + values + ", "
+                    + (arguments == null ? "null" : constant(arguments, "ArgumentsNode", new TemplateCache.Arguments(
+                            arguments.getPositionalArgs() == null ? 0 : arguments.getPositionalArgs().size(), line))) + ", "
+                    + (rootName == null ? "null" : literal(rootName)) + ", " + line + ")";
+        }
+
+        private boolean isLoopLocal(String code) {
+            for (Frame frame : frames) {
+                if (frame.loop.equals(code)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return Call building the argument map Pebble passes to a filter or a test
+         */
+        private String arguments(ArgumentsNode arguments, NamedArguments target, int line) {
+            List<String> names = target.getArgumentNames();
+            List<String> keysAndValues = new ArrayList<>();
+            if (arguments != null && arguments.getPositionalArgs() != null) {
+                List<PositionalArgumentNode> positional = arguments.getPositionalArgs();
+                for (int i = 0; i < positional.size(); i++) {
+                    if (names != null && i >= names.size()) {
+                        throw new UnsupportedTemplateException("too many arguments", line);
+                    }
+                    keysAndValues.add(literal(names == null ? String.valueOf(i) : names.get(i)));
+                    keysAndValues.add(expression(positional.get(i).getValueExpression()));
+                }
+            }
+            if (names != null && arguments != null && arguments.getNamedArgs() != null) {
+                for (NamedArgumentNode argument : arguments.getNamedArgs()) {
+                    if (!names.contains(argument.getName())) {
+                        throw new UnsupportedTemplateException("unknown argument " + argument.getName(), line);
+                    }
+                    keysAndValues.add(literal(argument.getName()));
+                    keysAndValues.add(argument.getValueExpression() == null ? "null" : expression(argument.getValueExpression()));
+                }
+            }
+            return "arguments(" + String.join(", ", keysAndValues) + ")";
+        }
+
+        /**
+         * Array and map literals of constants, copied on evaluation as Pebble creates them anew
+         */
+        private String collectionLiteral(Expression<?> expression, int line) {
+            Object value;
+            try {
+                value = expression.evaluate(null, null);
+            } catch (RuntimeException e) {
+                throw new UnsupportedTemplateException("collection literal with variables", line);
+            }
+            return value instanceof List
+                    ? "new java.util.ArrayList<Object>(" + constant(value, "java.util.List<?>", persistedLiteral(value)) + ")"
+                    : "new java.util.HashMap<Object, Object>(" + constant(value, "java.util.Map<?, ?>", persistedLiteral(value)) + ")";
+        }
+
+        private Frame frame(String variable) {
+            for (Frame frame : frames) {
+                if (frame.variable.equals(variable)) {
+                    return frame;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param persisted Stored form of the value, null if it can not be stored
+         */
+        private String constant(Object value, String type, TemplateCache.Constant persisted) {
+            constants.add(value);
+            constantTypes.add(type);
+            persistedConstants.add(persisted);
+            return "k" + (constants.size() - 1);
+        }
+
+        private static TemplateCache.Constant persistedLiteral(Object value) {
+            return value instanceof Serializable serializable ? new TemplateCache.Literal(serializable) : null;
+        }
+
+        private static List<String> argumentNames(NamedArguments target) {
+            List<String> names = target.getArgumentNames();
+            return names == null ? null : new ArrayList<>(names);
+        }
+
+        private String name(String prefix) {
+            return prefix + names++;
+        }
+
+        private static int weight(RenderableNode node) {
+            if (node instanceof IfNode ifNode) {
+                int weight = 1;
+                for (Pair<Expression<?>, BodyNode> branch : ifNode.getConditionsWithBodies()) {
+                    weight += branchWeight(branch.getRight());
+                }
+                return ifNode.getElseBody() == null ? weight : weight + branchWeight(ifNode.getElseBody());
+            }
+            return 1;
+        }
+
+        private static int branchWeight(BodyNode body) {
+            int weight = weight(body);
+            return weight <= INLINE_WEIGHT ? weight : 1;
+        }
+
+        private static int weight(BodyNode body) {
+            int weight = 0;
+            for (RenderableNode child : body.getChildren()) {
+                weight += weight(child);
+            }
+            return weight;
+        }
+
+        private static String literal(String value) {
+            StringBuilder literal = new StringBuilder("\"");
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                switch (ch) {
+                    case '"' -> literal.append("\\\"");
+                    case '\\' -> literal.append("\\\\");
+                    case '\n' -> literal.append("\\n");
+                    case '\r' -> literal.append("\\r");
+                    case '\t' -> literal.append("\\t");
+                    default -> {
+                        if (ch < 0x20 || ch > 0x7e) {
+                            literal.append(String.format("\\u%04x", (int) ch));
+                        } else {
+                            literal.append(ch);
+                        }
+                    }
+                }
+            }
+            return literal.append('"').toString();
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + PACKAGE.replace('.', '/') + "/" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    /**
+     * Keeps compiled classes in memory
+     */
+    private static final class ClassOutput extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classes = new HashMap<>();
+
+        ClassOutput(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
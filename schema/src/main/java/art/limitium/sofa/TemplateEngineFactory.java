@@ -1,28 +1,38 @@
 package art.limitium.sofa;
 
 import art.limitium.sofa.ext.*;
-import art.limitium.sofa.schema.Entity;
 import art.limitium.sofa.schema.TypeConverter;
 import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.cache.PebbleCache;
 import com.mitchellbosecke.pebble.extension.Filter;
 import com.mitchellbosecke.pebble.loader.ClasspathLoader;
 import com.mitchellbosecke.pebble.loader.DelegatingLoader;
 import com.mitchellbosecke.pebble.loader.FileLoader;
+import com.mitchellbosecke.pebble.loader.Loader;
 import com.mitchellbosecke.pebble.loader.StringLoader;
 import com.mitchellbosecke.pebble.template.PebbleTemplate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 final class TemplateEngineFactory {
     private static final Logger logger = LoggerFactory.getLogger(TemplateEngineFactory.class);
+    /** Parsed templates kept by an engine, main templates stay referenced by their generators */
+    private static final int MAX_CACHED_TEMPLATES = 1024;
+    /** Options of generator engines, templates compiled by {@link TemplateCompiler} depend on them */
+    private static final boolean NEW_LINE_TRIMMING = true;
+    private static final boolean AUTO_ESCAPING = false;
+    private static final boolean STRICT_VARIABLES = true;
 
     private final List<TypeConverter> typeConverters;
     private final PebbleEngine inlineEngine;
     private final TemplateEvaluator templateEvaluator;
     private final Map<String, Filter> pluginFilters;
+    private final TemplateCompiler templateCompiler = new TemplateCompiler();
 
     TemplateEngineFactory(ClassLoader classLoader, List<String> pluginClassNames) {
         this.typeConverters = PluginDiscovery.discoverTypeConverters(classLoader, pluginClassNames, loadCoreTypeConverters());
@@ -48,7 +58,51 @@ final class TemplateEngineFactory {
     }
 
     PebbleEngine createPebbleEngineForPath(
-            String filePath, String classPath, Map<String, Map<String, Entity>> schemas) {
+            String filePath, String classPath, GeneratedSchemas schemas) {
+        return createPebbleEngine(createTemplateLoader(filePath, classPath), schemas);
+    }
+
+    /**
+     * Creates an engine with one bounded template cache, generators of a configuration share it
+     * through a {@link NamespacedLoader}. Templates it loads can be passed to {@link #compileTemplates}
+     * @param loader Template loader
+     * @param schemas Registry generators publish their entities to
+     * @return Engine
+     */
+    PebbleEngine createPebbleEngine(Loader<?> loader, GeneratedSchemas schemas) {
+        PebbleEngine engine = new PebbleEngine.Builder()
+                .loader(loader)
+                .templateCache(new BoundedTemplateCache(MAX_CACHED_TEMPLATES))
+                .newLineTrimming(NEW_LINE_TRIMMING)
+                .autoEscaping(AUTO_ESCAPING)
+                .strictVariables(STRICT_VARIABLES)
+                .extension(ModelAttributeResolver.extension())
+                .extension(templateCompiler.extension())
+                .build();
+
+        engine.getExtensionRegistry().addExtension(new CustomExtension(typeConverters, schemas, pluginFilters));
+        return engine;
+    }
+
+    /**
+     * Describes options of generator engines, so compiled templates are not reused by engines
+     * configured differently
+     * @return Options and extensions of engines created by {@link #createPebbleEngine}
+     */
+    static String engineOptions() {
+        return "newLineTrimming=" + NEW_LINE_TRIMMING
+                + ",autoEscaping=" + AUTO_ESCAPING
+                + ",strictVariables=" + STRICT_VARIABLES
+                + ",extensions=" + ModelAttributeResolver.class.getName() + "," + CustomExtension.class.getName();
+    }
+
+    /**
+     * Creates a loader of generator templates, a regular folder takes precedence over classpath
+     * @param filePath File system path to templates
+     * @param classPath Classpath to templates
+     * @return Loader
+     */
+    static Loader<?> createTemplateLoader(String filePath, String classPath) {
         FileLoader fileLoader = new FileLoader();
         fileLoader.setPrefix(filePath);
         fileLoader.setSuffix(".peb");
@@ -57,17 +111,29 @@ final class TemplateEngineFactory {
         classpathLoader.setPrefix(classPath);
         classpathLoader.setSuffix(".peb");
 
-        DelegatingLoader delegatingLoader = new DelegatingLoader(List.of(fileLoader, classpathLoader));
+        return new DelegatingLoader(List.of(fileLoader, classpathLoader));
+    }
 
-        PebbleEngine engine = new PebbleEngine.Builder()
-                .loader(delegatingLoader)
-                .newLineTrimming(true)
-                .autoEscaping(false)
-                .strictVariables(true)
-                .build();
+    /**
+     * Compiles templates to Java classes, templates the compiler does not support stay interpreted
+     * @param engine Engine created by this factory, which loaded the templates
+     * @param templates Templates by name
+     * @return Templates by name
+     */
+    Map<String, PebbleTemplate> compileTemplates(PebbleEngine engine, Map<String, PebbleTemplate> templates) {
+        return templateCompiler.compile(engine, templates);
+    }
 
-        engine.getExtensionRegistry().addExtension(new CustomExtension(typeConverters, schemas, pluginFilters));
-        return engine;
+    /**
+     * Compiles templates to Java classes reusing ones stored by previous runs, templates found in
+     * the cache are not parsed
+     * @param engine Engine created by this factory
+     * @param sources Template sources by name
+     * @param cache Compiled templates of previous runs
+     * @return Templates by name
+     */
+    Map<String, PebbleTemplate> compileTemplates(PebbleEngine engine, Map<String, String> sources, TemplateCache cache) {
+        return templateCompiler.compile(engine, sources, cache);
     }
 
     private static PebbleEngine createInlineEngine(
@@ -76,14 +142,56 @@ final class TemplateEngineFactory {
                 .loader(new StringLoader())
                 .newLineTrimming(true)
                 .strictVariables(true)
+                .extension(ModelAttributeResolver.extension())
                 .build();
-        engine.getExtensionRegistry().addExtension(new CustomExtension(typeConverters, Map.of(), pluginFilters));
+        // the inline engine is shared by configurations of a session, so it keeps no converted types
+        engine.getExtensionRegistry().addExtension(new CustomExtension(typeConverters, new GeneratedSchemas(), pluginFilters, false));
         return engine;
     }
 
+    /**
+     * Keeps most recently used templates. Templates are parsed outside of the lock, as parsing may
+     * load other templates; a template parsed concurrently twice is kept once
+     */
+    private static final class BoundedTemplateCache implements PebbleCache<Object, PebbleTemplate> {
+        private final Map<Object, PebbleTemplate> templates;
+
+        BoundedTemplateCache(int maxSize) {
+            this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, PebbleTemplate> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        @Override
+        public PebbleTemplate computeIfAbsent(Object key, Function<? super Object, ? extends PebbleTemplate> mappingFunction) {
+            synchronized (templates) {
+                PebbleTemplate template = templates.get(key);
+                if (template != null) {
+                    return template;
+                }
+            }
+            PebbleTemplate parsed = mappingFunction.apply(key);
+            synchronized (templates) {
+                PebbleTemplate template = templates.putIfAbsent(key, parsed);
+                return template != null ? template : parsed;
+            }
+        }
+
+        @Override
+        public void invalidateAll() {
+            synchronized (templates) {
+                templates.clear();
+            }
+        }
+    }
+
     private static List<TypeConverter> loadCoreTypeConverters() {
         return List.of(
                 new FBTypeConverter(),
+                new FBJavaTypeConverter(),
                 new FBFactoryConverter(),
                 new FbIsPrimitiveConverter(),
                 new JavaTypeConverter(),
@@ -21,6 +21,10 @@ public class TriesToReverseListConverter<E extends NamedEntity> {
             return;
         }
         for (E dependecy : owner.getDependencies()) {
+            if (flatted.containsKey(dependecy.getFullname())) {
+                // Dependencies of a flatted entity are flatted before it
+                continue;
+            }
             if (dependecy instanceof Owner<?> ownerDependency) {
                 addNode((Owner<E>) ownerDependency);
             }
@@ -0,0 +1,8 @@
+package art.limitium.sofa.config;
+
+public class CacheConfig {
+    /** Cache folder, relative to the configuration folder unless absolute. May be shared. */
+    public String path;
+    /** Optional cache size limit in megabytes, least recently used entries are evicted first. Defaults to 1024. */
+    public Long maxSizeMb;
+}
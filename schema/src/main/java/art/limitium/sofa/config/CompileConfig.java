@@ -0,0 +1,22 @@
+package art.limitium.sofa.config;
+
+import java.util.List;
+
+/**
+ * Compilation of generated Java sources within the generator JVM
+ */
+public class CompileConfig {
+    /**
+     * Folder or {@code .jar} archive compiled classes are written to, relative to the configuration
+     */
+    public String output;
+    /**
+     * Optional class path entries relative to the configuration, added to the class path of the
+     * generator and classes compiled by generators this one depends on
+     */
+    public List<String> classpath;
+    /**
+     * Optional javac options, {@code --release} of the running JVM by default
+     */
+    public List<String> options;
+}
@@ -10,4 +10,21 @@ public class FactoryConfig {
     public List<GeneratorConfig> generators;
     /** Optional list of fully-qualified SofaPlugin implementation class names. */
     public List<String> plugins;
+    /**
+     * Optional number of generators run concurrently. Missing or 1 runs generators one by one, 0
+     * uses all available processors. Dependent generators always run after their dependencies.
+     */
+    public Integer parallelism;
+    /**
+     * Optional folder for generation state such as manifests of generated files, relative to the
+     * configuration folder unless absolute. Defaults to {@code .sofa}.
+     */
+    public String statePath;
+    /** Optional content-addressed cache of generated files, disabled when missing. */
+    public CacheConfig cache;
+    /**
+     * Optional incremental generation: a snapshot of the entity graph is kept under {@code
+     * statePath} and the next run renders only entities affected by schema changes.
+     */
+    public Boolean incremental;
 }
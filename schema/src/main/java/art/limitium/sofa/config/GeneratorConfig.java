@@ -1,9 +1,52 @@
 package art.limitium.sofa.config;
 
+import java.util.List;
+
 public class GeneratorConfig {
     public String path;
     public FiltersConfig filters;
     public TemplatesConfig templates;
     public String postCall;
+    /**
+     * Optional maximum number of files passed to one postCall command. Changed files are split into
+     * batches run concurrently, missing or 0 passes all files to one command.
+     */
+    public Integer postCallBatchSize;
+    /**
+     * Optional, {@code true} logs a failed postCall instead of failing the generation.
+     */
+    public Boolean postCallOptional;
     public String overrides;
+    /**
+     * Optional number of entities rendered concurrently. Missing or 1 renders sequentially, 0 uses
+     * all available processors.
+     */
+    public Integer parallelism;
+    /**
+     * Optional names of generators to run before this one, in addition to the overridden one and
+     * the ones referenced by {@code from("...")} in templates.
+     */
+    public List<String> dependsOn;
+    /**
+     * Optional template backend, {@code interpreter} by default. {@code compiled} compiles main
+     * templates to Java classes when the generator is loaded, templates using constructs the
+     * compiler does not support are interpreted.
+     */
+    public String templateBackend;
+    /**
+     * Optional, {@code true} keeps changed files in memory while entities are rendered and writes
+     * them in one batch before the postCall runs.
+     */
+    public Boolean batchWrites;
+    /**
+     * Optional output target, files are written to folders by default. A path ending with
+     * {@code .zip} or {@code .jar} streams files into that archive, {@code memory:<name>} into a
+     * file system given by the caller. Evaluated folders and filenames become paths inside.
+     */
+    public String output;
+    /**
+     * Optional compilation of generated Java sources within the generator JVM, classes are written
+     * to a folder or jar after entities are rendered.
+     */
+    public CompileConfig compile;
 }
@@ -0,0 +1,127 @@
+package art.limitium.sofa.ext;
+
+import art.limitium.sofa.schema.Type;
+import art.limitium.sofa.schema.TypeConverter;
+
+/**
+ * Describes how a field of a FlatBuffers table is read and built in Java, the way {@code flatc -j}
+ * of flatbuffers 24.3.25 generates it for the type {@link FBTypeConverter} declares in the schema.
+ */
+public class FBJavaTypeConverter implements TypeConverter {
+    private static final FbJavaType BOOL = FbJavaType.scalar("boolean", "", "Boolean", "false", "BooleanVector", 1);
+    private static final FbJavaType BYTE = FbJavaType.scalar("byte", "", "Byte", "0", "ByteVector", 1);
+    private static final FbJavaType INT = FbJavaType.scalar("int", "Int", "Int", "0", "IntVector", 4);
+    private static final FbJavaType LONG = FbJavaType.scalar("long", "Long", "Long", "0L", "LongVector", 8);
+    private static final FbJavaType FLOAT = FbJavaType.scalar("float", "Float", "Float", "0.0f", "FloatVector", 4);
+    private static final FbJavaType DOUBLE = FbJavaType.scalar("double", "Double", "Double", "0.0", "DoubleVector", 8);
+    private static final FbJavaType STRING = new FbJavaType("string", "String", null, null, null, "StringVector", 4, null);
+    private static final FbJavaType BYTES = FbJavaType.vectorOf(BYTE);
+
+    @Override
+    public String getName() {
+        return "fbJavaType";
+    }
+
+    @Override
+    public FbJavaType getType(Type type) {
+        return switch (type) {
+            case Type.UUIDType uuidType -> STRING;
+            case Type.DatetimeType datetimeType -> STRING;
+            case Type.StringType stringType -> STRING;
+            case Type.DecimalType decimalType -> BYTES;
+            case Type.BytesType bytesType -> BYTES;
+            case Type.DateType dateType -> INT;
+            case Type.TimeMillisType timeMillisType -> INT;
+            case Type.TimeMicrosType timeMicrosType -> LONG;
+            case Type.IntType intType -> INT;
+            case Type.TimestampMillisType timestampMillisType -> LONG;
+            case Type.TimestampMicrosType timestampMicrosType -> LONG;
+            case Type.LocalTimestampMillisType localTimestampMillisType -> LONG;
+            case Type.LocalTimestampMicrosType localTimestampMicrosType -> LONG;
+            case Type.LongType longType -> LONG;
+            case Type.FloatType floatType -> FLOAT;
+            case Type.DoubleType doubleType -> DOUBLE;
+            case Type.BooleanType booleanType -> BOOL;
+            // fixed size arrays are allowed in structs only, tables keep them as byte vectors
+            case Type.FixedType fixedType -> BYTES;
+            case Type.ArrayType arrayType -> {
+                FbJavaType element = this.getType(arrayType.getElementType());
+                if (element.isVector()) {
+                    throw new IllegalArgumentException("Unsupported multidimensional arrays." + type.getName());
+                }
+                yield FbJavaType.vectorOf(element);
+            }
+            case Type.RecordType recordType -> {
+                String fullname = recordType.getRecord().getFullname();
+                yield new FbJavaType("table", fullname, null, null, null, fullname + ".Vector", 4, null);
+            }
+            // enums are declared with byte as underlying type
+            case Type.EnumType enumType -> BYTE;
+            case Type.MapType mapType -> throw new IllegalArgumentException("Unsupported Avro type: " + type.getName());
+            case Type.NullType nullType -> throw new IllegalArgumentException("Unsupported Avro type: " + type.getName());
+            case Type.UnionType unionType -> throw new IllegalArgumentException("Unsupported Avro type: " + type.getName());
+            default -> throw new IllegalArgumentException("Unknown Avro type: " + type.getName());
+        };
+    }
+
+    /**
+     * Java view of a FlatBuffers type
+     *
+     * @param kind {@code scalar}, {@code string}, {@code table} or {@code vector}
+     * @param type Java type of a value, of an element for vectors
+     * @param access Suffix of {@link java.nio.ByteBuffer} get and put methods of a scalar
+     * @param builder Suffix of {@code FlatBufferBuilder} add methods of a scalar
+     * @param defaultValue Value of a scalar missing in a table
+     * @param vectorType Class of the vector accessor of a vector with elements of this type
+     * @param size Size in bytes of a scalar or an offset, the element size and alignment in vectors
+     * @param element Type of elements of a vector
+     */
+    public record FbJavaType(
+            String kind,
+            String type,
+            String access,
+            String builder,
+            String defaultValue,
+            String vectorType,
+            int size,
+            FbJavaType element) {
+
+        static FbJavaType scalar(String type, String access, String builder, String defaultValue, String vectorType, int size) {
+            return new FbJavaType("scalar", type, access, builder, defaultValue, vectorType, size, null);
+        }
+
+        static FbJavaType vectorOf(FbJavaType element) {
+            return new FbJavaType("vector", element.type, null, null, null, null, 4, element);
+        }
+
+        public boolean isScalar() {
+            return "scalar".equals(kind);
+        }
+
+        public boolean isVector() {
+            return "vector".equals(kind);
+        }
+
+        /**
+         * Reads a scalar from the table buffer {@code bb}
+         *
+         * @param position Java expression of the absolute position
+         * @return Java expression
+         */
+        public String read(String position) {
+            String value = "bb.get" + access + "(" + position + ")";
+            return "boolean".equals(type) ? "0!=" + value : value;
+        }
+
+        /**
+         * Writes a scalar to the table buffer {@code bb}
+         *
+         * @param position Java expression of the absolute position
+         * @param value Java expression of the value
+         * @return Java expression
+         */
+        public String write(String position, String value) {
+            return "bb.put" + access + "(" + position + ", " + ("boolean".equals(type) ? "(byte)(" + value + " ? 1 : 0)" : value) + ")";
+        }
+    }
+}
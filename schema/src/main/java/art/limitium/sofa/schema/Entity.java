@@ -3,21 +3,34 @@ package art.limitium.sofa.schema;
 import org.apache.avro.Schema;
 
 import javax.annotation.Nonnull;
-import java.util.Objects;
 
+/**
+ * Entity of a generator, compared by identity: views of the same Avro entity in different
+ * generators are different entities sharing the same id
+ */
 public class Entity implements NamedEntity{
+    final int id;
     String namespace;
     String name;
     String fullName;
     Schema schema;
 
-    public Entity(@Nonnull String namespace, @Nonnull String name, @Nonnull String fullName, @Nonnull Schema schema) {
+    public Entity(int id, @Nonnull String namespace, @Nonnull String name, @Nonnull String fullName, @Nonnull Schema schema) {
+        this.id = id;
         this.namespace = namespace;
         this.name = name;
         this.fullName = fullName;
         this.schema = schema;
     }
 
+    /**
+     * Gets the dense id of this entity, unique within a configuration
+     * @return Entity id
+     */
+    public int getId() {
+        return id;
+    }
+
     public String getNamespace() {
         return namespace;
     }
@@ -33,17 +46,4 @@ public class Entity implements NamedEntity{
     public Schema getSchema() {
         return schema;
     }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Entity entity = (Entity) o;
-        return Objects.equals(namespace, entity.namespace) && Objects.equals(name, entity.name) && Objects.equals(fullName, entity.fullName) && Objects.equals(schema, entity.schema);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(namespace, name, fullName, schema);
-    }
 }
@@ -0,0 +1,338 @@
+package art.limitium.sofa.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Entities of a generator indexed by dense ids with their relations.
+ *
+ * <p>Every entity of a configuration has the same id in all generators, relations are stored once
+ * per configuration as id arrays in {@link Structure} and shared by graphs of all generators. A
+ * graph only maps ids to entities of its generator, so traversals run on ids and {@link BitSet}s and
+ * resolve entities at the end.
+ *
+ * <p>Traversals are memoized: ids are computed once per configuration by the structure, entity
+ * lists once per generator by the graph. Returned lists are immutable and shared between callers.
+ */
+public final class EntityGraph {
+    private final Structure structure;
+    private final Entity[] entities;
+    private final AtomicReferenceArray<List<Entity>> dependenciesRecursive;
+    private final AtomicReferenceArray<List<Entity>> dependenciesUpToClosestDependent;
+    private final AtomicReferenceArray<List<Entity>> dependenciesToClosestDependent;
+    private final AtomicReferenceArray<List<Entity>> closestOwners;
+
+    /**
+     * @param structure Relations shared by generators of a configuration
+     */
+    public EntityGraph(Structure structure) {
+        this.structure = structure;
+        this.entities = new Entity[structure.size()];
+        this.dependenciesRecursive = new AtomicReferenceArray<>(structure.size());
+        this.dependenciesUpToClosestDependent = new AtomicReferenceArray<>(structure.size());
+        this.dependenciesToClosestDependent = new AtomicReferenceArray<>(structure.size());
+        this.closestOwners = new AtomicReferenceArray<>(structure.size());
+    }
+
+    /**
+     * Binds an entity to its id, all entities must be bound before relations are read
+     *
+     * @param entity Entity created with this graph
+     */
+    public void bind(Entity entity) {
+        entities[entity.getId()] = entity;
+    }
+
+    /**
+     * Gets an entity by id
+     *
+     * @param id Entity id
+     * @return Entity or null if none was created for the id
+     */
+    public Entity get(int id) {
+        return entities[id];
+    }
+
+    boolean isDependent(int id) {
+        return structure.dependents.get(id);
+    }
+
+    List<Entity> dependenciesOf(int id) {
+        return resolve(structure.dependencies[id]);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<RecordEntity> ownersOf(int id) {
+        return (List<RecordEntity>) (List<?>) resolve(structure.owners[id]);
+    }
+
+    @SuppressWarnings("unchecked")
+    Set<RecordEntity> parentsOf(int id) {
+        return Collections.unmodifiableSet(
+                (Set<RecordEntity>) (Set<?>) new LinkedHashSet<>(resolve(structure.parents[id])));
+    }
+
+    /**
+     * Collects dependencies of an entity recursively, each dependency follows its own dependencies
+     *
+     * @param id Entity id
+     * @return Dependencies in depth-first post order without duplicates
+     */
+    public List<Entity> dependenciesRecursive(int id) {
+        return memoized(dependenciesRecursive, id, structure::dependenciesRecursive);
+    }
+
+    /**
+     * Collects enums reachable from a record without crossing 1-to-many relations
+     *
+     * @param id Record id
+     * @return Enums in traversal order
+     */
+    public List<Entity> dependenciesUpToClosestDependent(int id) {
+        return memoized(dependenciesUpToClosestDependent, id, structure::dependenciesUpToClosestDependent);
+    }
+
+    /**
+     * Collects enums reachable from a record and the closest records in 1-to-many relations
+     *
+     * @param id Record id
+     * @return Enums and records in traversal order
+     */
+    public List<Entity> dependenciesToClosestDependent(int id) {
+        return memoized(dependenciesToClosestDependent, id, structure::dependenciesToClosestDependent);
+    }
+
+    /**
+     * Walks up parents of an entity to the closest dependent or root records
+     *
+     * @param id Entity id
+     * @return Closest dependent or root records in traversal order
+     */
+    @SuppressWarnings("unchecked")
+    public List<RecordEntity> closestOwners(int id) {
+        return (List<RecordEntity>) (List<?>) memoized(closestOwners, id, structure::closestOwners);
+    }
+
+    private List<Entity> memoized(AtomicReferenceArray<List<Entity>> memo, int id, IntFunction<int[]> traversal) {
+        if (memo.get(id) == null) {
+            memo.compareAndSet(id, null, resolve(traversal.apply(id)));
+        }
+        return memo.get(id);
+    }
+
+    private List<Entity> resolve(int[] ids) {
+        List<Entity> resolved = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            resolved.add(entities[id]);
+        }
+        return Collections.unmodifiableList(resolved);
+    }
+
+    /**
+     * Relations of entities indexed by id, independent of generator naming. Traversals are computed
+     * on first use and kept for the lifetime of the structure, a changed graph gets a new structure.
+     */
+    public static final class Structure {
+        private final int[][] dependencies;
+        private final int[][] owners;
+        private final int[][] parents;
+        private final int[][] arrayRecords;
+        private final BitSet records;
+        private final BitSet roots;
+        private final BitSet dependents;
+        private final AtomicReferenceArray<int[]> dependenciesRecursive;
+        private final AtomicReferenceArray<int[]> dependenciesUpToClosestDependent;
+        private final AtomicReferenceArray<int[]> dependenciesToClosestDependent;
+        private final AtomicReferenceArray<int[]> closestOwners;
+
+        /**
+         * @param dependencies Ids of direct dependencies per entity
+         * @param owners Ids of records owning an entity in 1-to-many relations per entity
+         * @param parents Ids of records depending on an entity per entity, in generation order
+         * @param arrayRecords Ids of records used as array elements by fields of a record per entity
+         * @param records Ids of records
+         * @param roots Ids of root records
+         * @param dependents Ids of records having owners
+         */
+        public Structure(
+                int[][] dependencies,
+                int[][] owners,
+                int[][] parents,
+                int[][] arrayRecords,
+                BitSet records,
+                BitSet roots,
+                BitSet dependents) {
+            this.dependencies = dependencies;
+            this.owners = owners;
+            this.parents = parents;
+            this.arrayRecords = arrayRecords;
+            this.records = records;
+            this.roots = roots;
+            this.dependents = dependents;
+            this.dependenciesRecursive = new AtomicReferenceArray<>(dependencies.length);
+            this.dependenciesUpToClosestDependent = new AtomicReferenceArray<>(dependencies.length);
+            this.dependenciesToClosestDependent = new AtomicReferenceArray<>(dependencies.length);
+            this.closestOwners = new AtomicReferenceArray<>(dependencies.length);
+        }
+
+        public int size() {
+            return dependencies.length;
+        }
+
+        public int[][] dependencies() {
+            return dependencies;
+        }
+
+        public int[][] owners() {
+            return owners;
+        }
+
+        public int[][] parents() {
+            return parents;
+        }
+
+        int[] dependenciesRecursive(int id) {
+            return memoized(dependenciesRecursive, id, () -> {
+                Traversal traversal = new Traversal(size());
+                collectDependencies(id, traversal);
+                return traversal.ids();
+            });
+        }
+
+        private void collectDependencies(int id, Traversal traversal) {
+            for (int dependency : dependencies[id]) {
+                if (traversal.enter(dependency)) {
+                    collectDependencies(dependency, traversal);
+                    traversal.add(dependency);
+                }
+            }
+        }
+
+        int[] dependenciesUpToClosestDependent(int id) {
+            return memoized(dependenciesUpToClosestDependent, id, () -> collectUpToDependent(id, false));
+        }
+
+        int[] dependenciesToClosestDependent(int id) {
+            return memoized(dependenciesToClosestDependent, id, () -> collectUpToDependent(id, true));
+        }
+
+        private int[] collectUpToDependent(int id, boolean includeDependent) {
+            Traversal traversal = new Traversal(size());
+            for (int dependency : dependencies[id]) {
+                visitUpToDependent(dependency, id, includeDependent, traversal);
+            }
+            return traversal.ids();
+        }
+
+        /**
+         * Stops at records used as array elements by their owner, enums are collected. A record is
+         * expanded once, its dependencies do not depend on the record it is reached from.
+         */
+        private void visitUpToDependent(int id, int owner, boolean includeDependent, Traversal traversal) {
+            if (traversal.contains(id)) {
+                return;
+            }
+            if (contains(arrayRecords[owner], id)) {
+                if (includeDependent) {
+                    traversal.add(id);
+                }
+                return;
+            }
+            if (!records.get(id)) {
+                traversal.add(id);
+                return;
+            }
+            if (!traversal.enter(id)) {
+                return;
+            }
+            for (int dependency : dependencies[id]) {
+                if (records.get(dependency)) {
+                    visitUpToDependent(dependency, id, includeDependent, traversal);
+                } else {
+                    traversal.add(dependency);
+                }
+            }
+        }
+
+        int[] closestOwners(int id) {
+            return memoized(closestOwners, id, () -> {
+                Traversal traversal = new Traversal(size());
+                collectOwners(id, traversal);
+                return traversal.ids();
+            });
+        }
+
+        private void collectOwners(int id, Traversal traversal) {
+            for (int parent : parents[id]) {
+                if (dependents.get(parent) || roots.get(parent)) {
+                    traversal.add(parent);
+                } else if (traversal.enter(parent)) {
+                    collectOwners(parent, traversal);
+                }
+            }
+        }
+
+        private static int[] memoized(
+                AtomicReferenceArray<int[]> memo, int id, Supplier<int[]> traversal) {
+            if (memo.get(id) == null) {
+                memo.compareAndSet(id, null, traversal.get());
+            }
+            return memo.get(id);
+        }
+
+        private static boolean contains(int[] ids, int id) {
+            for (int candidate : ids) {
+                if (candidate == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Visited and collected ids of a single traversal, collected ids keep their first position */
+    private static final class Traversal {
+        private final BitSet entered;
+        private final BitSet collected;
+        private final int[] ids;
+        private int size;
+
+        private Traversal(int capacity) {
+            this.entered = new BitSet(capacity);
+            this.collected = new BitSet(capacity);
+            this.ids = new int[capacity];
+        }
+
+        /** Marks an id as expanded, returns false if it already was */
+        boolean enter(int id) {
+            if (entered.get(id)) {
+                return false;
+            }
+            entered.set(id);
+            return true;
+        }
+
+        boolean contains(int id) {
+            return collected.get(id);
+        }
+
+        void add(int id) {
+            if (!collected.get(id)) {
+                collected.set(id);
+                ids[size++] = id;
+            }
+        }
+
+        int[] ids() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -9,8 +9,8 @@ import java.util.List;
 public class EnumEntity extends Entity {
     private final List<String> symbols;
 
-    public EnumEntity(String namespace, String name, String fullName, @Nonnull Schema schema, @Nonnull List<String> symbols) {
-        super(namespace, name, fullName, schema);
+    public EnumEntity(int id, String namespace, String name, String fullName, @Nonnull Schema schema, @Nonnull List<String> symbols) {
+        super(id, namespace, name, fullName, schema);
         this.symbols = Collections.unmodifiableList(symbols);
     }
 
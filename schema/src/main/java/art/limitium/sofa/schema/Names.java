@@ -0,0 +1,199 @@
+package art.limitium.sofa.schema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Case conversions of field and entity names.
+ *
+ * <p>Conversions are single pass over the characters of a name and return the name itself when
+ * nothing changes. Names come from a limited schema vocabulary and templates convert the same names
+ * many times, so results are kept in bounded caches shared by all templates and generators. Once a
+ * cache is full, further names are converted without caching.
+ */
+public final class Names {
+    /** Entries per conversion, far above the number of distinct names of a large schema estate */
+    static final int MAX_CACHED = 1 << 16;
+
+    private static final Map<String, String> snakeCase = new ConcurrentHashMap<>();
+    private static final Map<String, String> camelCase = new ConcurrentHashMap<>();
+    private static final Map<String, String> capitalized = new ConcurrentHashMap<>();
+    private static final Map<String, String> uncapitalized = new ConcurrentHashMap<>();
+
+    private Names() {}
+
+    /**
+     * Converts camelCase to snake_case: every ASCII upper case letter is lower cased and, unless it
+     * starts the name, prefixed with an underscore
+     *
+     * @param name Name in camelCase
+     * @return Name in snake_case
+     */
+    public static String toSnakeCase(String name) {
+        return cached(snakeCase, name, Names::convertToSnakeCase);
+    }
+
+    /**
+     * Converts snake_case to camelCase: an underscore followed by a character is replaced by the
+     * character in upper case, the first character is lower cased
+     *
+     * @param name Name in snake_case
+     * @return Name in camelCase
+     */
+    public static String toCamelCase(String name) {
+        return cached(camelCase, name, Names::convertToCamelCase);
+    }
+
+    /**
+     * Converts the first non-whitespace character to title case, leading whitespace is kept
+     *
+     * @param name Name to capitalize
+     * @return Capitalized name
+     */
+    public static String capitalize(String name) {
+        return cached(capitalized, name, Names::convertToCapitalized);
+    }
+
+    /**
+     * Converts the first character to lower case
+     *
+     * @param name Name to uncapitalize
+     * @return Uncapitalized name
+     */
+    public static String uncapitalize(String name) {
+        return cached(uncapitalized, name, Names::convertToUncapitalized);
+    }
+
+    private static String cached(
+            Map<String, String> cache, String name, UnaryOperator<String> conversion) {
+        String converted = cache.get(name);
+        if (converted == null) {
+            converted = conversion.apply(name);
+            if (cache.size() < MAX_CACHED) {
+                cache.putIfAbsent(name, converted);
+            }
+        }
+        return converted;
+    }
+
+    static String convertToSnakeCase(String name) {
+        int length = name.length();
+        int upper = 0;
+        for (int i = 0; i < length; i++) {
+            if (isAsciiUpper(name.charAt(i))) {
+                upper++;
+            }
+        }
+        if (upper == 0) {
+            return name;
+        }
+        boolean leadingUpper = isAsciiUpper(name.charAt(0));
+        char[] converted = new char[length + upper - (leadingUpper ? 1 : 0)];
+        int j = 0;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (isAsciiUpper(c)) {
+                if (i > 0) {
+                    converted[j++] = '_';
+                }
+                converted[j++] = (char) (c + ('a' - 'A'));
+            } else {
+                converted[j++] = c;
+            }
+        }
+        return new String(converted);
+    }
+
+    static String convertToCamelCase(String name) {
+        int length = name.length();
+        if (length == 0) {
+            return name;
+        }
+        if (name.indexOf('_') < 0 && !needsLowerCase(name.charAt(0))) {
+            return name;
+        }
+        StringBuilder converted = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = name.charAt(i);
+            if (c == '_' && i + 1 < length && !isLineTerminator(name.charAt(i + 1))) {
+                int next = name.codePointAt(i + 1);
+                appendUpperCase(converted, next);
+                i += 1 + Character.charCount(next);
+            } else {
+                converted.append(c);
+                i++;
+            }
+        }
+        char first = converted.charAt(0);
+        if (needsLowerCase(first)) {
+            if (first >= 'A' && first <= 'Z' && first != 'I') {
+                converted.setCharAt(0, (char) (first + ('a' - 'A')));
+            } else {
+                String lower = String.valueOf(first).toLowerCase();
+                converted.replace(0, 1, lower);
+            }
+        }
+        return converted.toString();
+    }
+
+    static String convertToCapitalized(String name) {
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                char title = Character.toTitleCase(c);
+                if (title == c) {
+                    return name;
+                }
+                char[] converted = name.toCharArray();
+                converted[i] = title;
+                return new String(converted);
+            }
+        }
+        return name;
+    }
+
+    static String convertToUncapitalized(String name) {
+        if (name.isEmpty()) {
+            return name;
+        }
+        char first = name.charAt(0);
+        char lower = Character.toLowerCase(first);
+        if (lower == first) {
+            return name;
+        }
+        char[] converted = name.toCharArray();
+        converted[0] = lower;
+        return new String(converted);
+    }
+
+    private static boolean isAsciiUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    /** Checks whether {@link String#toLowerCase()} would change a single character */
+    private static boolean needsLowerCase(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z';
+        }
+        return !String.valueOf(c).toLowerCase().equals(String.valueOf(c));
+    }
+
+    /** Upper cases a code point the way {@link String#toUpperCase()} does, ASCII without allocation */
+    private static void appendUpperCase(StringBuilder converted, int codePoint) {
+        if (codePoint >= 'a' && codePoint <= 'z' && codePoint != 'i') {
+            converted.append((char) (codePoint - ('a' - 'A')));
+        } else if (codePoint < 0x80 && codePoint != 'i') {
+            converted.append((char) codePoint);
+        } else {
+            converted.append(new String(Character.toChars(codePoint)).toUpperCase());
+        }
+    }
+
+    /** An underscore followed by a line terminator is kept, as {@code _(.)} does not match it */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -4,6 +4,7 @@ import org.apache.avro.Schema;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a record entity in the schema that can have fields, dependencies and relationships.
@@ -14,31 +15,69 @@ public class RecordEntity extends Entity implements Owner<Entity>, Dependency<Re
     @Nonnull
     private final List<Field> fields;
 
-    /** List of entities that this record depends on */
-    private final List<Entity> dependencies = new ArrayList<>();
+    /** Graph of entities resolving relations of this record */
+    private final EntityGraph graph;
 
-    /** Set of parent records in the dependency hierarchy, used for traversing up to root */
-    private final Set<RecordEntity> parents = new HashSet<>();
+    /** Entities that this record depends on, resolved on first access */
+    private List<Entity> dependencies;
 
-    /** List of records that own this record in one-to-many relationships */
-    private final List<RecordEntity> owners = new ArrayList<>();
+    /** Parent records in the dependency hierarchy, used for traversing up to root, keeps insertion order, resolved on first access */
+    private Set<RecordEntity> parents;
+
+    /** Records that own this record in one-to-many relationships, resolved on first access */
+    private List<RecordEntity> owners;
 
     /** Flag indicating if this is a root record with no parent dependencies */
     private final boolean isRoot;
 
+    /** Flag indicating if this record owns other records through array fields */
+    private final boolean isOwner;
+
+    /** Flag indicating if this record is owned by other records in one-to-many relationships */
+    private final boolean isDependent;
+
+    /** Flattened fields keyed by flattening and joiner, built on first use */
+    private final Map<String, List<Field>> flattened = new ConcurrentHashMap<>();
+
     /**
      * Creates a new RecordEntity
+     * @param id The dense id of the record within a configuration
+     * @param namespace The namespace of the record
+     * @param name The name of the record
+     * @param fullName The fully qualified name
+     * @param schema The Avro schema
+     * @param fields The list of fields
+     * @param isRoot Whether this is a root record
+     * @param graph The graph of entities resolving relations of this record
+     */
+    public RecordEntity(int id, String namespace, String name, String fullName, @Nonnull Schema schema, @Nonnull List<Field> fields, boolean isRoot, @Nonnull EntityGraph graph) {
+        this(id, namespace, name, fullName, schema, fields, isRoot, ownsRecords(fields), graph.isDependent(id), graph);
+    }
+
+    /**
+     * Creates a new RecordEntity with roles resolved by the model
+     * @param id The dense id of the record within a configuration
      * @param namespace The namespace of the record
      * @param name The name of the record
      * @param fullName The fully qualified name
      * @param schema The Avro schema
      * @param fields The list of fields
      * @param isRoot Whether this is a root record
+     * @param isOwner Whether this record owns other records through array fields
+     * @param isDependent Whether this record is owned by other records
+     * @param graph The graph of entities resolving relations of this record
      */
-    public RecordEntity(String namespace, String name, String fullName, @Nonnull Schema schema, @Nonnull List<Field> fields, boolean isRoot) {
-        super(namespace, name, fullName, schema);
+    public RecordEntity(int id, String namespace, String name, String fullName, @Nonnull Schema schema, @Nonnull List<Field> fields, boolean isRoot, boolean isOwner, boolean isDependent, @Nonnull EntityGraph graph) {
+        super(id, namespace, name, fullName, schema);
         this.fields = Collections.unmodifiableList(fields);
         this.isRoot = isRoot;
+        this.isOwner = isOwner;
+        this.isDependent = isDependent;
+        this.graph = graph;
+    }
+
+    private static boolean ownsRecords(List<Field> fields) {
+        return fields.stream().anyMatch(f -> f.type instanceof Type.ArrayType art && art.getElementType() instanceof Type.RecordType);
     }
 
     /**
@@ -57,21 +96,35 @@ public class RecordEntity extends Entity implements Owner<Entity>, Dependency<Re
         return isRoot;
     }
 
+    /**
+     * Checks if this record is used by other records
+     * @return true if not a root record, false otherwise
+     */
+    public boolean isChild() {
+        return !isRoot;
+    }
+
     /**
      * Gets entities that this record depends
-     * @return List of dependent entities
+     * @return Immutable list of dependent entities
      */
     @Override
     public List<Entity> getDependencies() {
+        if (dependencies == null) {
+            dependencies = graph.dependenciesOf(id);
+        }
         return dependencies;
     }
 
     /**
      * Gets records that own this record in one-to-many relationships
-     * @return List of owner records
+     * @return Immutable list of owner records
      */
     @Override
     public List<RecordEntity> getOwners() {
+        if (owners == null) {
+            owners = graph.ownersOf(id);
+        }
         return owners;
     }
 
@@ -82,7 +135,7 @@ public class RecordEntity extends Entity implements Owner<Entity>, Dependency<Re
      * @return true if this record owns other records through array fields, false otherwise
      */
     public boolean isOwner(){
-        return fields.stream().anyMatch(f->f.type instanceof Type.ArrayType art && art.getElementType() instanceof Type.RecordType);
+        return isOwner;
     }
 
     /**
@@ -90,24 +143,51 @@ public class RecordEntity extends Entity implements Owner<Entity>, Dependency<Re
      * @return true if has owners, false otherwise
      */
     public boolean isDependent() {
-        return !owners.isEmpty();
+        return isDependent;
     }
 
     /**
      * Gets parent records in dependency hierarchy traversing up to root
-     * @return Set of parent records
+     * @return Immutable set of parent records
      */
     public Set<RecordEntity> getParents() {
+        if (parents == null) {
+            parents = graph.parentsOf(id);
+        }
         return parents;
     }
 
     /**
-     * Record representing a field with a name and type
+     * Gets the graph of entities this record belongs to
+     * @return Entity graph
+     */
+    public EntityGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Record representing a field with a name and type, name variants are converted once when the
+     * field is created
+     * @param name Field name
+     * @param type Field type
+     * @param camelCaseName Field name in camelCase
+     * @param snakeCaseName Field name in snake_case
      */
     public record Field(
             String name,
-            Type type
+            Type type,
+            String camelCaseName,
+            String snakeCaseName
     ) {
+        /**
+         * Creates a field converting its name
+         * @param name Field name
+         * @param type Field type
+         */
+        public Field(String name, Type type) {
+            this(name, type, Names.toCamelCase(name), Names.toSnakeCase(name));
+        }
+
         /**
          * Checks if this field is marked as primary key
          * @return true if primary key, false otherwise
@@ -117,6 +197,56 @@ public class RecordEntity extends Entity implements Owner<Entity>, Dependency<Re
         }
     }
 
+    /**
+     * Ways to flatten nested records into a single level of fields with joined names
+     */
+    public enum Flattening {
+        /** Leaf fields of nested records */
+        FIELDS,
+        /** Leaf fields surrounded by the nested record field and its {@link Type.RecordCloseType} marker */
+        FIELDS_WITH_RECORDS,
+        /** Nested record fields only */
+        RECORDS
+    }
+
+    /**
+     * Flattens nested record fields into a single level with joined field names. The result is built
+     * once per flattening and joiner, nested records reuse their own flattened fields, and shared by
+     * all templates of a generator.
+     * @param flattening The way to flatten nested records
+     * @param joiner String to join field name parts
+     * @return Immutable list of flattened fields
+     */
+    public List<Field> getFlattenedFields(Flattening flattening, String joiner) {
+        String key = flattening.name() + ':' + joiner;
+        List<Field> fields = flattened.get(key);
+        if (fields == null) {
+            fields = flattened.computeIfAbsent(key, k -> flatten(flattening, joiner));
+        }
+        return fields;
+    }
+
+    private List<Field> flatten(Flattening flattening, String joiner) {
+        List<Field> flattenFields = new ArrayList<>();
+        for (Field field : fields) {
+            if (field.type instanceof Type.RecordType recordType) {
+                String prefix = field.name + joiner;
+                if (flattening != Flattening.FIELDS) {
+                    flattenFields.add(field);
+                }
+                for (Field nested : recordType.getRecord().getFlattenedFields(flattening, joiner)) {
+                    flattenFields.add(new Field(prefix + nested.name, nested.type));
+                }
+                if (flattening == Flattening.FIELDS_WITH_RECORDS) {
+                    flattenFields.add(new Field(field.name, new Type.RecordCloseType(recordType)));
+                }
+            } else if (flattening != Flattening.RECORDS) {
+                flattenFields.add(field);
+            }
+        }
+        return List.copyOf(flattenFields);
+    }
+
     /**
      * Gets the primary key field for this record
      * @return The primary key field
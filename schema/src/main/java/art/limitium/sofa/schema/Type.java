@@ -1,5 +1,6 @@
 package art.limitium.sofa.schema;
 
+import art.limitium.sofa.plugin.SofaType;
 import org.apache.avro.LogicalType;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
@@ -7,7 +8,7 @@ import org.apache.avro.Schema;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 /**
  * Abstract base class representing Avro schema types with logical type support.
@@ -63,10 +64,50 @@ public abstract class Type {
         });
     }
 
+    /** Kinds of types by class, a subclass without its own kind takes the kind of its parent */
+    private static final Map<Class<?>, SofaType.Kind> KINDS = Map.ofEntries(
+            Map.entry(StringType.class, SofaType.Kind.STRING),
+            Map.entry(UUIDType.class, SofaType.Kind.UUID),
+            Map.entry(DatetimeType.class, SofaType.Kind.DATETIME_STR),
+            Map.entry(BytesType.class, SofaType.Kind.BYTES),
+            Map.entry(DecimalType.class, SofaType.Kind.DECIMAL),
+            Map.entry(IntType.class, SofaType.Kind.INT),
+            Map.entry(DateType.class, SofaType.Kind.DATE),
+            Map.entry(TimeMillisType.class, SofaType.Kind.TIME_MILLIS),
+            Map.entry(LongType.class, SofaType.Kind.LONG),
+            Map.entry(TimeMicrosType.class, SofaType.Kind.TIME_MICROS),
+            Map.entry(TimestampMillisType.class, SofaType.Kind.TIMESTAMP_MILLIS),
+            Map.entry(TimestampMicrosType.class, SofaType.Kind.TIMESTAMP_MICROS),
+            Map.entry(LocalTimestampMillisType.class, SofaType.Kind.LOCAL_TIMESTAMP_MILLIS),
+            Map.entry(LocalTimestampMicrosType.class, SofaType.Kind.LOCAL_TIMESTAMP_MICROS),
+            Map.entry(FloatType.class, SofaType.Kind.FLOAT),
+            Map.entry(DoubleType.class, SofaType.Kind.DOUBLE),
+            Map.entry(BooleanType.class, SofaType.Kind.BOOLEAN),
+            Map.entry(NullType.class, SofaType.Kind.NULL),
+            Map.entry(RecordType.class, SofaType.Kind.RECORD),
+            Map.entry(RecordCloseType.class, SofaType.Kind.RECORD_CLOSE),
+            Map.entry(EnumType.class, SofaType.Kind.ENUM),
+            Map.entry(ArrayType.class, SofaType.Kind.ARRAY),
+            Map.entry(MapType.class, SofaType.Kind.MAP),
+            Map.entry(UnionType.class, SofaType.Kind.UNION),
+            Map.entry(FixedType.class, SofaType.Kind.FIXED));
+
     protected final Map<String, Object> properties;
+    private final SofaType.Kind kind;
 
     public Type(Map<String, Object> properties) {
-        this.properties = properties;
+        this.properties = Map.copyOf(properties);
+        this.kind = kindOf(getClass());
+    }
+
+    private static SofaType.Kind kindOf(Class<?> type) {
+        for (Class<?> current = type; current != Type.class; current = current.getSuperclass()) {
+            SofaType.Kind kind = KINDS.get(current);
+            if (kind != null) {
+                return kind;
+            }
+        }
+        return SofaType.Kind.STRING;
     }
 
     /**
@@ -81,23 +122,41 @@ public abstract class Type {
         return properties.get(prop);
     }
 
+    /**
+     * Gets immutable type properties
+     */
     public Map<String, Object> getProperties() {
-        return Map.copyOf(properties);
+        return properties;
     }
 
     /**
-     * Creates a Type instance from an Avro schema
+     * Gets the kind of this type, computed once on creation
+     */
+    public SofaType.Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Creates a Type instance from an Avro schema, use {@link Types} to share instances
      */
     public static Type fromSchema(Schema schema, Map<String, Entity> mapByAvroName) {
+        return new Types(mapByAvroName).of(schema);
+    }
+
+    /**
+     * Creates a Type instance from an Avro schema
+     * @param nested Creates types of array elements and union members
+     */
+    static Type create(Schema schema, Map<String, Entity> mapByAvroName, Function<Schema, Type> nested) {
         LogicalType logicalType = schema.getLogicalType();
         Map<String, Object> props = schema.getObjectProps();
 
         return switch (schema.getType()) {
             case RECORD -> new RecordType(props, (RecordEntity) mapByAvroName.get(schema.getFullName()));
             case ENUM -> new EnumType(props, (EnumEntity) mapByAvroName.get(schema.getFullName()));
-            case ARRAY -> new ArrayType(props, Type.fromSchema(schema.getElementType(), mapByAvroName));
+            case ARRAY -> new ArrayType(props, nested.apply(schema.getElementType()));
             case MAP -> new MapType(props);
-            case UNION -> new UnionType(props, schema.getTypes().stream().map(schema1 -> fromSchema(schema1, mapByAvroName)).collect(Collectors.toList()));
+            case UNION -> new UnionType(props, schema.getTypes().stream().map(nested).toList());
             case FIXED -> new FixedType(props, schema.getFixedSize());
             case STRING -> getStringType(logicalType, props);
             case BYTES -> getBytesType(logicalType, props);
@@ -4,4 +4,12 @@ public interface TypeConverter {
     String getName();
 
     Object getType(Type type);
+
+    /**
+     * Whether a result depends on the type only, so it is converted once per type instance and
+     * reused by later template calls. Converters depending on other state return false.
+     */
+    default boolean isCacheable() {
+        return true;
+    }
 }
@@ -0,0 +1,91 @@
+package art.limitium.sofa.schema;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.Schema;
+
+/**
+ * Interned {@link Type} instances.
+ *
+ * <p>Types are immutable, so fields of the same Avro schema share one instance. Types which don't
+ * refer to records or enums are shared by all generators, keyed by schema, which covers the
+ * logical type and properties; the shared cache is bounded and once full further types are created
+ * without caching. Types referring to entities are shared by fields of one set of entities, a type
+ * referring to an entity not created yet is not cached.
+ */
+public final class Types {
+    /** Shared entries, far above the number of distinct primitive schemas of a large schema estate */
+    static final int MAX_CACHED = 1 << 12;
+
+    private static final Map<Schema, Type> unnamed = new ConcurrentHashMap<>();
+
+    private final Map<String, Entity> mapByAvroName;
+    private final Map<Schema, Type> named = new HashMap<>();
+
+    /**
+     * @param mapByAvroName Entities by Avro full name, may be filled after creation
+     */
+    public Types(Map<String, Entity> mapByAvroName) {
+        this.mapByAvroName = mapByAvroName;
+    }
+
+    /**
+     * Gets the type of a schema
+     *
+     * @param schema Avro schema of a field
+     * @return Shared type
+     */
+    public Type of(Schema schema) {
+        if (!referencesNamedType(schema)) {
+            Type type = unnamed.get(schema);
+            if (type == null) {
+                type = Type.create(schema, mapByAvroName, this::of);
+                if (unnamed.size() < MAX_CACHED) {
+                    Type cached = unnamed.putIfAbsent(schema, type);
+                    return cached != null ? cached : type;
+                }
+            }
+            return type;
+        }
+        Type type = named.get(schema);
+        if (type == null) {
+            type = Type.create(schema, mapByAvroName, this::of);
+            if (isResolved(type)) {
+                named.put(schema, type);
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Checks the parts of a schema which resolve to entities
+     *
+     * @param schema Avro schema
+     * @return Whether the type of the schema refers to records or enums
+     */
+    public static boolean referencesNamedType(Schema schema) {
+        return switch (schema.getType()) {
+            case RECORD, ENUM -> true;
+            case ARRAY -> referencesNamedType(schema.getElementType());
+            case UNION -> schema.getTypes().stream().anyMatch(Types::referencesNamedType);
+            default -> false;
+        };
+    }
+
+    private static boolean isResolved(Type type) {
+        if (type instanceof Type.RecordType recordType) {
+            return recordType.getRecord() != null;
+        }
+        if (type instanceof Type.EnumType enumType) {
+            return enumType.getEnum() != null;
+        }
+        if (type instanceof Type.ArrayType arrayType) {
+            return isResolved(arrayType.getElementType());
+        }
+        if (type instanceof Type.UnionType unionType) {
+            return unionType.getTypes().stream().allMatch(Types::isResolved);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import art.limitium.sofa.schema.Type;
+import art.limitium.sofa.schema.TypeConverter;
+import com.mitchellbosecke.pebble.extension.Filter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class CustomExtensionTest {
+
+    @Test
+    void shouldConvertTypeInstanceOnceForCacheableConverters() {
+        // Given
+        CountingConverter converter = new CountingConverter(true);
+        Filter filter = new CustomExtension(List.of(converter), new GeneratedSchemas(), Map.of()).getFilters().get("counting");
+        Type first = new Type.IntType(Map.of());
+        Type second = new Type.IntType(Map.of());
+
+        // When
+        filter.apply(first, null, null, null, 0);
+        filter.apply(first, null, null, null, 0);
+        Object converted = filter.apply(second, null, null, null, 0);
+
+        // Then
+        assertEquals("int#2", converted);
+        assertEquals(2, converter.calls.get());
+    }
+
+    @Test
+    void shouldConvertEveryTimeForConvertersOptingOut() {
+        CountingConverter converter = new CountingConverter(false);
+        Filter filter = new CustomExtension(List.of(converter), new GeneratedSchemas(), Map.of()).getFilters().get("counting");
+        Type type = new Type.IntType(Map.of());
+
+        filter.apply(type, null, null, null, 0);
+        Object converted = filter.apply(type, null, null, null, 0);
+
+        assertEquals("int#2", converted);
+        assertEquals(2, converter.calls.get());
+    }
+
+    private static final class CountingConverter implements TypeConverter {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final boolean cacheable;
+
+        private CountingConverter(boolean cacheable) {
+            this.cacheable = cacheable;
+        }
+
+        @Override
+        public String getName() {
+            return "counting";
+        }
+
+        @Override
+        public Object getType(Type type) {
+            return type.getName() + "#" + calls.incrementAndGet();
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return cacheable;
+        }
+    }
+}
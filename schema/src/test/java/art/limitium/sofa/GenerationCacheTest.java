@@ -0,0 +1,64 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GenerationCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldKeepObjectsOfStoresInProgress() {
+        // Given a cache too small for any entry and an object no entry refers to yet
+        GenerationCache cache = new GenerationCache(tempDir, 1, tempDir.toString());
+        byte[] pending = "pending".getBytes(StandardCharsets.UTF_8);
+        cache.storeObject(Hashes.sha256(pending), pending);
+
+        // When another entry is stored and evicts
+        byte[] stored = "stored".getBytes(StandardCharsets.UTF_8);
+        cache.storeObject(Hashes.sha256(stored), stored);
+        cache.store("first", Map.of(tempDir.resolve("a").toString(), Hashes.sha256(stored)), List.of());
+
+        // Then objects within the grace period survive
+        assertTrue(Files.exists(tempDir.resolve("objects").resolve(Hashes.sha256(pending))));
+        assertTrue(Files.exists(tempDir.resolve("objects").resolve(Hashes.sha256(stored))));
+        assertFalse(Files.exists(tempDir.resolve("entries").resolve("first.json")));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesWithTheirObjects() {
+        // Given a cache without grace period that fits one entry
+        GenerationCache cache = new GenerationCache(tempDir, 1024, tempDir.toString(), Duration.ZERO);
+        byte[] shared = "shared".getBytes(StandardCharsets.UTF_8);
+        byte[] old = "x".repeat(600).getBytes(StandardCharsets.UTF_8);
+        byte[] recent = "y".repeat(600).getBytes(StandardCharsets.UTF_8);
+        cache.storeObject(Hashes.sha256(shared), shared);
+        cache.storeObject(Hashes.sha256(old), old);
+        cache.store("old", Map.of(
+                tempDir.resolve("shared").toString(), Hashes.sha256(shared),
+                tempDir.resolve("old").toString(), Hashes.sha256(old)), List.of());
+        assertTrue(tempDir.resolve("entries").resolve("old.json").toFile()
+                .setLastModified(System.currentTimeMillis() - 60_000));
+
+        // When a newer entry pushes the cache over its limit
+        cache.storeObject(Hashes.sha256(shared), shared);
+        cache.storeObject(Hashes.sha256(recent), recent);
+        cache.store("recent", Map.of(
+                tempDir.resolve("shared").toString(), Hashes.sha256(shared),
+                tempDir.resolve("recent").toString(), Hashes.sha256(recent)), List.of());
+
+        // Then the old entry and the object only it referred to are gone
+        assertFalse(cache.load("old").isPresent());
+        assertFalse(Files.exists(tempDir.resolve("objects").resolve(Hashes.sha256(old))));
+        assertTrue(cache.load("recent").isPresent());
+    }
+}
@@ -0,0 +1,59 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GeneratorOutputTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteBatchedFilesOnFlush() throws IOException {
+        // Given
+        Path manifest = tempDir.resolve("state/manifest.json");
+        String first = tempDir.resolve("out/a/First.java").toString();
+        String second = tempDir.resolve("out/b/Second.java").toString();
+        GeneratorOutput output = new GeneratorOutput("gen", manifest, null, true);
+
+        // When
+        try (RenderBuffer buffer = RenderBuffer.acquire()) {
+            buffer.write("class First { String s = \"ü\"; }");
+            output.write(first, buffer.encode());
+        }
+        output.write(second, "class Second {}");
+        boolean writtenBeforeFlush = Files.exists(Path.of(first));
+        output.commit();
+
+        // Then
+        assertFalse(writtenBeforeFlush);
+        assertEquals("class First { String s = \"ü\"; }", Files.readString(Path.of(first), StandardCharsets.UTF_8));
+        assertEquals("class Second {}", Files.readString(Path.of(second)));
+        assertEquals(2, output.filesWritten());
+        assertEquals(Files.size(Path.of(first)) + Files.size(Path.of(second)), output.bytesWritten());
+        assertEquals(List.of(first, second), output.changedOf(List.of(first, second)));
+    }
+
+    @Test
+    void shouldSkipUnchangedFiles() throws IOException {
+        Path manifest = tempDir.resolve("state/manifest.json");
+        String file = tempDir.resolve("out/File.java").toString();
+        GeneratorOutput previous = new GeneratorOutput("gen", manifest, null);
+        previous.write(file, "class File {}");
+        previous.commit();
+
+        GeneratorOutput output = new GeneratorOutput("gen", manifest, null);
+        output.write(file, "class File {}");
+        output.commit();
+
+        assertEquals(0, output.filesWritten());
+        assertEquals(List.of(), output.changedOf(List.of(file)));
+    }
+}
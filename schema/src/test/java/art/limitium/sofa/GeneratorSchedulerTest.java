@@ -0,0 +1,62 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+
+class GeneratorSchedulerTest {
+
+    @Test
+    void shouldDetectFromReferences() {
+        Set<String> references =
+                GeneratorScheduler.detectFromReferences(
+                        List.of(
+                                "{% set pojo = entity | from(\"pojo_messages\") %}",
+                                "{{ (field.type.record | from('flatbuffers_entities')).fullname }}"));
+
+        assertEquals(Set.of("pojo_messages", "flatbuffers_entities"), references);
+    }
+
+    @Test
+    void shouldRunDependenciesFirst() {
+        // Given
+        Generator builder = generator("builder");
+        Generator pojo = generator("pojo");
+        Generator entities = generator("entities");
+        GeneratorScheduler scheduler =
+                new GeneratorScheduler(
+                        List.of(builder, pojo, entities),
+                        Map.of("builder", Set.of("pojo", "entities"), "entities", Set.of("pojo")),
+                        3);
+
+        // When
+        List<String> executed = new CopyOnWriteArrayList<>();
+        scheduler.run(new GeneratedSchemas(), g -> executed.add(g.getName()));
+
+        // Then
+        assertEquals(List.of("pojo", "entities", "builder"), executed);
+    }
+
+    @Test
+    void shouldRejectCyclicDependencies() {
+        GeneratorScheduler scheduler =
+                new GeneratorScheduler(
+                        List.of(generator("a"), generator("b")),
+                        Map.of("a", Set.of("b"), "b", Set.of("a")),
+                        1);
+
+        RuntimeException e = assertThrows(RuntimeException.class, scheduler::topologicalOrder);
+        assertTrue(e.getMessage().startsWith("Cyclic dependency"), e.getMessage());
+    }
+
+    private static Generator generator(String name) {
+        return new Generator(
+                name, Map.of(), null, null, null, null, new GeneratedSchemas(), Map.of(), null, null, 1);
+    }
+}
@@ -3,16 +3,31 @@ package art.limitium.sofa;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.flatbuffers.FlatBufferBuilder;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GeneratorTest {
@@ -48,6 +63,342 @@ class GeneratorTest {
         );
     }
 
+    @Test
+    void shouldGenerateAllTemplateTypesInParallel() throws IOException {
+        // Given
+        String configPath = copyTestResources("test-config-parallel.yaml", "schemas", "templates");
+
+        // When
+        Factory.main(new String[]{configPath});
+
+        // Then
+        verifyGeneratedFiles(
+                "Address.json",
+                "Cart.json",
+                "CartItem.json",
+                "CustomerInfo.json",
+                "Order.json",
+                "OrderItem.json",
+                "OrderStatus.json",
+                "Product.json"
+        );
+    }
+
+    @Test
+    void shouldGenerateMultipleConfigurationsConcurrently() throws IOException {
+        // Given
+        String configPath = copyTestResourcesTo("local", "test-config.yaml", "schemas", "templates");
+        String externalConfigPath = copyTestResourcesTo("external", "test-config-external.yaml", "schemas", "templates");
+
+        // When
+        Factory.main(new String[]{configPath + "," + externalConfigPath, "--parallel"});
+
+        // Then
+        verifyGeneratedFiles(
+                tempDir.resolve("local"),
+                "Address.json",
+                "Cart.json",
+                "CartItem.json",
+                "CustomerInfo.json",
+                "Order.json",
+                "OrderItem.json",
+                "OrderStatus.json",
+                "Product.json"
+        );
+        verifyGeneratedFiles(
+                tempDir.resolve("external"),
+                "ExternalBatch.json",
+                "ExternalRecord.json",
+                "Address.json",
+                "Cart.json",
+                "CartItem.json",
+                "CustomerInfo.json",
+                "Order.json",
+                "OrderItem.json",
+                "OrderStatus.json",
+                "Product.json"
+        );
+    }
+
+    @Test
+    void shouldStreamFilesIntoArchive() throws IOException {
+        // Given
+        String configPath = copyTestResources("test-config-archive.yaml", "schemas", "templates");
+
+        // When
+        Factory.main(new String[]{configPath});
+        Factory.main(new String[]{configPath});
+
+        // Then
+        assertFalse(Files.exists(tempDir.resolve("generated")));
+        try (FileSystem archive = FileSystems.newFileSystem(tempDir.resolve("build/generated.jar"))) {
+            verifyGeneratedFiles(archive.getPath("/"), "Address.json", "Order.json", "OrderStatus.json", "Product.json");
+        }
+        JsonNode manifest = objectMapper.readTree(Files.readString(tempDir.resolve(".sofa/test-config-archive/templates.sofa-manifest.json")));
+        assertTrue(manifest.get("files").has("/generated/Order.json"));
+        assertEquals(0, manifest.get("changed").size());
+    }
+
+    @Test
+    void shouldWriteFilesIntoGivenFileSystem() throws IOException {
+        // Given: any file system works, a zip one stands in for an in-memory one
+        String configPath = copyTestResources("test-config-memory.yaml", "schemas", "templates");
+        try (FileSystem fileSystem = FileSystems.newFileSystem(tempDir.resolve("memory.zip"), Map.of("create", "true"))) {
+
+            // When
+            Factory.generate(configPath, Map.of("generated", fileSystem));
+
+            // Then
+            verifyGeneratedFiles(fileSystem.getPath("/"), "Address.json", "Cart.json", "OrderItem.json", "OrderStatus.json");
+        }
+        assertFalse(Files.exists(tempDir.resolve("generated")));
+    }
+
+    @Test
+    void shouldCompileGeneratedSourcesInProcess() throws IOException {
+        // Given
+        String configPath = copyTestResources("test-config-compile.yaml", "schemas", "java-templates");
+
+        // When
+        Factory.main(new String[]{configPath});
+
+        // Then
+        try (JarFile classes = new JarFile(tempDir.resolve("build/classes.jar").toFile())) {
+            assertTrue(classes.getEntry("com/example/order/Order.class") != null);
+            assertTrue(classes.getEntry("com/example/order/OrderStatus.class") != null);
+            assertEquals(8, classes.stream().filter(entry -> entry.getName().endsWith(".class")).count());
+        }
+    }
+
+    @Test
+    void shouldReportCompileErrorsWithEntityAndTemplate() throws IOException {
+        // Given
+        String configPath = copyTestResources("test-config-compile.yaml", "schemas", "java-templates");
+        Files.writeString(tempDir.resolve("java-templates/enum.peb"), "package {{ namespace }};\n\npublic enum {{ name }} {\n");
+
+        // When
+        RuntimeException error = assertThrows(RuntimeException.class, () -> Factory.main(new String[]{configPath}));
+
+        // Then
+        assertTrue(error.getMessage().contains("entity `com.example.order.OrderStatus` template `enum`"), error.getMessage());
+        assertFalse(Files.exists(tempDir.resolve("build/classes.jar")));
+    }
+
+    @Test
+    void shouldGenerateFlatBuffersAccessorsWithoutFlatc() throws Exception {
+        // Given
+        String configPath = copyTestResources("test-config-flatbuffers.yaml", "schemas");
+
+        // When
+        Factory.main(new String[]{configPath});
+
+        // Then a buffer built with the generated builders reads back through the generated accessors
+        try (URLClassLoader classes = new URLClassLoader(new URL[]{tempDir.resolve("build/fb-classes").toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> order = classes.loadClass("com.example.order.fb.FbOrder");
+            Class<?> orderItem = classes.loadClass("com.example.order.fb.FbOrderItem");
+            Class<?> orderStatus = classes.loadClass("com.example.order.fb.FbOrderStatus");
+            FlatBufferBuilder builder = new FlatBufferBuilder();
+
+            int productId = builder.createString("p-1");
+            invoke(orderItem, "startFbOrderItem", builder);
+            invoke(orderItem, "addProductId", builder, productId);
+            invoke(orderItem, "addQuantity", builder, 3);
+            invoke(orderItem, "addPrice", builder, 9.5);
+            int item = (int) invoke(orderItem, "endFbOrderItem", builder);
+            int items = (int) invoke(order, "createItemsVector", builder, new int[]{item});
+            int orderId = builder.createString("o-1");
+            invoke(order, "startFbOrder", builder);
+            invoke(order, "addOrderId", builder, orderId);
+            invoke(order, "addStatus", builder, orderStatus.getField("SHIPPED").getByte(null));
+            invoke(order, "addItems", builder, items);
+            invoke(order, "finishFbOrderBuffer", builder, (int) invoke(order, "endFbOrder", builder));
+
+            Object root = invoke(order, "getRootAsFbOrder", ByteBuffer.wrap(builder.sizedByteArray()));
+            assertEquals("o-1", order.getMethod("orderId").invoke(root));
+            assertEquals("SHIPPED", invoke(orderStatus, "name", (int) (byte) order.getMethod("status").invoke(root)));
+            assertEquals(1, order.getMethod("itemsLength").invoke(root));
+            Object readItem = order.getMethod("items", int.class).invoke(root, 0);
+            assertEquals("p-1", orderItem.getMethod("productId").invoke(readItem));
+            assertEquals(3, orderItem.getMethod("quantity").invoke(readItem));
+            assertEquals(9.5, orderItem.getMethod("price").invoke(readItem));
+        }
+    }
+
+    @Test
+    void shouldKeepUnchangedFilesOnRegeneration() throws IOException {
+        // Given
+        String configPath = copyTestResources("test-config.yaml", "schemas", "templates");
+        Factory.main(new String[]{configPath});
+        Path generatedFile = tempDir.resolve("generated/Order.json");
+        FileTime generatedAt = Files.getLastModifiedTime(generatedFile);
+        Path manifestPath = tempDir.resolve(".sofa/test-config/templates.sofa-manifest.json");
+
+        // When
+        Factory.main(new String[]{configPath});
+
+        // Then
+        assertEquals(generatedAt, Files.getLastModifiedTime(generatedFile));
+        JsonNode manifest = objectMapper.readTree(Files.readString(manifestPath));
+        assertEquals(8, manifest.get("files").size());
+        assertEquals(0, manifest.get("changed").size());
+        assertEquals(0, manifest.get("stale").size());
+    }
+
+    @Test
+    void shouldPassFilesToPostCallAgainAfterItFailed() throws IOException {
+        // Given a postCall failing while a marker file exists
+        String configPath = copyTestResources("test-config.yaml", "schemas", "templates");
+        Files.writeString(Path.of(configPath), Files.readString(Path.of(configPath)) + "    postCall: \"postcall.sh {{ files | join(' ') }}\"\n");
+        Path script = tempDir.resolve("postcall.sh");
+        Files.writeString(script, "#!/bin/sh\n[ -e \"$(dirname \"$0\")/fail\" ] && exit 1\necho $# >> \"$(dirname \"$0\")/calls\"\n");
+        assertTrue(script.toFile().setExecutable(true));
+        Files.writeString(tempDir.resolve("fail"), "");
+        assertThrows(RuntimeException.class, () -> Factory.main(new String[]{configPath}));
+
+        // When
+        Files.delete(tempDir.resolve("fail"));
+        Factory.main(new String[]{configPath});
+        Factory.main(new String[]{configPath});
+
+        // Then the files are passed once more, the run after finds them unchanged
+        assertEquals(List.of("8"), Files.readAllLines(tempDir.resolve("calls")));
+    }
+
+    @Test
+    void shouldRestoreFilesFromCacheSharedBetweenCheckouts() throws IOException {
+        // Given
+        String configPath = copyTestResourcesTo("first", "test-config-cache.yaml", "schemas", "templates");
+        String otherCheckoutConfigPath = copyTestResourcesTo("second", "test-config-cache.yaml", "schemas", "templates");
+        Factory.main(new String[]{configPath});
+
+        // When
+        Factory.main(new String[]{otherCheckoutConfigPath});
+
+        // Then
+        verifyGeneratedFiles(
+                tempDir.resolve("second"),
+                "Address.json",
+                "Cart.json",
+                "CartItem.json",
+                "CustomerInfo.json",
+                "Order.json",
+                "OrderItem.json",
+                "OrderStatus.json",
+                "Product.json"
+        );
+        try (Stream<Path> entries = Files.list(tempDir.resolve("cache/entries"))) {
+            assertEquals(1, entries.count());
+        }
+    }
+
+    @Test
+    void shouldMissCacheWhenIncludedTemplateChanged() throws IOException {
+        // Given a template including one from a subfolder, which is not a template of its own
+        String configPath = copyTestResourcesTo("first", "test-config-cache.yaml", "schemas", "templates");
+        Path included = tempDir.resolve("first/templates/shared/status.peb");
+        includeFromEnumTemplate(tempDir.resolve("first/templates"), included);
+        Factory.main(new String[]{configPath});
+
+        // When
+        Files.writeString(included, "changed");
+        Factory.main(new String[]{configPath});
+
+        // Then
+        assertTrue(Files.readString(tempDir.resolve("first/generated/OrderStatus.json")).endsWith("changed"));
+    }
+
+    @Test
+    void shouldRenderAllEntitiesWhenIncludedTemplateChangedIncrementally() throws IOException {
+        // Given unchanged schemas and a template including one from a subfolder
+        String configPath = copyTestResources("test-config-incremental.yaml", "schemas", "templates");
+        Path included = tempDir.resolve("templates/shared/status.peb");
+        includeFromEnumTemplate(tempDir.resolve("templates"), included);
+        Factory.main(new String[]{configPath});
+
+        // When
+        Files.writeString(included, "changed");
+        Factory.main(new String[]{configPath});
+
+        // Then
+        assertTrue(Files.readString(tempDir.resolve("generated/OrderStatus.json")).endsWith("changed"));
+    }
+
+    @Test
+    void shouldOrderGeneratorsByFromReferencesInImportedMacros() throws IOException {
+        // Given generator `a` declared first and referring to `b` from a macro template only
+        copyTestResources("test-config.yaml", "schemas");
+        Path configPath = tempDir.resolve("test-config-macros.yaml");
+        Files.writeString(configPath, Files.readString(tempDir.resolve("test-config.yaml"))
+                .replace("  - path: templates\n", "  - path: a\n") + """
+                  - path: b
+                    templates:
+                      folder: "generated/b"
+                      filename: "{{name}}.json"
+                """);
+        Files.createDirectories(tempDir.resolve("a/shared"));
+        Files.createDirectories(tempDir.resolve("b"));
+        Files.writeString(tempDir.resolve("a/enum.peb"), "{% import \"shared/macros\" %}{{ name(entity) }}");
+        Files.writeString(tempDir.resolve("a/shared/macros.peb"), "{% macro name(e) %}{{ (e | from(\"b\")).name }}{% endmacro %}");
+        Files.writeString(tempDir.resolve("b/enum.peb"), "{{ entity.name }}");
+
+        // When
+        Factory.PreparedConfiguration configuration = Factory.prepareConfiguration(
+                configPath.toString(), new GenerationSession(getClass().getClassLoader()));
+
+        // Then
+        assertEquals(List.of("b", "a"), configuration.scheduler().topologicalOrder().stream().map(Generator::getName).toList());
+    }
+
+    @Test
+    void shouldRenderOnlyEntitiesAffectedBySchemaChange() throws IOException {
+        // Given
+        String configPath = copyTestResources("test-config-incremental.yaml", "schemas", "templates");
+        Factory.main(new String[]{configPath});
+        Path affectedOutput = tempDir.resolve("generated/Cart.json");
+        Path unaffectedOutput = tempDir.resolve("generated/Product.json");
+        Files.writeString(affectedOutput, "untouched");
+        Files.writeString(unaffectedOutput, "untouched");
+        Path schema = tempDir.resolve("schemas/owner.avsc");
+        Files.writeString(schema, Files.readString(schema).replace("\"name\": \"Cart\",", "\"name\": \"Cart\", \"doc\": \"changed\","));
+
+        // When
+        Factory.main(new String[]{configPath});
+
+        // Then
+        assertEquals("untouched", Files.readString(unaffectedOutput));
+        verifyGeneratedFiles("Cart.json", "CartItem.json");
+    }
+
+    @Test
+    void shouldRegenerateOnlyOutputsOfChangedTemplateInWatchMode() throws Exception {
+        // Given
+        String configPath = copyTestResources("test-config.yaml", "schemas", "templates");
+        Path enumOutput = tempDir.resolve("generated/OrderStatus.json");
+        Path recordOutput = tempDir.resolve("generated/Order.json");
+        Path enumTemplate = tempDir.resolve("templates/enum.peb");
+        String enumSource = Files.readString(enumTemplate);
+        Semaphore cycles = new Semaphore(0);
+        Thread watcher = new Thread(() -> new ConfigurationWatcher(new GenerationSession(getClass().getClassLoader()), cycles::release)
+                .watch(List.of(configPath)));
+        watcher.start();
+
+        try {
+            assertTrue(cycles.tryAcquire(20, TimeUnit.SECONDS), "Initial generation did not finish");
+            FileTime recordGeneratedAt = Files.getLastModifiedTime(recordOutput);
+
+            // When
+            Files.writeString(enumTemplate, enumSource + "watched");
+            assertTrue(cycles.tryAcquire(20, TimeUnit.SECONDS), "Changed template was not regenerated");
+
+            // Then
+            assertTrue(Files.readString(enumOutput).contains("watched"));
+            assertEquals(recordGeneratedAt, Files.getLastModifiedTime(recordOutput));
+        } finally {
+            watcher.interrupt();
+            watcher.join(5_000);
+        }
+    }
+
     @Test
     void shouldLoadSchemasFromExternalLibraryAndLocal() throws IOException {
         // Given
@@ -71,22 +422,50 @@ class GeneratorTest {
         );
     }
     
+    private static Object invoke(Class<?> type, String method, Object... args) throws ReflectiveOperationException {
+        for (Method candidate : type.getMethods()) {
+            if (candidate.getName().equals(method) && candidate.getParameterCount() == args.length) {
+                return candidate.invoke(null, args);
+            }
+        }
+        throw new NoSuchMethodException(type.getName() + "." + method);
+    }
+
+    private static void includeFromEnumTemplate(Path templates, Path included) throws IOException {
+        Files.createDirectories(included.getParent());
+        Files.writeString(included, "included");
+        Path enumTemplate = templates.resolve("enum.peb");
+        String reference = templates.relativize(included).toString().replace(".peb", "");
+        Files.writeString(enumTemplate, Files.readString(enumTemplate) + "{% include \"" + reference + "\" %}");
+    }
+
     private String copyTestResources(String configFile, String... directories) throws IOException {
+        return copyTestResourcesTo("", configFile, directories);
+    }
+
+    private String copyTestResourcesTo(String targetDir, String configFile, String... directories) throws IOException {
+        Path baseDir = tempDir.resolve(targetDir);
+        Files.createDirectories(baseDir);
+
         // Copy config file
         String configContent = readResource("/generator-test/" + configFile);
-        Path configPath = tempDir.resolve(configFile);
+        Path configPath = baseDir.resolve(configFile);
         Files.writeString(configPath, configContent);
         
         // Copy directories
         for (String dir : directories) {
-            copyDirectory("/generator-test/" + dir, tempDir.resolve(dir));
+            copyDirectory("/generator-test/" + dir, baseDir.resolve(dir));
         }
         
         return configPath.toString();
     }
     
     private void verifyGeneratedFiles(String... fileNames) throws IOException {
-        Path outputDir = tempDir.resolve("generated");
+        verifyGeneratedFiles(tempDir, fileNames);
+    }
+
+    private void verifyGeneratedFiles(Path baseDir, String... fileNames) throws IOException {
+        Path outputDir = baseDir.resolve("generated");
         
         for (String fileName : fileNames) {
             Path generatedFile = outputDir.resolve(fileName);
@@ -0,0 +1,43 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class LayeredContextTest {
+
+    @Test
+    void shouldResolveOverlayBeforeGlobalsWithoutModifyingThem() {
+        // Given
+        Map<String, String> globals = new HashMap<>(Map.of("basePath", "/base", "name", "global"));
+        Map<String, Object> context = new LayeredContext(globals, Map.of("name", "local"));
+
+        // When
+        context.put("basePath", "/changed");
+        context.put("extra", 1);
+
+        // Then
+        assertEquals("local", context.get("name"));
+        assertEquals("/changed", context.get("basePath"));
+        assertTrue(context.containsKey("extra"));
+        assertFalse(context.containsKey("missing"));
+        assertEquals(Map.of("basePath", "/changed", "name", "local", "extra", 1), Map.copyOf(context));
+        assertEquals(Map.of("basePath", "/base", "name", "global"), globals);
+    }
+
+    @Test
+    void shouldRenderTemplatesThroughLayers() {
+        TemplateEngineFactory templateEngines = new GenerationSession(LayeredContextTest.class.getClassLoader()).getTemplateEngines(List.of());
+
+        String rendered = templateEngines.evaluateTemplateToString(
+                templateEngines.compileInlineTemplate("{% set name = name | capitalize %}{{ basePath }}/{{ name }}"),
+                new LayeredContext(Map.of("basePath", "/base"), Map.of("name", "order")));
+
+        assertEquals("/base/Order", rendered);
+    }
+}
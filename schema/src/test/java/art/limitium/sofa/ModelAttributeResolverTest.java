@@ -0,0 +1,72 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import art.limitium.sofa.schema.EntityGraph;
+import art.limitium.sofa.schema.RecordEntity;
+import art.limitium.sofa.schema.Type;
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.loader.StringLoader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.Test;
+
+class ModelAttributeResolverTest {
+    private static final String TEMPLATE = """
+            {{ entity.fullname }}/{{ entity.namespace }}/{{ entity.root }}/{{ entity.owner }}:
+            {% for field in entity.fields %}
+            {{ field.name }} {{ field.snakeCaseName }} {{ field.type.name }} {{ field.primary }}
+            {% if field.type.name == 'array' %}{{ field.type.elementType.record.fullname }} {{ field.type.elementType.properties }}{% endif %}
+            {% endfor %}
+            {{ entity.getFullname() }} {{ entity.fields[0].type.getProperty('primary') }} {{ entity.primaryKey.name }}
+            """;
+
+    @Test
+    void shouldRenderAsReflection() throws IOException {
+        // Given
+        RecordEntity order = order();
+        TemplateEngineFactory templateEngines = new GenerationSession(ModelAttributeResolverTest.class.getClassLoader()).getTemplateEngines(List.of());
+        PebbleEngine reflective = new PebbleEngine.Builder()
+                .loader(new StringLoader())
+                .newLineTrimming(true)
+                .strictVariables(true)
+                .build();
+
+        // When
+        String resolved = templateEngines.evaluateTemplateToString(templateEngines.compileInlineTemplate(TEMPLATE), Map.of("entity", order));
+        StringWriter reflected = new StringWriter();
+        reflective.getTemplate(TEMPLATE).evaluate(reflected, Map.of("entity", order));
+
+        // Then
+        assertEquals(reflected.toString(), resolved);
+    }
+
+    @Test
+    void shouldFallBackForUnknownAttributesAndArguments() {
+        RecordEntity order = order();
+        RecordEntity.Field id = order.getFields().get(0);
+
+        assertSame(id.type(), ModelAttributeResolver.INSTANCE.resolve(id, "type", null, null, null, null, 0).evaluatedValue);
+        assertEquals("string", ModelAttributeResolver.INSTANCE.resolve(id.type(), "name", new Object[0], null, null, null, 0).evaluatedValue);
+        assertNull(ModelAttributeResolver.INSTANCE.resolve(id.type(), "elementType", null, null, null, null, 0));
+        assertNull(ModelAttributeResolver.INSTANCE.resolve(order, "symbols", null, null, null, null, 0));
+        assertNull(ModelAttributeResolver.INSTANCE.resolve(id.type(), "property", new Object[] {"primary"}, null, null, null, 0));
+        assertNull(ModelAttributeResolver.INSTANCE.resolve("order", "name", null, null, null, null, 0));
+    }
+
+    private static RecordEntity order() {
+        Schema schema = Schema.createRecord("Order", null, "com.example", false, List.of());
+        EntityGraph graph = new EntityGraph(SchemaModel.of(List.of()).structure());
+        RecordEntity line = new RecordEntity(0, "com.example", "Line", "com.example.Line", schema,
+                List.of(new RecordEntity.Field("quantity", new Type.IntType(Map.of()))), false, graph);
+        return new RecordEntity(1, "com.example", "Order", "com.example.Order", schema,
+                List.of(new RecordEntity.Field("orderId", new Type.StringType(Map.of("primary", true))),
+                        new RecordEntity.Field("lines", new Type.ArrayType(Map.of(), new Type.RecordType(Map.of("size", 2), line)))),
+                true, graph);
+    }
+}
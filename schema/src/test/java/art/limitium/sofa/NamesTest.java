@@ -0,0 +1,44 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import art.limitium.sofa.schema.Names;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class NamesTest {
+    private static final List<String> NAMES = List.of(
+            "id", "orderId", "OrderId", "order_id", "_order_id", "order__id", "order_id_", "HTTPStatus",
+            "line1Address", "a_b_c", "snake_Case", "éclair_été", "Über_name", "x_\nname", "a", "A", "_");
+
+    @Test
+    void shouldConvertToSnakeCase() {
+        for (String name : NAMES) {
+            String expected = Pattern.compile("(?<!^)([A-Z])|(^[A-Z])")
+                    .matcher(name)
+                    .replaceAll(m -> m.group(2) != null ? m.group(2).toLowerCase() : "_" + m.group(1).toLowerCase());
+            assertEquals(expected, Names.toSnakeCase(name), name);
+        }
+    }
+
+    @Test
+    void shouldConvertToCamelCase() {
+        for (String name : NAMES) {
+            String camelCase = Pattern.compile("_(.)").matcher(name).replaceAll(m -> m.group(1).toUpperCase());
+            String expected = camelCase.substring(0, 1).toLowerCase() + camelCase.substring(1);
+            assertEquals(expected, Names.toCamelCase(name), name);
+        }
+    }
+
+    @Test
+    void shouldCapitalizeFirstNonWhitespaceCharacter() {
+        assertEquals("OrderId", Names.capitalize("orderId"));
+        assertEquals("  Order", Names.capitalize("  order"));
+        assertEquals("orderId", Names.uncapitalize("OrderId"));
+        assertEquals("", Names.uncapitalize(""));
+        String unchanged = "Order";
+        assertSame(unchanged, Names.capitalize(unchanged));
+    }
+}
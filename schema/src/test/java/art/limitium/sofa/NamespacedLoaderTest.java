@@ -0,0 +1,77 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NamespacedLoaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldResolveTemplatesWithinGeneratorNamespaces() throws IOException {
+        // Given
+        write("first/root.peb", "first {% include 'common' %}");
+        write("first/common.peb", "common of first");
+        write("second/root.peb", "second {% include 'common' %} {% include 'first::common' %}");
+        write("second/common.peb", "common of second");
+        NamespacedLoader loader = new NamespacedLoader();
+        loader.register("first", TemplateEngineFactory.createTemplateLoader(tempDir + "/first/", ""));
+        loader.register("second", TemplateEngineFactory.createTemplateLoader(tempDir + "/second/", ""));
+        PebbleEngine engine = new GenerationSession(NamespacedLoaderTest.class.getClassLoader())
+                .getTemplateEngines(List.of())
+                .createPebbleEngine(loader, new GeneratedSchemas());
+
+        // When
+        String first = render(engine.getTemplate(NamespacedLoader.name("first", "root")));
+        String second = render(engine.getTemplate(NamespacedLoader.name("second", "root")));
+
+        // Then
+        assertEquals("first common of first", first);
+        assertEquals("second common of second common of first", second);
+        assertSame(engine.getTemplate("first::common"), engine.getTemplate(NamespacedLoader.name("first", "common")));
+    }
+
+    @Test
+    void shouldApplyCharsetToNamespacesAndKeepTheirFolders() throws IOException {
+        // Given a loader configured before its namespaces are registered
+        Files.createDirectories(tempDir.resolve("first"));
+        Files.write(tempDir.resolve("first/root.peb"), "caf\u00e9".getBytes(StandardCharsets.ISO_8859_1));
+        NamespacedLoader loader = new NamespacedLoader();
+        loader.setCharset(StandardCharsets.ISO_8859_1.name());
+        loader.setPrefix("/nowhere");
+        loader.setSuffix(".txt");
+        loader.register("first", TemplateEngineFactory.createTemplateLoader(tempDir + "/first/", ""));
+        PebbleEngine engine = new GenerationSession(NamespacedLoaderTest.class.getClassLoader())
+                .getTemplateEngines(List.of())
+                .createPebbleEngine(loader, new GeneratedSchemas());
+
+        // When
+        String rendered = render(engine.getTemplate(NamespacedLoader.name("first", "root")));
+
+        // Then
+        assertEquals("caf\u00e9", rendered);
+    }
+
+    private void write(String path, String content) throws IOException {
+        Files.createDirectories(tempDir.resolve(path).getParent());
+        Files.writeString(tempDir.resolve(path), content);
+    }
+
+    private static String render(PebbleTemplate template) throws IOException {
+        StringWriter writer = new StringWriter();
+        template.evaluate(writer, new HashMap<>());
+        return writer.toString();
+    }
+}
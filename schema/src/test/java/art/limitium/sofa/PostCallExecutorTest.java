@@ -0,0 +1,53 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PostCallExecutorTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldSplitCommandWithQuotes() {
+        // When
+        List<String> arguments = PostCallExecutor.parse("curl -H 'Content-Type: text/plain'  \"a \\\"b\\\"\" c\\ d");
+
+        // Then
+        assertEquals(List.of("curl", "-H", "Content-Type: text/plain", "a \"b\"", "c d"), arguments);
+        assertThrows(RuntimeException.class, () -> PostCallExecutor.parse("echo 'open"));
+    }
+
+    @Test
+    void shouldFailOnNonZeroExitCode() {
+        // When
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> PostCallExecutor.runAll("gen", List.of(List.of("sh", "-c", "echo failing >&2; exit 3"))).join());
+
+        // Then
+        assertTrue(exception.getCause().getMessage().contains("exited with code 3"));
+    }
+
+    @Test
+    void shouldRunBatchesWithoutBlockingOnOutput() throws IOException {
+        // Given a command writing more to stderr than a pipe buffers
+        String noisy = "head -c 200000 /dev/zero | tr '\\0' x >&2; touch \"$0\"";
+
+        // When
+        PostCallExecutor.runAll("gen", List.of(
+                List.of("sh", "-c", noisy, tempDir.resolve("first").toString()),
+                List.of("sh", "-c", noisy, tempDir.resolve("second").toString()))).join();
+
+        // Then
+        assertTrue(Files.exists(tempDir.resolve("first")));
+        assertTrue(Files.exists(tempDir.resolve("second")));
+    }
+}
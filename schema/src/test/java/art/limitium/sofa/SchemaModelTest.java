@@ -0,0 +1,175 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import art.limitium.sofa.schema.Entity;
+import art.limitium.sofa.schema.EntityGraph;
+import art.limitium.sofa.schema.EnumEntity;
+import art.limitium.sofa.schema.RecordEntity;
+import art.limitium.sofa.schema.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.Test;
+
+class SchemaModelTest {
+
+    @Test
+    void shouldShareFieldsWithoutNamedTypes() {
+        // Given
+        Schema order = new Schema.Parser().parse("""
+                {"type": "record", "name": "Order", "namespace": "com.example", "fields": [
+                  {"name": "id", "type": "string"},
+                  {"name": "items", "type": {"type": "array", "items": {"type": "record", "name": "Item",
+                    "fields": [{"name": "price", "type": ["null", "double"]}]}}}
+                ]}""");
+        AvroEntity item = new AvroEntity(order.getField("items").schema().getElementType());
+        AvroEntity root = new AvroEntity(order);
+        root.isRoot = true;
+        root.dependencies.put(item.getFullname(), item);
+        item.owners.add(root);
+
+        // When
+        SchemaModel model = SchemaModel.of(List.of(item, root));
+
+        // Then
+        SchemaModel.EntityModel itemModel = model.entities().get(0);
+        SchemaModel.EntityModel rootModel = model.entities().get(1);
+        assertNotNull(itemModel.sharedFields());
+        assertSame(itemModel.fields().get(0).shared(), itemModel.sharedFields().get(0));
+        assertNull(rootModel.sharedFields());
+        assertNotNull(rootModel.fields().get(0).shared());
+        assertNull(rootModel.fields().get(1).shared());
+        assertTrue(rootModel.isOwner());
+        assertTrue(itemModel.isDependent());
+        assertArrayEquals(new int[] {1}, model.structure().parents()[0]);
+        assertArrayEquals(new int[] {0}, model.structure().dependencies()[1]);
+    }
+
+    @Test
+    void shouldTraverseGraphByIds() {
+        // Given: Order owns Lines and uses Tag, Line -> Detail -> Tag
+        Schema order = new Schema.Parser().parse("""
+                {"type": "record", "name": "Order", "namespace": "com.example", "fields": [
+                  {"name": "lines", "type": {"type": "array", "items": {"type": "record", "name": "Line", "fields": [
+                    {"name": "detail", "type": {"type": "record", "name": "Detail", "fields": [
+                      {"name": "tag", "type": {"type": "enum", "name": "Tag", "symbols": ["A"]}}]}}]}}},
+                  {"name": "tag", "type": "Tag"}
+                ]}""");
+        Schema line = order.getField("lines").schema().getElementType();
+        Schema detail = line.getField("detail").schema();
+        AvroEntity tagEntity = new AvroEntity(detail.getField("tag").schema());
+        AvroEntity detailEntity = new AvroEntity(detail);
+        AvroEntity lineEntity = new AvroEntity(line);
+        AvroEntity orderEntity = new AvroEntity(order);
+        orderEntity.isRoot = true;
+        orderEntity.dependencies = new LinkedHashMap<>();
+        detailEntity.dependencies.put(tagEntity.getFullname(), tagEntity);
+        lineEntity.dependencies.put(detailEntity.getFullname(), detailEntity);
+        orderEntity.dependencies.put(lineEntity.getFullname(), lineEntity);
+        orderEntity.dependencies.put(tagEntity.getFullname(), tagEntity);
+        lineEntity.owners.add(orderEntity);
+        SchemaModel model = SchemaModel.of(List.of(tagEntity, detailEntity, lineEntity, orderEntity));
+        EntityGraph graph = new EntityGraph(model.structure());
+        for (SchemaModel.EntityModel entityModel : model.entities()) {
+            Schema schema = entityModel.avro().schema;
+            graph.bind(schema.getType() == Schema.Type.ENUM
+                    ? new EnumEntity(entityModel.id(), "ns", schema.getName(), "ns." + schema.getName(), schema, schema.getEnumSymbols())
+                    : new RecordEntity(entityModel.id(), "ns", schema.getName(), "ns." + schema.getName(), schema, List.of(), entityModel.isRoot(), graph));
+        }
+
+        // When
+        List<Entity> dependencies = graph.dependenciesRecursive(3);
+
+        // Then
+        assertEquals(List.of("Tag", "Detail", "Line"), names(dependencies));
+        assertEquals(List.of("Tag"), names(graph.dependenciesUpToClosestDependent(3)));
+        assertEquals(List.of("Line", "Tag"), names(graph.dependenciesToClosestDependent(3)));
+        assertEquals(List.of("Line"), names(graph.closestOwners(1)));
+        assertSame(dependencies, graph.dependenciesRecursive(3));
+        assertSame(graph.get(3), ((RecordEntity) graph.get(2)).getOwners().get(0));
+    }
+
+    @Test
+    void shouldFlattenNestedRecordsOnce() {
+        // Given
+        Schema address = new Schema.Parser().parse("""
+                {"type": "record", "name": "Address", "namespace": "com.example", "fields": [
+                  {"name": "streetName", "type": "string"}]}""");
+        EntityGraph graph = new EntityGraph(SchemaModel.of(List.of()).structure());
+        RecordEntity addressEntity = new RecordEntity(0, "ns", "Address", "ns.Address", address,
+                List.of(new RecordEntity.Field("streetName", new Type.StringType(Map.of()))), false, graph);
+        Type.RecordType addressType = new Type.RecordType(Map.of(), addressEntity);
+        RecordEntity customer = new RecordEntity(1, "ns", "Customer", "ns.Customer", address,
+                List.of(new RecordEntity.Field("id", new Type.LongType(Map.of())),
+                        new RecordEntity.Field("home", addressType)), true, graph);
+
+        // When
+        List<RecordEntity.Field> fields = customer.getFlattenedFields(RecordEntity.Flattening.FIELDS, "_");
+        List<RecordEntity.Field> withRecords = customer.getFlattenedFields(RecordEntity.Flattening.FIELDS_WITH_RECORDS, "_");
+
+        // Then
+        assertEquals(List.of("id", "home_streetName"), fields.stream().map(RecordEntity.Field::name).toList());
+        assertEquals("home_street_name", fields.get(1).snakeCaseName());
+        assertEquals(List.of("id", "home", "home_streetName", "home"), withRecords.stream().map(RecordEntity.Field::name).toList());
+        assertTrue(withRecords.get(3).type() instanceof Type.RecordCloseType);
+        assertEquals(List.of("home"), customer.getFlattenedFields(RecordEntity.Flattening.RECORDS, "_").stream().map(RecordEntity.Field::name).toList());
+        assertSame(fields, customer.getFlattenedFields(RecordEntity.Flattening.FIELDS, "_"));
+    }
+
+    @Test
+    void shouldResolveRolesOnce() {
+        // Given: Order and Invoice both own Lines, Line uses Tag
+        Schema order = new Schema.Parser().parse("""
+                {"type": "record", "name": "Order", "namespace": "com.example", "fields": [
+                  {"name": "lines", "type": {"type": "array", "items": {"type": "record", "name": "Line", "fields": [
+                    {"name": "tag", "type": {"type": "enum", "name": "Tag", "symbols": ["A"]}}]}}}
+                ]}""");
+        Schema invoice = new Schema.Parser().parse("""
+                {"type": "record", "name": "Invoice", "namespace": "com.example", "fields": [
+                  {"name": "order", "type": %s},
+                  {"name": "lines", "type": {"type": "array", "items": "com.example.Line"}}
+                ]}""".formatted(order));
+        SchemaDefinition definition = new SchemaDefinition();
+        definition.addRecord(order);
+        definition.addRecord(invoice);
+
+        // When
+        List<AvroEntity> roots = definition.findRoots();
+        AvroEntity line = definition.records.get("com.example.Line");
+        SchemaModel model = SchemaModel.of(List.of(definition.records.get("com.example.Tag"), line,
+                definition.records.get("com.example.Order"), definition.records.get("com.example.Invoice")));
+
+        // Then
+        assertEquals(List.of("com.example.Invoice"), roots.stream().map(AvroEntity::getFullname).toList());
+        assertEquals(List.of("com.example.Order", "com.example.Invoice"), line.owners.stream().map(AvroEntity::getFullname).toList());
+        assertTrue(line.isDependent);
+        assertTrue(line.isChild());
+        assertTrue(definition.records.get("com.example.Order").isOwner());
+        assertTrue(definition.records.get("com.example.Tag").isEnum());
+        SchemaModel.EntityModel tagModel = model.entities().get(0);
+        SchemaModel.EntityModel lineModel = model.entities().get(1);
+        SchemaModel.EntityModel orderModel = model.entities().get(2);
+        SchemaModel.EntityModel invoiceModel = model.entities().get(3);
+        assertTrue(tagModel.isEnum());
+        assertFalse(tagModel.isChild());
+        assertTrue(lineModel.isDependent());
+        assertTrue(lineModel.isChild());
+        assertFalse(lineModel.isOwner());
+        assertTrue(orderModel.isOwner());
+        assertTrue(orderModel.isChild());
+        assertTrue(invoiceModel.isRoot());
+        assertFalse(invoiceModel.isChild());
+    }
+
+    private static List<String> names(List<? extends Entity> entities) {
+        return entities.stream().map(Entity::getName).toList();
+    }
+}
@@ -0,0 +1,195 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mitchellbosecke.pebble.PebbleEngine;
+import com.mitchellbosecke.pebble.error.PebbleException;
+import com.mitchellbosecke.pebble.template.PebbleTemplate;
+import com.mitchellbosecke.pebble.template.PebbleTemplateImpl;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yaml.snakeyaml.Yaml;
+
+class TemplateCompilerTest {
+    private static final String TEMPLATE = """
+            {% set total = 0 %}
+            {% for item in items %}
+            {% set total = total + item.size %}
+            {{ loop.index }}/{{ loop.length }}/{{ loop.revindex }} {{ item.name | capitalize }}{% if loop.first %} first{% elseif loop.last %} last{% else %} middle{% endif %}
+            {% for tag in item.tags %}{{ loop.index }}:{{ tag | upper }}{% if not loop.last %},{% endif %}{% else %}no tags{% endfor %}
+            {% if item.tags contains 'b' and item.size > 1 or item.name == 'c' %} matches{% endif %}
+            {% if item.tags is not empty %} tagged {{ item.tags[0] ~ "-" ~ item['name'] }}{% endif %}
+            {% endfor %}
+            {{ total }} {{ -count + 2 * 3 }} {{ [1, 2] contains 2 }} {{ {'a': 1} contains 'a' }} {{ 'a"b' | replace({'a': 'x'}) }}
+            {% for missing in nothing %}never{% else %}empty{% endfor %}
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldRenderLikeInterpreter() throws IOException {
+        // Given
+        Files.writeString(tempDir.resolve("template.peb"), TEMPLATE);
+        Map<String, Object> context = new HashMap<>(Map.of(
+                "count", 4,
+                "nothing", List.of(),
+                "items", List.of(
+                        Map.of("name", "a", "size", 1, "tags", List.of("a", "b")),
+                        Map.of("name", "b", "size", 2, "tags", List.of("b")),
+                        Map.of("name", "c", "size", 3, "tags", List.of()))));
+
+        // When
+        PebbleTemplate compiled = load("template", true);
+        PebbleTemplate interpreted = load("template", false);
+
+        // Then
+        assertInstanceOf(CompiledTemplate.class, compiled);
+        assertEquals(render(interpreted, context), render(compiled, context));
+    }
+
+    @Test
+    void shouldInterpretUnsupportedTemplates() throws IOException {
+        Files.writeString(tempDir.resolve("macro.peb"), "{% macro name() %}name{% endmacro %}{{ name() }}");
+
+        PebbleTemplate template = load("macro", true);
+
+        assertInstanceOf(PebbleTemplateImpl.class, template);
+        assertEquals("name", render(template, new HashMap<>()));
+    }
+
+    @Test
+    void shouldFailLikeInterpreter() throws IOException {
+        Files.writeString(tempDir.resolve("missing.peb"), "{% for item in items %}{{ item.missing }}{% endfor %}");
+        Map<String, Object> context = new HashMap<>(Map.of("items", List.of("value")));
+
+        PebbleException compiled = assertThrows(PebbleException.class, () -> render(load("missing", true), context));
+        PebbleException interpreted = assertThrows(PebbleException.class, () -> render(load("missing", false), context));
+
+        assertSame(interpreted.getClass(), compiled.getClass());
+        assertEquals(interpreted.getMessage(), compiled.getMessage());
+    }
+
+    @Test
+    void shouldLoadCachedTemplatesWithoutParsing() throws IOException {
+        // Given
+        Files.writeString(tempDir.resolve("template.peb"), TEMPLATE);
+        Map<String, String> sources = Map.of("template", TEMPLATE);
+        Map<String, Object> context = new HashMap<>(Map.of("count", 1, "nothing", List.of(),
+                "items", List.of(Map.of("name", "a", "size", 1, "tags", List.of("a")))));
+        String expected = render(load("template", false), context);
+        loadCached(sources, new TemplateCache(tempDir.resolve("cache")));
+
+        // When
+        Files.delete(tempDir.resolve("template.peb"));
+        PebbleTemplate cached = loadCached(sources, new TemplateCache(tempDir.resolve("cache"))).get("template");
+
+        // Then
+        assertInstanceOf(CompiledTemplate.class, cached);
+        assertEquals(expected, render(cached, context));
+    }
+
+    @Test
+    void shouldIgnoreDamagedAndForeignCacheEntries() throws IOException {
+        // Given
+        TemplateCache cache = new TemplateCache(tempDir.resolve("cache"));
+        cache.store("valid", new TemplateCache.Entry(new byte[] {1, 2}, List.of(
+                new TemplateCache.Text("text"), new TemplateCache.Literal(new ArrayList<>(List.of(1L, "a"))))));
+        cache.store("damaged", new TemplateCache.Entry(new byte[] {1, 2}, List.of()));
+        cache.store("foreign", new TemplateCache.Entry(new byte[] {1, 2}, List.of(new TemplateCache.Literal(new Date()))));
+        Path damaged = tempDir.resolve("cache").resolve("damaged.template");
+        byte[] content = Files.readAllBytes(damaged);
+        content[content.length - 1] ^= 1;
+        Files.write(damaged, content);
+
+        // Then
+        assertEquals(List.of(new TemplateCache.Text("text"), new TemplateCache.Literal(new ArrayList<>(List.of(1L, "a")))),
+                cache.load("valid").orElseThrow().constants());
+        assertTrue(cache.load("damaged").isEmpty());
+        assertTrue(cache.load("foreign").isEmpty());
+    }
+
+    @Test
+    void shouldGenerateBuiltInGeneratorsLikeInterpreter() throws IOException {
+        // Given
+        Path interpreted = writeConfiguration("interpreter");
+        Path compiled = writeConfiguration("compiled");
+
+        // When
+        Factory.main(new String[] {interpreted.toString()});
+        Factory.main(new String[] {compiled.toString()});
+
+        // Then
+        Map<Path, String> expected = readFiles(interpreted.resolveSibling("generated"));
+        assertEquals(expected.keySet(), readFiles(compiled.resolveSibling("generated")).keySet());
+        assertEquals(expected, readFiles(compiled.resolveSibling("generated")));
+    }
+
+    private PebbleTemplate load(String name, boolean compiled) {
+        TemplateEngineFactory templateEngines = new GenerationSession(TemplateCompilerTest.class.getClassLoader()).getTemplateEngines(List.of());
+        PebbleEngine engine = templateEngines.createPebbleEngineForPath(tempDir.toString() + "/", "", new GeneratedSchemas());
+        PebbleTemplate template = engine.getTemplate(name);
+        return compiled ? templateEngines.compileTemplates(engine, Map.of(name, template)).get(name) : template;
+    }
+
+    private Map<String, PebbleTemplate> loadCached(Map<String, String> sources, TemplateCache cache) {
+        TemplateEngineFactory templateEngines = new GenerationSession(TemplateCompilerTest.class.getClassLoader()).getTemplateEngines(List.of());
+        PebbleEngine engine = templateEngines.createPebbleEngineForPath(tempDir.toString() + "/", "", new GeneratedSchemas());
+        return templateEngines.compileTemplates(engine, sources, cache);
+    }
+
+    private static String render(PebbleTemplate template, Map<String, Object> context) throws IOException {
+        StringWriter writer = new StringWriter();
+        template.evaluate(writer, context);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the sample configuration with all generators using a template backend, without
+     * post calls which need external tools
+     */
+    @SuppressWarnings("unchecked")
+    private Path writeConfiguration(String templateBackend) throws IOException {
+        Path configPath = tempDir.resolve(templateBackend).resolve("def.yaml");
+        Map<String, Object> config = new Yaml().load(Files.readString(Path.of("src/main/resources/def.yaml")));
+        for (String schema : (List<String>) config.get("schemas")) {
+            Files.createDirectories(configPath.resolveSibling(schema).getParent());
+            Files.copy(Path.of("src/main/resources", schema), configPath.resolveSibling(schema));
+        }
+        config.put("statePath", "state");
+        ((Map<String, Object>) config.get("values")).put("outputPath", "{{basePath}}/generated");
+        for (Map<String, Object> generator : (List<Map<String, Object>>) config.get("generators")) {
+            generator.remove("postCall");
+            generator.put("templateBackend", templateBackend);
+        }
+        Files.writeString(configPath, new Yaml().dump(config));
+        return configPath;
+    }
+
+    private static Map<Path, String> readFiles(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toMap(folder::relativize, file -> {
+                try {
+                    return Files.readString(file);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package art.limitium.sofa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import art.limitium.sofa.plugin.SofaType;
+import art.limitium.sofa.schema.Entity;
+import art.limitium.sofa.schema.EnumEntity;
+import art.limitium.sofa.schema.Type;
+import art.limitium.sofa.schema.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.Test;
+
+class TypesTest {
+    private static final Schema SCHEMA = new Schema.Parser().parse("""
+            {"type": "record", "name": "Order", "fields": [
+              {"name": "created", "type": {"type": "long", "logicalType": "timestamp-millis"}},
+              {"name": "updated", "type": {"type": "long", "logicalType": "timestamp-millis"}},
+              {"name": "amount", "type": {"type": "bytes", "logicalType": "decimal", "precision": 10, "scale": 2}},
+              {"name": "rate", "type": {"type": "bytes", "logicalType": "decimal", "precision": 5, "scale": 1}},
+              {"name": "status", "type": {"type": "enum", "name": "Status", "symbols": ["NEW"]}},
+              {"name": "statuses", "type": {"type": "array", "items": "Status"}},
+              {"name": "previous", "type": {"type": "array", "items": "Status"}}
+            ]}""");
+
+    @Test
+    void shouldShareTypesOfEqualSchemas() {
+        // Given
+        Map<String, Entity> mapByAvroName = new HashMap<>();
+        Types types = new Types(mapByAvroName);
+
+        // When
+        Type created = types.of(field("created"));
+        Type amount = types.of(field("amount"));
+        Type unresolved = types.of(field("status"));
+        mapByAvroName.put("Status", new EnumEntity(0, "", "Status", "Status", field("status"), List.of("NEW")));
+        Type statuses = types.of(field("statuses"));
+
+        // Then
+        assertSame(created, new Types(Map.of()).of(field("updated")));
+        assertSame(created, Type.fromSchema(field("updated"), Map.of()));
+        assertNotSame(amount, types.of(field("rate")));
+        assertNotSame(unresolved, types.of(field("status")));
+        assertSame(types.of(field("status")), types.of(field("status")));
+        assertSame(statuses, types.of(field("previous")));
+        assertSame(types.of(field("status")), ((Type.ArrayType) statuses).getElementType());
+    }
+
+    @Test
+    void shouldPrecomputeKinds() {
+        Types types = new Types(Map.of());
+
+        assertEquals(SofaType.Kind.TIMESTAMP_MILLIS, types.of(field("created")).getKind());
+        assertEquals(SofaType.Kind.DECIMAL, types.of(field("amount")).getKind());
+        assertEquals(SofaType.Kind.ENUM, types.of(field("status")).getKind());
+        assertEquals(SofaType.Kind.ARRAY, types.of(field("statuses")).getKind());
+        assertInstanceOf(Type.TimestampMillisType.class, types.of(field("created")));
+    }
+
+    private static Schema field(String name) {
+        return SCHEMA.getField(name).schema();
+    }
+}